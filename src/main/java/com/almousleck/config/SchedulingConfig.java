@@ -0,0 +1,40 @@
+package com.almousleck.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Two schedulers, so long batch jobs never delay the short periodic flushes:
+ * - taskScheduler (spring.task.scheduling.pool.size): the default for @Scheduled, for sub-second
+ *   jobs such as the heartbeat and telemetry flushes, cluster route claims, the offline sweep and
+ *   presence flushes.
+ * - batchScheduler (app.scheduling.batch.pool-size): jobs that scan tables or Redis sets or run DDL,
+ *   i.e. telemetry rollups and purges, partition maintenance, fleet stats reconciliation and the
+ *   stale location purge; they opt in with @Scheduled(scheduler = BATCH_SCHEDULER).
+ * Both are declared here because the STOMP broker's own scheduler would otherwise stop Boot from
+ * creating the default one and @Scheduled jobs would run on the broker's.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+    public static final String BATCH_SCHEDULER = "batchScheduler";
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean(BATCH_SCHEDULER)
+    public ThreadPoolTaskScheduler batchScheduler(@Value("${app.scheduling.batch.pool-size:2}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("batch-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        return scheduler;
+    }
+}
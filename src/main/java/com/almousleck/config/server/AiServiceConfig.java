@@ -0,0 +1,39 @@
+package com.almousleck.config.server;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "ai.service")
+public class AiServiceConfig {
+    private boolean enabled;
+    private String baseUrl;
+    private String signalPath = "/api/v1/signals";
+    private long connectTimeoutMs = 1000;
+    private long defaultTimeoutMs = 3000;
+    private Map<String, Long> timeoutsMs = new HashMap<>(); // Per signal type, e.g. EMERGENCY: 1000
+    private int maxInFlight = 200; // Bulkhead: calls to the AI core in flight at once
+
+    public Duration timeoutFor(String signalType) {
+        Long millis = signalType != null ? timeoutsMs.get(signalType) : null;
+        return Duration.ofMillis(millis != null ? millis : defaultTimeoutMs);
+    }
+
+    // Non-blocking client; keeps HTTP/1.1 connections to the AI core alive and reuses them across calls,
+    // responses complete on the client's own executor, never on a STOMP inbound thread
+    @Bean
+    public HttpClient aiHttpClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+    }
+}
@@ -0,0 +1,31 @@
+package com.almousleck.config.server;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.websocket.offline")
+public class OfflineQueueConfig {
+    private boolean enabled = true;
+    private int maxLength = 200;  // Per user, oldest messages are trimmed first
+    private int batchSize = 50;   // Messages per replayed frame
+    private long defaultTtlSeconds = 300;
+    private Map<String, Long> ttlSeconds = new HashMap<>(); // Per signal type, 0 = never queued
+
+    public Duration ttlFor(String signalType) {
+        Long seconds = signalType != null ? ttlSeconds.get(signalType) : null;
+        return Duration.ofSeconds(seconds != null ? seconds : defaultTtlSeconds);
+    }
+
+    // How long an idle user queue can be kept, the longest message TTL
+    public Duration maxTtl() {
+        long longest = ttlSeconds.values().stream().mapToLong(Long::longValue).max().orElse(0);
+        return Duration.ofSeconds(Math.max(longest, defaultTtlSeconds));
+    }
+}
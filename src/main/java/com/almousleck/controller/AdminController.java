@@ -1,9 +1,13 @@
 package com.almousleck.controller;
 
+import com.almousleck.dto.device.FleetStatsResponse;
+import com.almousleck.dto.device.NearbyDeviceResponse;
 import com.almousleck.dto.user.UpdateUserStatusRequest;
 import com.almousleck.dto.user.UserResponse;
 import com.almousleck.enums.UserStatus;
 import com.almousleck.model.SystemLog;
+import com.almousleck.service.DeviceLocationService;
+import com.almousleck.service.FleetStatsService;
 import com.almousleck.service.LoginAttemptService;
 import com.almousleck.service.SystemLogService;
 import com.almousleck.service.UserService;
@@ -22,6 +26,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -33,6 +38,8 @@ public class AdminController {
     private final UserService userService;
     private final LoginAttemptService loginAttemptService;
     private final SystemLogService systemLogService;
+    private final DeviceLocationService deviceLocationService;
+    private final FleetStatsService fleetStatsService;
 
     @Operation(summary = "解锁用户账户")
     @ApiResponses(value = {
@@ -181,6 +188,35 @@ public class AdminController {
         return ResponseEntity.ok(systemLogService.getLogsByDateRange(start, end, pageable));
     }
 
+    @Operation(summary = "设备群统计", description = "在线数、电量分布、固件版本与设备类型分布；基于内存计数器，定期与数据库对账")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "查询成功"),
+            @ApiResponse(responseCode = "403", description = "权限不足"),
+            @ApiResponse(responseCode = "401", description = "未认证")
+    })
+    @GetMapping("/devices/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<FleetStatsResponse> getFleetStats() {
+        return ResponseEntity.ok(fleetStatsService.getStats());
+    }
+
+    @Operation(summary = "查询附近在线设备", description = "基于Redis GEO实时位置索引，按距离升序返回半径（米）内的在线设备")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "查询成功"),
+            @ApiResponse(responseCode = "403", description = "权限不足"),
+            @ApiResponse(responseCode = "401", description = "未认证")
+    })
+    @GetMapping("/devices/nearby")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<NearbyDeviceResponse>> getNearbyDevices(
+            @RequestParam double latitude,
+            @RequestParam double longitude,
+            @RequestParam(defaultValue = "1000") double radius,
+            @RequestParam(defaultValue = "100") int limit
+    ) {
+        return ResponseEntity.ok(deviceLocationService.findNearby(latitude, longitude, radius, limit));
+    }
+
 
 
 }
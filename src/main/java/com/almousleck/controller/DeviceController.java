@@ -1,9 +1,18 @@
 package com.almousleck.controller;
 
 import com.almousleck.config.ApplicationUserDetails;
+import com.almousleck.dto.device.BatchHeartbeatRequest;
+import com.almousleck.dto.device.BatchHeartbeatResponse;
+import com.almousleck.dto.device.DeviceHeartbeatEntry;
 import com.almousleck.dto.device.DevicePairRequest;
 import com.almousleck.dto.device.DeviceResponse;
+import com.almousleck.dto.device.DeviceSliceResponse;
+import com.almousleck.dto.device.DeviceTokenResponse;
+import com.almousleck.dto.device.HeartbeatResponse;
+import com.almousleck.dto.telemetry.TelemetryResponse;
+import com.almousleck.jwt.DeviceTokenUtils;
 import com.almousleck.service.DeviceService;
+import com.almousleck.service.TelemetryService;
 import com.almousleck.util.HttpRequestUtil;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -12,19 +21,21 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+
 @RestController
 @RequiredArgsConstructor
 @Tag(name = "设备管理", description = "设备配对、查询、心跳、解绑")
 @RequestMapping("/api/v1/devices")
 public class DeviceController {
     private final DeviceService deviceService;
+    private final DeviceTokenUtils deviceTokenUtils;
+    private final TelemetryService telemetryService;
 
     @Operation(summary = "设备配对")
     @ApiResponses(value = {
@@ -41,39 +52,95 @@ public class DeviceController {
         return ResponseEntity.ok(response);
     }
 
-    @Operation(summary = "查询我的设备列表")
+    @Operation(summary = "查询我的设备列表", description = "按设备ID游标分页：首次不传afterId，之后传上一页返回的nextAfterId；withTotal=true时额外返回总数")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "查询成功"),
             @ApiResponse(responseCode = "401", description = "未认证")
     })
     @GetMapping("/my")
-    public ResponseEntity<Page<DeviceResponse>> getMyDevices(
+    public ResponseEntity<DeviceSliceResponse> getMyDevices(
             @AuthenticationPrincipal ApplicationUserDetails userDetails,
-            @PageableDefault(size = 20, sort = "createdAt") Pageable pageable
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal
     ) {
-        return ResponseEntity.ok(deviceService.getMyDevices(userDetails.getId(), pageable));
+        return ResponseEntity.ok(deviceService.getMyDevices(userDetails.getId(), afterId, size, withTotal));
     }
 
-    @Operation(summary = "设备心跳")
+    @Operation(summary = "设备心跳", description = "可选携带GPS坐标（latitude/longitude 同时上报），用于实时位置索引；响应中的nextIntervalSeconds为下次心跳间隔，服务端负载高时自动拉长")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "心跳成功"),
             @ApiResponse(responseCode = "404", description = "设备未找到"),
-            @ApiResponse(responseCode = "400", description = "参数错误")
+            @ApiResponse(responseCode = "400", description = "参数错误"),
+            @ApiResponse(responseCode = "403", description = "设备令牌无效、已过期或已被撤销")
     })
     @PostMapping("/heartbeat")
-    public ResponseEntity<Void> heartbeat(
+    public ResponseEntity<HeartbeatResponse> heartbeat(
             @RequestParam String serialNumber,
             @RequestParam(required = false) Integer batteryLevel,
+            @RequestParam(required = false) Double latitude,
+            @RequestParam(required = false) Double longitude,
             @RequestHeader(value = "X-Device-Token", required = false) String deviceToken,
             HttpServletRequest request) {
-        //
-        if (deviceToken == null || deviceToken.isBlank()) {
+        // Signature + expiry + serial binding checked in memory before any I/O, then the token version
+        if (!deviceTokenUtils.isValidFor(deviceToken, serialNumber)) {
             return ResponseEntity.status(403).build();
         }
         // Auto-capture IP from the request header/remote address
         String clientIp = HttpRequestUtil.getClientIp(request);
-        deviceService.updateHeartbeat(serialNumber, batteryLevel, clientIp);
-        return ResponseEntity.ok().build();
+        return ResponseEntity.ok(deviceService.updateHeartbeat(serialNumber, batteryLevel, clientIp, latitude, longitude));
+    }
+
+    @Operation(summary = "批量设备心跳", description = "充电座/网关代多台眼镜上报心跳，每次最多500条，每条携带该眼镜的设备令牌")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "心跳成功"),
+            @ApiResponse(responseCode = "400", description = "参数错误"),
+            @ApiResponse(responseCode = "403", description = "所有设备令牌均无效")
+    })
+    @PostMapping("/heartbeat/batch")
+    public ResponseEntity<BatchHeartbeatResponse> batchHeartbeat(@Valid @RequestBody BatchHeartbeatRequest request) {
+        // Entries whose token does not verify for their serial are dropped before the service sees them
+        int received = request.getHeartbeats().size();
+        request.setHeartbeats(deviceTokenUtils.filterValid(request.getHeartbeats(),
+                DeviceHeartbeatEntry::getDeviceToken, DeviceHeartbeatEntry::getSerialNumber));
+        int rejected = received - request.getHeartbeats().size();
+        if (request.getHeartbeats().isEmpty()) {
+            return ResponseEntity.status(403).build();
+        }
+
+        BatchHeartbeatResponse response = deviceService.updateHeartbeats(request);
+        response.setRejected(rejected);
+        return ResponseEntity.ok(response);
+    }
+
+    @Operation(summary = "重新签发设备令牌", description = "设备令牌过期或泄露时由设备所有者重新获取，此前签发的令牌随即失效")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "签发成功"),
+            @ApiResponse(responseCode = "404", description = "设备未找到"),
+            @ApiResponse(responseCode = "403", description = "无权操作"),
+            @ApiResponse(responseCode = "401", description = "未认证")
+    })
+    @PostMapping("/{serialNumber}/token")
+    public ResponseEntity<DeviceTokenResponse> reissueDeviceToken(
+            @PathVariable String serialNumber,
+            @AuthenticationPrincipal ApplicationUserDetails userDetails) {
+        return ResponseEntity.ok(deviceService.reissueDeviceToken(serialNumber, userDetails.getId()));
+    }
+
+    @Operation(summary = "查询设备遥测历史", description = "按时间范围自动选择原始数据、分钟或小时聚合；默认最近1小时")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "查询成功"),
+            @ApiResponse(responseCode = "404", description = "设备未找到"),
+            @ApiResponse(responseCode = "403", description = "无权操作"),
+            @ApiResponse(responseCode = "401", description = "未认证")
+    })
+    @GetMapping("/{serialNumber}/telemetry")
+    public ResponseEntity<TelemetryResponse> getTelemetry(
+            @PathVariable String serialNumber,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @AuthenticationPrincipal ApplicationUserDetails userDetails) {
+        return ResponseEntity.ok(telemetryService.getTelemetry(serialNumber, from, to, userDetails.getId()));
     }
 
     @Operation(summary = "解绑设备")
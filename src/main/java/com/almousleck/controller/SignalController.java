@@ -1,24 +1,39 @@
 package com.almousleck.controller;
 
+import com.almousleck.config.ApplicationUserDetails;
 import com.almousleck.dto.signal.SignalMessage;
+import com.almousleck.exceptions.ResourceNotFoundException;
+import com.almousleck.exceptions.UnauthorizedDeviceAccessException;
+import com.almousleck.service.AIServiceClient;
+import com.almousleck.service.DeviceService;
+import com.almousleck.websocket.ClusterUserRouter;
+import com.almousleck.websocket.SignalMetrics;
+import io.micrometer.core.instrument.Timer;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 
 import java.time.Instant;
+import java.util.Map;
 
 @Slf4j
 @Controller
 @RequiredArgsConstructor
 @Tag(name = "WebSocket", description = "实时通信（WebSocket，不在Swagger UI中显示）")
 public class SignalController {
+    private final ClusterUserRouter clusterUserRouter;
     private final SimpMessagingTemplate messagingTemplate;
+    private final AIServiceClient aiServiceClient;
+    private final DeviceService deviceService;
+    private final SignalMetrics signalMetrics;
 
     /**
      * WebSocket入站消息处理
@@ -27,15 +42,18 @@ public class SignalController {
      * 接收来自AI智能眼镜的实时信号并处理
      * 
      * **消息流向:**
-     * 设备 → /app/signal → 服务器处理 → AI核心（待实现：AIServiceClient集成）
+     * 设备 → /app/signal → 服务器处理 → AI核心（AIServiceClient，异步调用）
+     * 处理结果只回传给发送者本人的会话（/user/queue/ar-updates），不再广播给所有在线会话
      * 
      * **业务流程:**
      * 1. 接收设备发送的信号消息
      * 2. 验证用户身份（通过WebSocket认证）
      * 3. 记录信号类型和动作
      * 4. 添加服务器时间戳（用于延迟检测）
-     * 5. 转发到Python/FastAPI AI核心进行处理（待实现：AIServiceClient集成）
-     * 6. 回传处理结果
+     *    若payload携带 serialNumber/lat/lng，则更新该设备的实时位置索引
+     * 5. 回显消息给发送者（仅发送者，避免 O(N²) 扇出和跨用户数据泄露）
+     * 6. 异步转发到Python/FastAPI AI核心，结果返回后经 sendToUser 推送到 /user/queue/notifications
+     *    AI核心繁忙、超时或出错时推送 action=AI_UNAVAILABLE
      * 
      * **信号类型:**
      * - NAVIGATION: 导航请求
@@ -54,34 +72,54 @@ public class SignalController {
      * }
      * ```
      * 
+     * **订阅端点:**
+     * 客户端需订阅: /user/queue/ar-updates
+     * 
      * **性能指标:**
-     * - 目标延迟: <100ms
+     * - 目标延迟: 服务端各环节 <100ms
      * - 服务器时间戳用于计算往返延迟
+     * - 按信号类型记录（/actuator/prometheus，直方图与100ms SLO见 management.metrics.distribution）:
+     *   signal.server.handler 处理耗时、ai.service.calls AI核心往返、signal.outbound.queue 出站排队
+     * - websocket.signal.excess.delay: 客户端时间戳到处理开始，减去该会话近期最小延迟（抵消时钟偏差，
+     *   同时也抵消了基础网络延迟），只反映抖动与排队等额外延迟，不是端到端延迟，不设SLO
      * 
      * **下一步开发:**
-     * - 集成Python/FastAPI AI核心
      * - 使用gRPC或Redis进行服务间通信
      * - 添加消息队列确保可靠传输
      * 
      * @param message 信号消息
+     * @param sessionId WebSocket会话ID（按会话计算额外延迟）
      * @param authentication 用户认证信息
      * @return 处理后的信号消息（包含服务器时间戳）
      */
     @MessageMapping("/signal")
-    @SendTo("/topic/ar-updates")
-    public SignalMessage processSignal(@Payload SignalMessage message, Authentication authentication) {
-        String username = (authentication != null) ?
-                authentication.getName() : "未知";
-        log.info("收到信号来自用户 [{}]: 类型={} 动作={}", username, message.getType(), message.getAction());
+    @SendToUser("/queue/ar-updates")
+    public SignalMessage processSignal(@Payload SignalMessage message,
+                                       @Header(name = SimpMessageHeaderAccessor.SESSION_ID_HEADER, required = false) String sessionId,
+                                       Authentication authentication) {
+        Timer.Sample handlerSample = signalMetrics.startHandler();
+        // Before the client timestamp is replaced by the server's
+        signalMetrics.recordReceived(sessionId, message.getType(), message.getTimestamp());
+        try {
+            String username = (authentication != null) ?
+                    authentication.getName() : "未知";
+            log.info("收到信号来自用户 [{}]: 类型={} 动作={}", username, message.getType(), message.getAction());
         
-        // Note: AI service integration pending - will be implemented via AIServiceClient
-        // Future implementation: aiServiceClient.processSignal(message);
+            if (authentication != null && authentication.getPrincipal() instanceof ApplicationUserDetails details)
+                reportLocation(message.getPayload(), details.getId());
+
+            // 回显消息并添加服务器时间戳（用于延迟检测）
+            message.setSenderId(username);
+            message.setTimestamp(Instant.now());
 
-        // 回显消息并添加服务器时间戳（用于延迟检测）
-        message.setSenderId(username);
-        message.setTimestamp(Instant.now());
+            // The AI core answers later through sendToUser, this thread never waits for it
+            if (authentication != null && aiServiceClient.isEnabled())
+                dispatchToAiCore(message, username);
 
-        return message;
+            return message;
+        } finally {
+            signalMetrics.stopHandler(handlerSample, message.getType());
+        }
     }
 
     /**
@@ -133,9 +171,15 @@ public class SignalController {
      * }
      * ```
      * 
+     * **集群投递:**
+     * 用户可能连接在任意副本上，消息经 Redis 路由表只投递到持有该用户会话的节点
+     * 
+     * **离线消息:**
+     * 用户没有任何在线会话时，消息按信号类型的TTL保存在 Redis Stream（每用户有上限，见 app.websocket.offline）
+     * 重新订阅后按原顺序补发，每帧最多 batch-size 条，包装为 type=OFFLINE_BATCH，payload.messages 为原消息列表
+     * 补发后即删除；OBJECT_DETECTION 等时效性结果不保存
+     * 
      * **注意事项:**
-     * - 只有在线用户才能接收消息
-     * - 离线消息不会保存（待实现：消息持久化功能）
      * - 消息发送失败会记录日志
      * 
      * @param username 目标用户名
@@ -143,7 +187,63 @@ public class SignalController {
      */
     public void sendToUser(String username, SignalMessage message) {
         log.info("推送消息给用户 [{}]: 类型={} 动作={}", username, message.getType(), message.getAction());
-        messagingTemplate.convertAndSendToUser(username, "/queue/notifications", message);
+        clusterUserRouter.convertAndSendToUser(username, "/queue/notifications", message);
+    }
+
+    /**
+     * 向所有在线会话广播消息（共享主题，需显式调用）
+     * 
+     * **功能说明:**
+     * 只用于真正面向所有人的内容（如系统公告、全局告警），用户信号的回传不经过此主题
+     * 
+     * **订阅端点:**
+     * 客户端需订阅: /topic/ar-updates
+     * 
+     * **注意事项:**
+     * - 每条消息投递给本节点所有订阅者，成本随在线会话数线性增长
+     * - 不要广播任何用户私有数据
+     * 
+     * @param message 要广播的信号消息
+     */
+    public void broadcast(SignalMessage message) {
+        log.info("广播消息: 类型={} 动作={}", message.getType(), message.getAction());
+        if (message.getTimestamp() == null) message.setTimestamp(Instant.now());
+        messagingTemplate.convertAndSend("/topic/ar-updates", message);
+    }
+
+    // Helper methods
+    private void dispatchToAiCore(SignalMessage message, String username) {
+        aiServiceClient.processSignal(message)
+                .thenAccept(result -> {
+                    if (result.getTimestamp() == null) result.setTimestamp(Instant.now());
+                    sendToUser(username, result);
+                })
+                .exceptionally(ex -> {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    log.warn("AI核心处理失败 [{}] 类型={}: {}", username, message.getType(), cause.toString());
+                    sendToUser(username, SignalMessage.builder()
+                            .type(message.getType())
+                            .action("AI_UNAVAILABLE")
+                            .senderId("system")
+                            .timestamp(Instant.now())
+                            .build());
+                    return null;
+                });
+    }
+
+    private void reportLocation(Map<String, Object> payload, Long userId) {
+        if (payload == null
+                || !(payload.get("serialNumber") instanceof String serialNumber)
+                || !(payload.get("lat") instanceof Number lat)
+                || !(payload.get("lng") instanceof Number lng))
+            return;
+
+        // A bad position must not stop the signal itself from being echoed
+        try {
+            deviceService.reportLocation(serialNumber, lat.doubleValue(), lng.doubleValue(), userId);
+        } catch (ResourceNotFoundException | UnauthorizedDeviceAccessException ex) {
+            log.warn("信号位置被忽略 [{}]: {}", serialNumber, ex.getMessage());
+        }
     }
 
 }
@@ -0,0 +1,16 @@
+package com.almousleck.dto.device;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchHeartbeatRequest {
+    @Valid
+    @NotEmpty(message = "At least one heartbeat is required")
+    @Size(max = 500, message = "At most 500 heartbeats per request")
+    private List<DeviceHeartbeatEntry> heartbeats;
+}
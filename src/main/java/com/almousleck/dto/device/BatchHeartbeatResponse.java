@@ -0,0 +1,18 @@
+package com.almousleck.dto.device;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchHeartbeatResponse {
+    private int accepted;  // Distinct devices whose heartbeat was applied
+    private int stale;     // Beats too old to refresh presence (still recorded as last heartbeat)
+    private int unknown;   // Serial numbers that match no device, ignored
+    private int rejected;  // Entries whose device token did not verify, ignored
+    private int nextIntervalSeconds; // When the gateway should relay the next round of beats
+}
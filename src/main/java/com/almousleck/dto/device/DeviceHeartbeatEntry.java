@@ -0,0 +1,39 @@
+package com.almousleck.dto.device;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceHeartbeatEntry {
+    @NotBlank(message = "Serial number is required")
+    private String serialNumber;
+
+    @NotBlank(message = "Device token is required")
+    private String deviceToken; // Token the relayed device was issued at pairing
+
+    @Min(value = 0, message = "Battery level must be between 0 and 100")
+    @Max(value = 100, message = "Battery level must be between 0 and 100")
+    private Integer batteryLevel;
+
+    @DecimalMin(value = "-90", message = "Latitude must be between -90 and 90")
+    @DecimalMax(value = "90", message = "Latitude must be between -90 and 90")
+    private Double latitude;
+
+    @DecimalMin(value = "-180", message = "Longitude must be between -180 and 180")
+    @DecimalMax(value = "180", message = "Longitude must be between -180 and 180")
+    private Double longitude;
+
+    private Instant timestamp; // When the gateway received the beat; server time if absent
+}
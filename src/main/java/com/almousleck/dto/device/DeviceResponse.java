@@ -22,4 +22,6 @@ public class DeviceResponse {
     private Instant lastHeartbeat;
     private String ipAddress;
     private Instant connectTime;
+    private String deviceToken;          // Only set when pairing, sent as X-Device-Token on heartbeats
+    private Instant deviceTokenExpiresAt;
 }
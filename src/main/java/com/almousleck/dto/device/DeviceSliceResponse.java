@@ -0,0 +1,19 @@
+package com.almousleck.dto.device;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DeviceSliceResponse {
+    private List<DeviceResponse> content;
+    private boolean hasNext;
+    private Long nextAfterId;    // Pass as afterId to fetch the next slice, null on the last one
+    private Long totalElements;  // Only counted when requested
+}
@@ -0,0 +1,18 @@
+package com.almousleck.dto.device;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DeviceTokenResponse {
+    private String serialNumber;
+    private String deviceToken;
+    private Instant expiresAt;
+}
@@ -0,0 +1,22 @@
+package com.almousleck.dto.device;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FleetStatsResponse {
+    private long totalDevices;  // Paired devices
+    private long onlineDevices;
+    private Map<String, Long> batteryHistogram; // "0-9" ... "90-100", plus "unknown"
+    private Map<String, Long> firmwareVersions;
+    private Map<String, Long> deviceTypes;
+    private Instant reconciledAt; // Last full rebuild from the database
+}
@@ -0,0 +1,14 @@
+package com.almousleck.dto.device;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class HeartbeatResponse {
+    private int nextIntervalSeconds; // When the device should send its next heartbeat
+}
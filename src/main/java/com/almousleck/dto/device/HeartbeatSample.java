@@ -0,0 +1,34 @@
+package com.almousleck.dto.device;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+
+@Value
+@Builder
+public class HeartbeatSample {
+    String serialNumber;
+    Integer batteryLevel; // null = not reported in this beat
+    String ipAddress;     // null = not reported in this beat
+    Double latitude;      // null = no GPS fix in this beat, always reported together with longitude
+    Double longitude;
+    Instant heartbeatAt;
+
+    public boolean hasLocation() {
+        return latitude != null && longitude != null;
+    }
+
+    // Coalesce a newer beat on top of this one, keeping any value the newer beat did not report
+    public HeartbeatSample merge(HeartbeatSample newer) {
+        boolean newerLocation = newer.hasLocation();
+        return HeartbeatSample.builder()
+                .serialNumber(serialNumber)
+                .batteryLevel(newer.batteryLevel != null ? newer.batteryLevel : batteryLevel)
+                .ipAddress(newer.ipAddress != null ? newer.ipAddress : ipAddress)
+                .latitude(newerLocation ? newer.latitude : latitude)
+                .longitude(newerLocation ? newer.longitude : longitude)
+                .heartbeatAt(newer.heartbeatAt.isAfter(heartbeatAt) ? newer.heartbeatAt : heartbeatAt)
+                .build();
+    }
+}
@@ -0,0 +1,17 @@
+package com.almousleck.dto.device;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class NearbyDeviceResponse {
+    private String serialNumber;
+    private Double latitude;
+    private Double longitude;
+    private Double distanceMeters; // From the query point
+}
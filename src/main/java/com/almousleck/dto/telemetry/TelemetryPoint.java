@@ -0,0 +1,22 @@
+package com.almousleck.dto.telemetry;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TelemetryPoint {
+    private Instant timestamp;    // Sample time, or bucket start for rollups
+    private Integer batteryMin;
+    private Double batteryAvg;
+    private Integer batteryMax;
+    private long sampleCount;
+    private Double locationLat;   // Raw samples only
+    private Double locationLng;
+}
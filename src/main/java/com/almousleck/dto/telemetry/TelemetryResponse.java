@@ -0,0 +1,22 @@
+package com.almousleck.dto.telemetry;
+
+import com.almousleck.enums.TelemetryResolution;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TelemetryResponse {
+    private String serialNumber;
+    private Instant from;
+    private Instant to;
+    private TelemetryResolution resolution; // Tier the points were read from
+    private List<TelemetryPoint> points;
+}
@@ -0,0 +1,16 @@
+package com.almousleck.dto.telemetry;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+
+@Value
+@Builder
+public class TelemetrySample {
+    Long deviceId;
+    Instant recordedAt;
+    Integer batteryLevel; // null = not reported
+    Double locationLat;
+    Double locationLng;
+}
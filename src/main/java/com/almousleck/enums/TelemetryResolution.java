@@ -0,0 +1,7 @@
+package com.almousleck.enums;
+
+public enum TelemetryResolution {
+    RAW,
+    MINUTE,
+    HOUR
+}
@@ -0,0 +1,15 @@
+package com.almousleck.event;
+
+import java.time.Instant;
+
+/**
+ * Published once a device is marked OFFLINE in the database,
+ * either because its WebSocket closed or because its presence expired.
+ */
+public record DeviceDisconnectedEvent(String serialNumber, Instant lastSeenAt, Reason reason) {
+
+    public enum Reason {
+        DISCONNECTED, // WebSocket closed
+        EXPIRED       // No heartbeat within the presence TTL
+    }
+}
@@ -0,0 +1,12 @@
+package com.almousleck.exceptions;
+
+public class AiServiceException extends RuntimeException {
+
+    public AiServiceException(String message) {
+        super(message);
+    }
+
+    public AiServiceException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
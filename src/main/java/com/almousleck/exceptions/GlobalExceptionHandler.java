@@ -153,6 +153,18 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ExceptionHandler(UnauthorizedDeviceAccessException.class)
+    public ResponseEntity<ErrorResponse> handleUnauthorizedDeviceAccessException(
+            UnauthorizedDeviceAccessException ex,
+            HttpServletRequest request) {
+        log.warn("Unauthorized device access at {}: {}", request.getRequestURI(), ex.getMessage());
+        return buildErrorResponse(
+                HttpStatus.FORBIDDEN,
+                ex.getMessage(),
+                request
+        );
+    }
+
     @ExceptionHandler(PhoneNotVerifiedException.class)
     public ResponseEntity<ErrorResponse> handlePhoneNotVerifiedException(
             PhoneNotVerifiedException ex,
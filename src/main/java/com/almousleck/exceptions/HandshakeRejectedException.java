@@ -0,0 +1,14 @@
+package com.almousleck.exceptions;
+
+public class HandshakeRejectedException extends RuntimeException {
+    private final int retryAfterSeconds;
+
+    public HandshakeRejectedException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,137 @@
+package com.almousleck.jwt;
+
+import com.almousleck.repository.device.DeviceLookup;
+import com.almousleck.service.DeviceLookupCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Device tokens: {@code base64url(serial).tokenVersion.expiryEpochSeconds.base64url(HMAC-SHA256)}.
+ * The signature, expiry and serial binding are checked first with a per-thread Mac over the cached key,
+ * so heartbeats with a spoofed serial are rejected before any I/O. Only then is the signed version
+ * compared with the device's current one from the lookup near-cache; unpairing or reissuing bumps it,
+ * which revokes every token issued before (on other nodes once their cache entry expires).
+ */
+@Component
+@RequiredArgsConstructor
+public class DeviceTokenUtils {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    @Value("${auth.device-token.secret}")
+    private String secret;
+    @Value("${auth.device-token.expiration-days:365}")
+    private long expirationDays;
+
+    private final DeviceLookupCache deviceLookupCache;
+
+    private SecretKeySpec key;
+    private ThreadLocal<Mac> mac;
+
+    @PostConstruct
+    void init() {
+        byte[] keyBytes = DECODER.decode(secret); // base64url, same as the JWT secret
+        if (keyBytes.length < 32)
+            throw new IllegalStateException("auth.device-token.secret must be at least 256 bits");
+        key = new SecretKeySpec(keyBytes, ALGORITHM);
+        mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot initialise device token MAC", e);
+            }
+        });
+    }
+
+    public Duration getValidity() {
+        return Duration.ofDays(expirationDays);
+    }
+
+    public String generateToken(String serialNumber, int tokenVersion, Instant expiresAt) {
+        String payload = ENCODER.encodeToString(serialNumber.getBytes(StandardCharsets.UTF_8))
+                + "." + tokenVersion + "." + expiresAt.getEpochSecond();
+        return payload + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    /**
+     * @return true only if the token is well-formed, correctly signed, unexpired, issued for this serial
+     * and carries the device's current token version
+     */
+    public boolean isValidFor(String token, String serialNumber) {
+        int tokenVersion = signedVersion(token, serialNumber);
+        if (tokenVersion < 0) return false;
+        return deviceLookupCache.find(serialNumber)
+                .map(device -> device.tokenVersion() == tokenVersion)
+                .orElse(false);
+    }
+
+    // Batch form of isValidFor: signatures first, then one lookup for the devices still in question
+    public <T> List<T> filterValid(List<T> entries, Function<T, String> token, Function<T, String> serialNumber) {
+        List<T> signed = new ArrayList<>(entries.size());
+        List<Integer> versions = new ArrayList<>(entries.size());
+        for (T entry : entries) {
+            int tokenVersion = signedVersion(token.apply(entry), serialNumber.apply(entry));
+            if (tokenVersion < 0) continue;
+            signed.add(entry);
+            versions.add(tokenVersion);
+        }
+        if (signed.isEmpty()) return List.of();
+
+        Map<String, DeviceLookup> devices = deviceLookupCache.findAll(signed.stream().map(serialNumber).toList());
+        List<T> valid = new ArrayList<>(signed.size());
+        for (int i = 0; i < signed.size(); i++) {
+            DeviceLookup device = devices.get(serialNumber.apply(signed.get(i)));
+            if (device != null && device.tokenVersion() == versions.get(i)) valid.add(signed.get(i));
+        }
+        return valid;
+    }
+
+    // Helper methods
+    // The signed token version, or -1 if the token is malformed, forged, expired or for another serial
+    private int signedVersion(String token, String serialNumber) {
+        if (token == null || serialNumber == null) return -1;
+
+        int firstDot = token.indexOf('.');
+        int secondDot = token.indexOf('.', firstDot + 1);
+        int lastDot = token.lastIndexOf('.');
+        if (firstDot <= 0 || secondDot <= firstDot || lastDot <= secondDot) return -1;
+
+        String payload = token.substring(0, lastDot);
+        try {
+            byte[] signature = DECODER.decode(token.substring(lastDot + 1));
+            if (!MessageDigest.isEqual(signature, sign(payload))) return -1;
+
+            long expiresAt = Long.parseLong(token.substring(secondDot + 1, lastDot));
+            if (Instant.now().getEpochSecond() >= expiresAt) return -1;
+
+            String tokenSerial = new String(DECODER.decode(token.substring(0, firstDot)), StandardCharsets.UTF_8);
+            if (!tokenSerial.equals(serialNumber)) return -1;
+            return Integer.parseInt(token.substring(firstDot + 1, secondDot));
+        } catch (IllegalArgumentException e) { // Bad base64, version or expiry
+            return -1;
+        }
+    }
+
+    private byte[] sign(String payload) {
+        return mac.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -51,6 +51,10 @@ public class Device extends BaseEntity {
     @Column(name = "connect_time")
     private Instant connectTime;
 
+    @Builder.Default
+    @Column(name = "token_version", nullable = false)
+    private int tokenVersion = 0; // Signed into device tokens, bumped to revoke all issued so far
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id")
     private User owner;
@@ -0,0 +1,11 @@
+package com.almousleck.repository.device;
+
+import com.almousleck.enums.DeviceStatus;
+
+// Identity, ownership, status and current token version of a device without hydrating the entity
+public record DeviceLookup(String serialNumber, Long id, Long ownerId, DeviceStatus status, int tokenVersion) {
+
+    public DeviceLookup withStatus(DeviceStatus newStatus) {
+        return new DeviceLookup(serialNumber, id, ownerId, newStatus, tokenVersion);
+    }
+}
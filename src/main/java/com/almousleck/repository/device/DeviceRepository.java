@@ -1,19 +1,119 @@
 package com.almousleck.repository.device;
 
-import com.almousleck.dto.device.DeviceResponse;
+import com.almousleck.enums.DeviceStatus;
 import com.almousleck.model.Device;
-import com.almousleck.model.User;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface DeviceRepository extends JpaRepository<Device, Long> {
+public interface DeviceRepository extends JpaRepository<Device, Long>, DeviceRepositoryCustom {
     Optional<Device> findBySerialNumber(String serialNumber);
     boolean existsBySerialNumber(String serialNumber);
-    Page<Device> findByOwner(User owner, Pageable pageable);
+
+    // Seek page of a user's devices on idx_device_owner_id(owner_id, id), no entity hydration and no COUNT
+    @Query("""
+            select new com.almousleck.repository.device.DeviceSummary(
+                       d.id, d.name, d.serialNumber, d.batteryLevel, d.firmwareVersion,
+                       d.lastHeartbeat, d.ipAddress, d.connectTime)
+              from Device d
+             where d.owner.id = :ownerId and d.id > :afterId
+             order by d.id asc
+            """)
+    List<DeviceSummary> findSummariesByOwnerId(@Param("ownerId") Long ownerId, @Param("afterId") Long afterId, Limit limit);
+
+    long countByOwnerId(Long ownerId);
+
+    // Heartbeat write without loading the entity; returns 0 when the serial number is unknown
+    @Transactional
+    @Modifying
+    @Query("""
+            update Device d
+               set d.batteryLevel = coalesce(:batteryLevel, d.batteryLevel),
+                   d.ipAddress = coalesce(:ipAddress, d.ipAddress),
+                   d.locationLat = coalesce(:latitude, d.locationLat),
+                   d.locationLng = coalesce(:longitude, d.locationLng),
+                   d.lastHeartbeat = :heartbeatAt,
+                   d.status = case when d.status = com.almousleck.enums.DeviceStatus.OFFLINE
+                                   then com.almousleck.enums.DeviceStatus.ONLINE else d.status end,
+                   d.updated = :heartbeatAt
+             where d.serialNumber = :serialNumber
+            """)
+    int updateHeartbeat(@Param("serialNumber") String serialNumber,
+                        @Param("batteryLevel") Integer batteryLevel,
+                        @Param("ipAddress") String ipAddress,
+                        @Param("latitude") Double latitude,
+                        @Param("longitude") Double longitude,
+                        @Param("heartbeatAt") Instant heartbeatAt);
+
+    @Query("""
+            select new com.almousleck.repository.device.DeviceLookup(d.serialNumber, d.id, o.id, d.status, d.tokenVersion)
+              from Device d left join d.owner o
+             where d.serialNumber in :serialNumbers
+            """)
+    List<DeviceLookup> findLookupsBySerialNumberIn(@Param("serialNumbers") Collection<String> serialNumbers);
+
+    // Connection transitions without loading the entity; return 0 when the serial number is unknown
+    @Transactional
+    @Modifying
+    @Query("""
+            update Device d
+               set d.status = com.almousleck.enums.DeviceStatus.ONLINE,
+                   d.connectTime = :now,
+                   d.updated = :now
+             where d.serialNumber = :serialNumber
+            """)
+    int markOnline(@Param("serialNumber") String serialNumber, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update Device d
+               set d.status = com.almousleck.enums.DeviceStatus.ONLINE,
+                   d.connectTime = :now,
+                   d.updated = :now
+             where d.serialNumber in :serialNumbers
+            """)
+    int markOnline(@Param("serialNumbers") Collection<String> serialNumbers, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update Device d
+               set d.status = com.almousleck.enums.DeviceStatus.OFFLINE,
+                   d.updated = :now
+             where d.serialNumber = :serialNumber
+            """)
+    int markOffline(@Param("serialNumber") String serialNumber, @Param("now") Instant now);
+
+    @Query("select d.serialNumber from Device d where d.status = :status and d.serialNumber in :serialNumbers")
+    List<String> findSerialNumbersByStatus(@Param("status") DeviceStatus status,
+                                           @Param("serialNumbers") Collection<String> serialNumbers);
+
+    // Keyset page over idx_device_status, only id and serial number are selected
+    List<DeviceSerialRef> findByStatusAndIdGreaterThanOrderByIdAsc(DeviceStatus status, Long id, Limit limit);
+
+    // Keyset page over the paired fleet, for rebuilding the in-memory fleet statistics
+    List<DeviceStatsRow> findByOwnerIsNotNullAndIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    // Only rows still ONLINE are touched, so concurrent sweeps and reconnects are safe
+    @Transactional
+    @Modifying
+    @Query("""
+            update Device d
+               set d.status = com.almousleck.enums.DeviceStatus.OFFLINE,
+                   d.updated = :now
+             where d.serialNumber in :serialNumbers
+               and d.status = com.almousleck.enums.DeviceStatus.ONLINE
+            """)
+    int markOfflineIfOnline(@Param("serialNumbers") Collection<String> serialNumbers, @Param("now") Instant now);
 }
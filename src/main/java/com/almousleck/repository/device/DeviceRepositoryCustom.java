@@ -0,0 +1,15 @@
+package com.almousleck.repository.device;
+
+import com.almousleck.dto.device.HeartbeatSample;
+
+import java.util.Collection;
+
+public interface DeviceRepositoryCustom {
+    /**
+     * Writes the given heartbeats as one JDBC batch UPDATE keyed by serial number. A heartbeat
+     * older than the device's stored last heartbeat is skipped.
+     *
+     * @return affected row count per sample, in iteration order (0 = unknown serial or older beat)
+     */
+    int[] batchUpdateHeartbeats(Collection<HeartbeatSample> samples);
+}
@@ -0,0 +1,56 @@
+package com.almousleck.repository.device;
+
+import com.almousleck.dto.device.HeartbeatSample;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.*;
+
+@RequiredArgsConstructor
+public class DeviceRepositoryCustomImpl implements DeviceRepositoryCustom {
+
+    // Instants are stored as UTC, same as Hibernate binds them for the Device entity
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    // A beat older than the stored one (relayed late or replayed by a gateway) changes nothing,
+    // so last_heartbeat never moves back and the sweeper never sees a live device as stale
+    private static final String HEARTBEAT_UPDATE_SQL = """
+            UPDATE devices
+               SET battery_level  = COALESCE(?, battery_level),
+                   ip_address     = COALESCE(?, ip_address),
+                   location_lat   = COALESCE(?, location_lat),
+                   location_lng   = COALESCE(?, location_lng),
+                   last_heartbeat = ?,
+                   status         = CASE WHEN status = 'OFFLINE' THEN 'ONLINE' ELSE status END,
+                   updated_at     = ?
+             WHERE serial_number = ?
+               AND (last_heartbeat IS NULL OR last_heartbeat <= ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int[] batchUpdateHeartbeats(Collection<HeartbeatSample> samples) {
+        if (samples.isEmpty()) return new int[0];
+
+        List<HeartbeatSample> rows = new ArrayList<>(samples);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Calendar utc = Calendar.getInstance(UTC); // Calendar is not thread-safe, one per call
+
+        int[][] chunks = jdbcTemplate.batchUpdate(HEARTBEAT_UPDATE_SQL, rows, rows.size(), (ps, sample) -> {
+            if (sample.getBatteryLevel() != null) ps.setInt(1, sample.getBatteryLevel());
+            else ps.setNull(1, Types.INTEGER);
+            ps.setString(2, sample.getIpAddress());
+            ps.setObject(3, sample.getLatitude(), Types.DOUBLE);
+            ps.setObject(4, sample.getLongitude(), Types.DOUBLE);
+            Timestamp heartbeatAt = Timestamp.from(sample.getHeartbeatAt());
+            ps.setTimestamp(5, heartbeatAt, utc);
+            ps.setTimestamp(6, now, utc);
+            ps.setString(7, sample.getSerialNumber());
+            ps.setTimestamp(8, heartbeatAt, utc);
+        });
+        return chunks.length == 0 ? new int[0] : chunks[0];
+    }
+}
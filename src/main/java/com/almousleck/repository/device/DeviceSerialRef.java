@@ -0,0 +1,7 @@
+package com.almousleck.repository.device;
+
+// Id + serial number projection, for scans that must not hydrate Device entities
+public interface DeviceSerialRef {
+    Long getId();
+    String getSerialNumber();
+}
@@ -0,0 +1,10 @@
+package com.almousleck.repository.device;
+
+// Columns the fleet statistics are built from, for scans that must not hydrate Device entities
+public interface DeviceStatsRow {
+    Long getId();
+    String getSerialNumber();
+    Integer getBatteryLevel();
+    String getFirmwareVersion();
+    String getType();
+}
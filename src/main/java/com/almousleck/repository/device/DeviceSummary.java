@@ -0,0 +1,8 @@
+package com.almousleck.repository.device;
+
+import java.time.Instant;
+
+// Columns of the device list, selected without hydrating Device or its owner
+public record DeviceSummary(Long id, String name, String serialNumber, Integer batteryLevel,
+                            String firmwareVersion, Instant lastHeartbeat, String ipAddress, Instant connectTime) {
+}
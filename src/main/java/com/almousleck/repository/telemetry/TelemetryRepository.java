@@ -0,0 +1,234 @@
+package com.almousleck.repository.telemetry;
+
+import com.almousleck.dto.telemetry.TelemetryPoint;
+import com.almousleck.dto.telemetry.TelemetrySample;
+import com.almousleck.enums.TelemetryResolution;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Plain JDBC access to the telemetry tables (V7). They are partitioned / composite-keyed
+ * append-only tables, so they are not mapped as JPA entities.
+ * All DATETIME columns hold UTC.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TelemetryRepository {
+
+    private static final String INSERT_SQL = """
+            INSERT IGNORE INTO device_telemetry (device_id, recorded_at, battery_level, location_lat, location_lng)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+
+    // Windows are whole minutes, so every touched bucket is recomputed from raw rows and reruns are idempotent
+    private static final String ROLLUP_MINUTE_SQL = """
+            INSERT INTO device_telemetry_1m
+                   (device_id, bucket_start, battery_min, battery_max, battery_sum, battery_count, sample_count)
+            SELECT * FROM (
+                SELECT device_id,
+                       DATE_FORMAT(recorded_at, '%Y-%m-%d %H:%i:00') AS minute_start,
+                       MIN(battery_level)               AS battery_min,
+                       MAX(battery_level)               AS battery_max,
+                       COALESCE(SUM(battery_level), 0)  AS battery_sum,
+                       COUNT(battery_level)             AS battery_count,
+                       COUNT(*)                         AS sample_count
+                  FROM device_telemetry
+                 WHERE recorded_at >= ? AND recorded_at < ?
+                 GROUP BY device_id, minute_start
+            ) AS r
+            ON DUPLICATE KEY UPDATE battery_min = r.battery_min, battery_max = r.battery_max,
+                                    battery_sum = r.battery_sum, battery_count = r.battery_count,
+                                    sample_count = r.sample_count
+            """;
+
+    private static final String ROLLUP_HOUR_SQL = """
+            INSERT INTO device_telemetry_1h
+                   (device_id, bucket_start, battery_min, battery_max, battery_sum, battery_count, sample_count)
+            SELECT * FROM (
+                SELECT device_id,
+                       DATE_FORMAT(bucket_start, '%Y-%m-%d %H:00:00') AS hour_start,
+                       MIN(battery_min)    AS battery_min,
+                       MAX(battery_max)    AS battery_max,
+                       SUM(battery_sum)    AS battery_sum,
+                       SUM(battery_count)  AS battery_count,
+                       SUM(sample_count)   AS sample_count
+                  FROM device_telemetry_1m
+                 WHERE bucket_start >= ? AND bucket_start < ?
+                 GROUP BY device_id, hour_start
+            ) AS r
+            ON DUPLICATE KEY UPDATE battery_min = r.battery_min, battery_max = r.battery_max,
+                                    battery_sum = r.battery_sum, battery_count = r.battery_count,
+                                    sample_count = r.sample_count
+            """;
+
+    private static final String UPSERT_STATE_SQL = """
+            INSERT INTO telemetry_rollup_state (tier, rolled_up_to) VALUES (?, ?) AS new
+            ON DUPLICATE KEY UPDATE rolled_up_to = GREATEST(telemetry_rollup_state.rolled_up_to, new.rolled_up_to)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public int[] batchInsert(Collection<TelemetrySample> samples) {
+        if (samples.isEmpty()) return new int[0];
+
+        List<TelemetrySample> rows = new ArrayList<>(samples);
+        int[][] chunks = jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, sample) -> {
+            ps.setLong(1, sample.getDeviceId());
+            ps.setObject(2, utc(sample.getRecordedAt()));
+            if (sample.getBatteryLevel() != null) ps.setInt(3, sample.getBatteryLevel());
+            else ps.setNull(3, Types.INTEGER);
+            if (sample.getLocationLat() != null) ps.setDouble(4, sample.getLocationLat());
+            else ps.setNull(4, Types.DOUBLE);
+            if (sample.getLocationLng() != null) ps.setDouble(5, sample.getLocationLng());
+            else ps.setNull(5, Types.DOUBLE);
+        });
+        return chunks.length == 0 ? new int[0] : chunks[0];
+    }
+
+    /** Aggregates raw rows in [from, to) into 1-minute buckets and records the tier as complete up to {@code to}. */
+    @Transactional
+    public int rollupMinutes(Instant from, Instant to) {
+        int buckets = jdbcTemplate.update(ROLLUP_MINUTE_SQL, utc(from), utc(to));
+        markRolledUpTo(TelemetryResolution.MINUTE, to);
+        return buckets;
+    }
+
+    /** Aggregates 1-minute buckets in [from, to) into 1-hour buckets and records the tier as complete up to {@code to}. */
+    @Transactional
+    public int rollupHours(Instant from, Instant to) {
+        int buckets = jdbcTemplate.update(ROLLUP_HOUR_SQL, utc(from), utc(to));
+        markRolledUpTo(TelemetryResolution.HOUR, to);
+        return buckets;
+    }
+
+    public Optional<Instant> findRolledUpTo(TelemetryResolution tier) {
+        return jdbcTemplate.query("SELECT rolled_up_to FROM telemetry_rollup_state WHERE tier = ?",
+                        (rs, i) -> instant(rs, "rolled_up_to"), tier.name())
+                .stream().findFirst();
+    }
+
+    public List<TelemetryPoint> findRaw(Long deviceId, Instant from, Instant to, int limit) {
+        return jdbcTemplate.query("""
+                        SELECT recorded_at, battery_level, location_lat, location_lng
+                          FROM device_telemetry
+                         WHERE device_id = ? AND recorded_at >= ? AND recorded_at < ?
+                         ORDER BY recorded_at
+                         LIMIT ?
+                        """,
+                (rs, i) -> {
+                    Integer battery = nullableInt(rs, "battery_level");
+                    return TelemetryPoint.builder()
+                            .timestamp(instant(rs, "recorded_at"))
+                            .batteryMin(battery)
+                            .batteryMax(battery)
+                            .batteryAvg(battery != null ? battery.doubleValue() : null)
+                            .sampleCount(1)
+                            .locationLat(nullableDouble(rs, "location_lat"))
+                            .locationLng(nullableDouble(rs, "location_lng"))
+                            .build();
+                },
+                deviceId, utc(from), utc(to), limit);
+    }
+
+    public List<TelemetryPoint> findBuckets(TelemetryResolution tier, Long deviceId, Instant from, Instant to) {
+        return jdbcTemplate.query("""
+                        SELECT bucket_start, battery_min, battery_max, battery_sum, battery_count, sample_count
+                          FROM %s
+                         WHERE device_id = ? AND bucket_start >= ? AND bucket_start < ?
+                         ORDER BY bucket_start
+                        """.formatted(rollupTable(tier)),
+                (rs, i) -> {
+                    int batteryCount = rs.getInt("battery_count");
+                    return TelemetryPoint.builder()
+                            .timestamp(instant(rs, "bucket_start"))
+                            .batteryMin(nullableInt(rs, "battery_min"))
+                            .batteryMax(nullableInt(rs, "battery_max"))
+                            .batteryAvg(batteryCount > 0 ? (double) rs.getLong("battery_sum") / batteryCount : null)
+                            .sampleCount(rs.getLong("sample_count"))
+                            .build();
+                },
+                deviceId, utc(from), utc(to));
+    }
+
+    // Deletes in chunks so retention never holds a long lock on the rollup table
+    public int deleteBucketsBefore(TelemetryResolution tier, Instant cutoff, int limit) {
+        return jdbcTemplate.update("DELETE FROM %s WHERE bucket_start < ? LIMIT ?".formatted(rollupTable(tier)),
+                utc(cutoff), limit);
+    }
+
+    public List<TelemetryPartition> findPartitions() {
+        return jdbcTemplate.query("""
+                        SELECT partition_name, partition_description
+                          FROM information_schema.partitions
+                         WHERE table_schema = DATABASE() AND table_name = 'device_telemetry'
+                           AND partition_name IS NOT NULL
+                        """,
+                (rs, i) -> {
+                    String description = rs.getString("partition_description");
+                    Long lessThanDays = "MAXVALUE".equalsIgnoreCase(description) ? null : Long.valueOf(description);
+                    return new TelemetryPartition(rs.getString("partition_name"), lessThanDays);
+                });
+    }
+
+    /** Splits the catch-all {@code p_future} partition into the given daily partitions (name -> TO_DAYS upper bound). */
+    public void addPartitions(SortedMap<Long, String> partitionsByUpperBound) {
+        if (partitionsByUpperBound.isEmpty()) return;
+
+        String partitions = partitionsByUpperBound.entrySet().stream()
+                .map(entry -> "PARTITION %s VALUES LESS THAN (%d)".formatted(entry.getValue(), entry.getKey()))
+                .collect(Collectors.joining(", "));
+        jdbcTemplate.execute("ALTER TABLE device_telemetry REORGANIZE PARTITION p_future INTO (%s, PARTITION p_future VALUES LESS THAN MAXVALUE)"
+                .formatted(partitions));
+    }
+
+    public void dropPartitions(Collection<String> names) {
+        if (names.isEmpty()) return;
+        jdbcTemplate.execute("ALTER TABLE device_telemetry DROP PARTITION " + String.join(", ", names));
+    }
+
+    // Helper methods
+    private void markRolledUpTo(TelemetryResolution tier, Instant to) {
+        jdbcTemplate.update(UPSERT_STATE_SQL, tier.name(), utc(to));
+    }
+
+    private static String rollupTable(TelemetryResolution tier) {
+        return switch (tier) {
+            case MINUTE -> "device_telemetry_1m";
+            case HOUR -> "device_telemetry_1h";
+            case RAW -> throw new IllegalArgumentException("Raw telemetry has no rollup table");
+        };
+    }
+
+    // DATETIME columns are UTC wall-clock; bound and read as LocalDateTime so no zone conversion ever applies
+    private static LocalDateTime utc(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+
+    private static Instant instant(ResultSet rs, String column) throws SQLException {
+        return rs.getObject(column, LocalDateTime.class).toInstant(ZoneOffset.UTC);
+    }
+
+    private static Integer nullableInt(ResultSet rs, String column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Double nullableDouble(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    public record TelemetryPartition(String name, Long lessThanDays) { // lessThanDays null = MAXVALUE
+    }
+}
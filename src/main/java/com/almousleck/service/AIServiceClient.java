@@ -0,0 +1,120 @@
+package com.almousleck.service;
+
+import com.almousleck.config.server.AiServiceConfig;
+import com.almousleck.dto.signal.SignalMessage;
+import com.almousleck.exceptions.AiServiceException;
+import com.almousleck.websocket.SignalMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Client for the Python/FastAPI AI core. Calls are fully asynchronous: the request is handed to the
+ * non-blocking HttpClient and the caller gets a future, so no STOMP inbound thread waits on AI latency.
+ * A bulkhead caps the calls in flight; beyond it signals are refused at once instead of queueing
+ * behind a slow AI core. Each signal type has its own timeout (an emergency should not wait as long
+ * as text recognition).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AIServiceClient {
+
+    private final AiServiceConfig config;
+    private final HttpClient aiHttpClient;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final SignalMetrics signalMetrics;
+
+    private Semaphore bulkhead;
+    private URI signalUri;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    void init() {
+        bulkhead = new Semaphore(config.getMaxInFlight());
+        if (config.isEnabled()) signalUri = URI.create(config.getBaseUrl() + config.getSignalPath());
+        Gauge.builder("ai.service.in-flight", bulkhead, b -> config.getMaxInFlight() - b.availablePermits())
+                .description("Calls to the AI core waiting for a response")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("ai.service.rejected")
+                .description("Signals refused because the AI core bulkhead was full")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Sends the signal to the AI core.
+     *
+     * @return the AI core's result; fails with {@link AiServiceException} when the bulkhead is full or the
+     * AI core answers with an error, and with {@link HttpTimeoutException} when the signal type's timeout passes
+     */
+    public CompletableFuture<SignalMessage> processSignal(SignalMessage signal) {
+        if (!config.isEnabled())
+            return CompletableFuture.failedFuture(new AiServiceException("AI core integration is disabled"));
+        if (!bulkhead.tryAcquire()) {
+            rejectedCounter.increment();
+            return CompletableFuture.failedFuture(new AiServiceException("AI core busy, too many signals in flight"));
+        }
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(signalUri)
+                    .timeout(config.timeoutFor(signal.getType()))
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(signal)))
+                    .build();
+        } catch (JsonProcessingException ex) {
+            bulkhead.release();
+            return CompletableFuture.failedFuture(new AiServiceException("Signal could not be serialized", ex));
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return aiHttpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(this::readResult)
+                .whenComplete((result, ex) -> {
+                    bulkhead.release();
+                    signalMetrics.stopAiCall(sample, signal.getType(), outcomeOf(ex));
+                });
+    }
+
+    // Helper methods
+    private SignalMessage readResult(HttpResponse<byte[]> response) {
+        if (response.statusCode() / 100 != 2)
+            throw new AiServiceException("AI core answered HTTP " + response.statusCode());
+        try {
+            return objectMapper.readValue(response.body(), SignalMessage.class);
+        } catch (IOException ex) {
+            throw new AiServiceException("AI core result could not be read", ex);
+        }
+    }
+
+    private static String outcomeOf(Throwable ex) {
+        if (ex == null) return "success";
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        return cause instanceof HttpTimeoutException ? "timeout" : "error";
+    }
+}
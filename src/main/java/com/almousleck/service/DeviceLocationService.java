@@ -0,0 +1,19 @@
+package com.almousleck.service;
+
+import com.almousleck.dto.device.NearbyDeviceResponse;
+import org.springframework.data.geo.Point;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface DeviceLocationService {
+    // Redis GEO cannot index the poles, positions beyond this latitude are rejected by GEOADD
+    double MAX_LATITUDE = 85.05112878;
+
+    void updateLocation(String serialNumber, double latitude, double longitude);
+    void updateLocations(Map<String, Point> locations); // Point x = longitude, y = latitude
+    void remove(String serialNumber);
+    void remove(Collection<String> serialNumbers);
+    List<NearbyDeviceResponse> findNearby(double latitude, double longitude, double radiusMeters, int limit);
+}
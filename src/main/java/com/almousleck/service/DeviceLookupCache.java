@@ -0,0 +1,83 @@
+package com.almousleck.service;
+
+import com.almousleck.enums.DeviceStatus;
+import com.almousleck.repository.device.DeviceLookup;
+import com.almousleck.repository.device.DeviceRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-process near-cache of serial number -> (device id, owner id, status) for the device hot paths.
+ * Only existing devices are cached; unknown serials always go to the database.
+ * Entries are invalidated locally on pair/unpair and expire after the TTL,
+ * which bounds how stale another node's view can get.
+ */
+@Service
+@RequiredArgsConstructor
+public class DeviceLookupCache {
+
+    @Value("${app.device.lookup-cache.max-size:100000}")
+    private long maxSize;
+    @Value("${app.device.lookup-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final DeviceRepository deviceRepository;
+    private final MeterRegistry meterRegistry;
+
+    private Cache<String, DeviceLookup> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "device.lookup");
+    }
+
+    public Optional<DeviceLookup> find(String serialNumber) {
+        return Optional.ofNullable(cache.get(serialNumber,
+                serial -> deviceRepository.findLookupsBySerialNumberIn(List.of(serial)).stream().findFirst().orElse(null)));
+    }
+
+    // Known devices among the given serials; all misses are loaded with one query
+    public Map<String, DeviceLookup> findAll(Collection<String> serialNumbers) {
+        if (serialNumbers.isEmpty()) return Map.of();
+
+        return cache.getAll(new LinkedHashSet<>(serialNumbers), missing ->
+                deviceRepository.findLookupsBySerialNumberIn(new ArrayList<>(missing)).stream()
+                        .collect(Collectors.toMap(DeviceLookup::serialNumber, Function.identity())));
+    }
+
+    // Keep the cached status in step with a transition this node just wrote
+    public void updateStatus(String serialNumber, DeviceStatus status) {
+        cache.asMap().computeIfPresent(serialNumber, (serial, lookup) -> lookup.withStatus(status));
+    }
+
+    public void invalidate(String serialNumber) {
+        cache.invalidate(serialNumber);
+        // Drop it again after commit so a concurrent reload cannot cache the pre-commit row
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(serialNumber);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.almousleck.service;
+
+import com.almousleck.enums.DeviceStatus;
+import com.almousleck.event.DeviceDisconnectedEvent;
+import com.almousleck.repository.device.DeviceRepository;
+import com.almousleck.repository.device.DeviceSerialRef;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Moves devices whose presence expired to OFFLINE in MySQL.
+ * Each tick reads the presence entries that expired since the last tick (bounded by batch-size)
+ * and flips them with one UPDATE, so the devices table is never scanned.
+ * A slower keyset pass over ONLINE rows catches devices that have no presence entry at all,
+ * e.g. after a Redis restart.
+ * Both passes run under a Redis lock shared by all replicas. A replica whose watermark lags
+ * re-reads expiries another one already handled, and the ONLINE check then finds nothing left to
+ * flip, so each expiry publishes one DeviceDisconnectedEvent across the cluster.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeviceOfflineSweeper {
+
+    private static final String LOCK_KEY = "device:offline-sweeper:lock";
+    private static final Duration LOCK_TIMEOUT = Duration.ofSeconds(30); // Well above one tick
+
+    @Value("${app.device.offline-sweeper.batch-size:500}")
+    private int batchSize; // Expired devices handled per tick
+    @Value("${app.device.offline-sweeper.reconcile-page-size:200}")
+    private int reconcilePageSize; // ONLINE rows checked per reconcile tick
+    @Value("${app.device.presence.retention-seconds:900}")
+    private long retentionSeconds;
+
+    private final PresenceService presenceService;
+    private final DeviceRepository deviceRepository;
+    private final HeartbeatSignificanceFilter heartbeatSignificanceFilter;
+    private final DeviceLookupCache deviceLookupCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RedisLock redisLock;
+    private final MeterRegistry meterRegistry;
+
+    private final ReentrantLock sweepLock = new ReentrantLock();
+
+    private Instant watermark; // Expiries with last-seen before here are handled
+    private long handledAtWatermark; // ... and this many of those with last-seen exactly here
+    private long reconcileCursor; // Last device id checked by the reconcile pass
+    private Counter expiredCounter;
+
+    @PostConstruct
+    void init() {
+        // Entries older than the retention window are already trimmed, nothing before that to catch up on
+        watermark = Instant.now().minus(presenceService.presenceTtl()).minusSeconds(retentionSeconds);
+        expiredCounter = Counter.builder("device.presence.expired")
+                .description("Devices marked OFFLINE after their presence expired")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.device.offline-sweeper.interval-ms:5000}")
+    public void sweep() {
+        if (!sweepLock.tryLock()) return;
+        try {
+            Instant upTo = Instant.now().minus(presenceService.presenceTtl());
+            // A TTL raised by a longer heartbeat interval moves upTo back, never re-sweep what is done
+            if (upTo.isBefore(watermark)) return;
+            String lockToken = redisLock.tryAcquire(LOCK_KEY, LOCK_TIMEOUT);
+            if (lockToken == null) return;
+            try {
+                Map<String, Instant> expired = presenceService.findLastSeenBetween(
+                        watermark, upTo, handledAtWatermark, batchSize);
+                markOffline(expired);
+
+                // A full page may stop inside a run of equal last-seen times, resume right after it
+                Instant reached = expired.size() >= batchSize
+                        ? expired.values().stream().max(Comparator.naturalOrder()).orElseThrow()
+                        : upTo;
+                long atReached = expired.values().stream().filter(reached::equals).count();
+                handledAtWatermark = (reached.equals(watermark) ? handledAtWatermark : 0) + atReached;
+                watermark = reached;
+            } finally {
+                redisLock.release(LOCK_KEY, lockToken);
+            }
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.device.offline-sweeper.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        if (!sweepLock.tryLock()) return;
+        try {
+            String lockToken = redisLock.tryAcquire(LOCK_KEY, LOCK_TIMEOUT);
+            if (lockToken == null) return;
+            try {
+                List<DeviceSerialRef> page = deviceRepository.findByStatusAndIdGreaterThanOrderByIdAsc(
+                        DeviceStatus.ONLINE, reconcileCursor, Limit.of(reconcilePageSize));
+                reconcileCursor = page.size() < reconcilePageSize ? 0 : page.get(page.size() - 1).getId();
+                if (page.isEmpty()) return;
+
+                Map<String, Boolean> online = presenceService.isOnline(
+                        page.stream().map(DeviceSerialRef::getSerialNumber).toList());
+
+                Map<String, Instant> stale = new LinkedHashMap<>();
+                online.forEach((serial, isOnline) -> {
+                    if (!isOnline) stale.put(serial, null); // Last-seen time unknown
+                });
+                markOffline(stale);
+            } finally {
+                redisLock.release(LOCK_KEY, lockToken);
+            }
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    // Helper methods
+    private void markOffline(Map<String, Instant> lastSeen) {
+        if (lastSeen.isEmpty()) return;
+
+        // Skip devices that beat again since the range was read
+        Map<String, Boolean> online = presenceService.isOnline(lastSeen.keySet());
+        List<String> candidates = lastSeen.keySet().stream()
+                .filter(serial -> !online.getOrDefault(serial, false))
+                .toList();
+        if (candidates.isEmpty()) return;
+
+        // Only devices the database still has ONLINE produce an event; explicit disconnects already did
+        List<String> transitioned = deviceRepository.findSerialNumbersByStatus(DeviceStatus.ONLINE, candidates);
+        if (transitioned.isEmpty()) return;
+
+        deviceRepository.markOfflineIfOnline(transitioned, Instant.now());
+        heartbeatSignificanceFilter.evict(transitioned); // first beat after coming back, on any node, flips the row to ONLINE
+        for (String serialNumber : transitioned) {
+            deviceLookupCache.updateStatus(serialNumber, DeviceStatus.OFFLINE);
+            eventPublisher.publishEvent(new DeviceDisconnectedEvent(
+                    serialNumber, lastSeen.get(serialNumber), DeviceDisconnectedEvent.Reason.EXPIRED));
+        }
+        expiredCounter.increment(transitioned.size());
+        log.info("Marked {} devices OFFLINE after presence expiry", transitioned.size());
+    }
+}
@@ -1,18 +1,26 @@
 package com.almousleck.service;
 
+import com.almousleck.dto.device.BatchHeartbeatRequest;
+import com.almousleck.dto.device.BatchHeartbeatResponse;
 import com.almousleck.dto.device.DevicePairRequest;
 import com.almousleck.dto.device.DeviceResponse;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import com.almousleck.dto.device.DeviceSliceResponse;
+import com.almousleck.dto.device.DeviceTokenResponse;
+import com.almousleck.dto.device.HeartbeatResponse;
 
-import java.util.List;
+import java.util.Collection;
 
 public interface DeviceService {
     DeviceResponse pairDevice(DevicePairRequest request, Long userId);
-    Page<DeviceResponse> getMyDevices(Long userId, Pageable pageable);
-    void updateHeartbeat(String serialNumber, Integer batteryLevel, String ipAddress);
+    DeviceSliceResponse getMyDevices(Long userId, Long afterId, int size, boolean withTotal);
+    HeartbeatResponse updateHeartbeat(String serialNumber, Integer batteryLevel, String ipAddress, Double latitude, Double longitude);
+    BatchHeartbeatResponse updateHeartbeats(BatchHeartbeatRequest request);
     void updateFirmwareVersion(String serialNumber, String firmwareVersion);
     void markDeviceOnline(String serialNumber);
     void markDeviceOffline(String serialNumber);
+    void markDevicesOnline(Collection<String> serialNumbers);  // Unknown serials are skipped
+    void markDevicesOffline(Collection<String> serialNumbers);
     void unpairDevice(String serialNumber, Long userId);
+    void reportLocation(String serialNumber, Double latitude, Double longitude, Long userId);
+    DeviceTokenResponse reissueDeviceToken(String serialNumber, Long userId);
 }
@@ -0,0 +1,221 @@
+package com.almousleck.service;
+
+import com.almousleck.config.SchedulingConfig;
+import com.almousleck.dto.device.FleetStatsResponse;
+import com.almousleck.repository.device.DeviceRepository;
+import com.almousleck.repository.device.DeviceStatsRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Fleet statistics (battery histogram, firmware and type breakdown) kept as in-memory counters.
+ * Pair/unpair/heartbeat/firmware paths move one device between buckets, so reading the
+ * dashboard is a copy of a few counters instead of a scan of the devices table.
+ * Online count comes from the presence ZSET (ZCOUNT), which is already cluster-wide.
+ * Counters only see this node's updates, so they are periodically rebuilt from MySQL.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FleetStatsService {
+
+    private static final int BATTERY_BUCKETS = 10; // 0-9, 10-19, ... 90-100
+    private static final int UNKNOWN_BATTERY = BATTERY_BUCKETS;
+    private static final String UNKNOWN = "unknown";
+
+    @Value("${app.device.fleet-stats.reconcile-page-size:1000}")
+    private int reconcilePageSize;
+
+    private final DeviceRepository deviceRepository;
+    private final PresenceService presenceService;
+
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+
+    private volatile FleetCounters counters = new FleetCounters();
+    private volatile FleetCounters rebuilding; // Also receives live updates while a rebuild is running
+    private volatile Instant reconciledAt;
+
+    public void onPaired(String serialNumber, Integer batteryLevel, String firmwareVersion, String type) {
+        DeviceStats stats = new DeviceStats(bucketOf(batteryLevel), nameOf(firmwareVersion), nameOf(type));
+        apply(target -> target.put(serialNumber, stats));
+    }
+
+    public void onUnpaired(String serialNumber) {
+        apply(target -> target.remove(serialNumber));
+    }
+
+    public void onBatteryLevel(String serialNumber, Integer batteryLevel) {
+        if (batteryLevel == null) return; // Not reported in this beat
+        int bucket = bucketOf(batteryLevel);
+        apply(target -> target.update(serialNumber, stats -> stats.withBatteryBucket(bucket)));
+    }
+
+    public void onFirmwareVersion(String serialNumber, String firmwareVersion) {
+        String firmware = nameOf(firmwareVersion);
+        apply(target -> target.update(serialNumber, stats -> stats.withFirmware(firmware)));
+    }
+
+    public FleetStatsResponse getStats() {
+        FleetCounters snapshot = counters;
+
+        Map<String, Long> battery = new LinkedHashMap<>();
+        for (int i = 0; i < BATTERY_BUCKETS; i++) {
+            String label = (i * 10) + "-" + (i == BATTERY_BUCKETS - 1 ? 100 : i * 10 + 9);
+            battery.put(label, snapshot.batteryBuckets.get(i));
+        }
+        battery.put(UNKNOWN, snapshot.batteryBuckets.get(UNKNOWN_BATTERY));
+
+        return FleetStatsResponse.builder()
+                .totalDevices(snapshot.devices.size())
+                .onlineDevices(presenceService.countOnline())
+                .batteryHistogram(battery)
+                .firmwareVersions(nonZero(snapshot.firmware))
+                .deviceTypes(nonZero(snapshot.types))
+                .reconciledAt(reconciledAt)
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        reconcile();
+    }
+
+    // Rebuilds the counters from MySQL in keyset pages, then swaps them in
+    @Scheduled(fixedDelayString = "${app.device.fleet-stats.reconcile-interval-ms:600000}",
+            initialDelayString = "${app.device.fleet-stats.reconcile-interval-ms:600000}",
+            scheduler = SchedulingConfig.BATCH_SCHEDULER)
+    public void reconcile() {
+        if (!reconcileLock.tryLock()) return;
+        try {
+            FleetCounters fresh = new FleetCounters();
+            fresh.removed = ConcurrentHashMap.newKeySet();
+            rebuilding = fresh;
+
+            long cursor = 0;
+            List<DeviceStatsRow> page;
+            do {
+                page = deviceRepository.findByOwnerIsNotNullAndIdGreaterThanOrderByIdAsc(cursor, Limit.of(reconcilePageSize));
+                for (DeviceStatsRow row : page) {
+                    // A live update that landed during the rebuild is newer than the row, keep it;
+                    // so is an unpair, even if this page was read before it committed
+                    fresh.putIfAbsent(row.getSerialNumber(), new DeviceStats(
+                            bucketOf(row.getBatteryLevel()), nameOf(row.getFirmwareVersion()), nameOf(row.getType())));
+                }
+                if (!page.isEmpty()) cursor = page.get(page.size() - 1).getId();
+            } while (page.size() == reconcilePageSize);
+            fresh.removed = null; // No more rows to skip
+
+            int drift = Math.abs(fresh.devices.size() - counters.devices.size());
+            counters = fresh;
+            reconciledAt = Instant.now();
+            log.debug("Fleet stats rebuilt: {} devices, size drift {}", fresh.devices.size(), drift);
+        } catch (RuntimeException ex) {
+            log.error("Fleet stats reconcile failed, keeping incremental counters: {}", ex.getMessage());
+        } finally {
+            rebuilding = null;
+            reconcileLock.unlock();
+        }
+    }
+
+    // Helper methods
+    private void apply(Consumer<FleetCounters> update) {
+        update.accept(counters);
+        FleetCounters next = rebuilding;
+        if (next != null) update.accept(next);
+    }
+
+    private static int bucketOf(Integer batteryLevel) {
+        if (batteryLevel == null) return UNKNOWN_BATTERY;
+        return Math.min(Math.max(batteryLevel, 0) / 10, BATTERY_BUCKETS - 1);
+    }
+
+    private static String nameOf(String value) {
+        return value == null || value.isBlank() ? UNKNOWN : value;
+    }
+
+    private static Map<String, Long> nonZero(Map<String, AtomicLong> counts) {
+        Map<String, Long> result = new TreeMap<>();
+        counts.forEach((name, count) -> {
+            long value = count.get();
+            if (value > 0) result.put(name, value);
+        });
+        return result;
+    }
+
+    private record DeviceStats(int batteryBucket, String firmware, String type) {
+        DeviceStats withBatteryBucket(int bucket) {
+            return bucket == batteryBucket ? this : new DeviceStats(bucket, firmware, type);
+        }
+
+        DeviceStats withFirmware(String version) {
+            return version.equals(firmware) ? this : new DeviceStats(batteryBucket, version, type);
+        }
+    }
+
+    // Per-device entries plus the aggregates derived from them; each device change moves its counts atomically
+    private static final class FleetCounters {
+        final Map<String, DeviceStats> devices = new ConcurrentHashMap<>();
+        final AtomicLongArray batteryBuckets = new AtomicLongArray(BATTERY_BUCKETS + 1);
+        final Map<String, AtomicLong> firmware = new ConcurrentHashMap<>();
+        final Map<String, AtomicLong> types = new ConcurrentHashMap<>();
+        volatile Set<String> removed; // While rebuilding: devices unpaired since the rebuild started
+
+        // All three run inside compute on the device, so a row read before an unpair cannot slip in after it
+        void put(String serialNumber, DeviceStats stats) {
+            devices.compute(serialNumber, (serial, previous) -> {
+                Set<String> tombstones = removed;
+                if (tombstones != null) tombstones.remove(serial); // Paired again
+                return move(previous, stats);
+            });
+        }
+
+        void putIfAbsent(String serialNumber, DeviceStats stats) {
+            devices.compute(serialNumber, (serial, previous) -> {
+                Set<String> tombstones = removed;
+                if (previous != null || (tombstones != null && tombstones.contains(serial))) return previous;
+                return move(null, stats);
+            });
+        }
+
+        void remove(String serialNumber) {
+            devices.compute(serialNumber, (serial, previous) -> {
+                Set<String> tombstones = removed;
+                if (tombstones != null) tombstones.add(serial);
+                return previous != null ? move(previous, null) : null;
+            });
+        }
+
+        // Devices this node has not seen yet are left to the next rebuild
+        void update(String serialNumber, UnaryOperator<DeviceStats> change) {
+            devices.computeIfPresent(serialNumber, (serial, previous) -> move(previous, change.apply(previous)));
+        }
+
+        private DeviceStats move(DeviceStats from, DeviceStats to) {
+            if (from == to) return to;
+            if (from != null) count(from, -1);
+            if (to != null) count(to, 1);
+            return to;
+        }
+
+        private void count(DeviceStats stats, int delta) {
+            batteryBuckets.addAndGet(stats.batteryBucket(), delta);
+            firmware.computeIfAbsent(stats.firmware(), name -> new AtomicLong()).addAndGet(delta);
+            types.computeIfAbsent(stats.type(), name -> new AtomicLong()).addAndGet(delta);
+        }
+    }
+}
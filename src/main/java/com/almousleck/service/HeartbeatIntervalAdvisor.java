@@ -0,0 +1,161 @@
+package com.almousleck.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides how often devices should beat, and keeps the presence TTL in step with it.
+ * The interval is stretched when this node ingests more beats than its target rate, when the
+ * write-behind flush falls behind, or when the online fleet would exceed the cluster-wide budget
+ * at the base interval; it relaxes slowly once the pressure is gone.
+ * Each node publishes the longest interval it may still have handed out to a Redis hash, and the
+ * presence TTL follows the longest one in the cluster, so no node expires a device another node
+ * told to beat less often.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HeartbeatIntervalAdvisor {
+
+    private static final String INTERVALS_KEY = "device:heartbeat:intervals";
+    private static final double RELAX_FACTOR = 0.8;  // Per recompute, when there is no pressure
+    private static final double MAX_STRETCH = 2.0;   // Per recompute, so one noisy sample cannot jump to the max
+
+    @Value("${app.device.heartbeat.interval.base-seconds:30}")
+    private int baseSeconds;
+    @Value("${app.device.heartbeat.interval.max-seconds:120}")
+    private int maxSeconds;
+    @Value("${app.device.heartbeat.interval.node-target-rate:2000}")
+    private double nodeTargetRate; // Beats per second one node should ingest
+    @Value("${app.device.heartbeat.interval.fleet-target-rate:10000}")
+    private double fleetTargetRate; // Beats per second for the whole cluster
+    @Value("${app.device.heartbeat.interval.flush-lag-target-ms:5000}")
+    private long flushLagTargetMillis;
+    @Value("${app.device.heartbeat.interval.ttl-multiplier:2.5}")
+    private double ttlMultiplier; // Missed beats tolerated before a device counts as offline
+    @Value("${app.device.heartbeat.interval.jitter-ratio:0.1}")
+    private double jitterRatio;   // Spreads devices told the same interval across it
+
+    private final PresenceService presenceService;
+    private final HeartbeatWriteBuffer heartbeatWriteBuffer;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final LongAdder beats = new LongAdder();
+
+    private volatile double intervalSeconds;
+    private double ceilingSeconds;     // Longest interval devices may still be using
+    private long ceilingUntilMillis;   // When devices told the ceiling have all beaten again
+    private long lastRecomputeNanos;
+
+    @PostConstruct
+    void init() {
+        intervalSeconds = baseSeconds;
+        ceilingSeconds = baseSeconds;
+        lastRecomputeNanos = System.nanoTime();
+        Gauge.builder("device.heartbeat.interval", this, advisor -> advisor.intervalSeconds)
+                .baseUnit("seconds")
+                .description("Heartbeat interval currently advised to devices")
+                .register(meterRegistry);
+        Gauge.builder("device.presence.ttl", presenceService, presence -> presence.presenceTtl().toSeconds())
+                .baseUnit("seconds")
+                .description("Presence TTL in effect, follows the longest advised interval in the cluster")
+                .register(meterRegistry);
+    }
+
+    public void recordBeats(int count) {
+        beats.add(count);
+    }
+
+    // Advised interval for the next beat, jittered so devices do not synchronise
+    public int nextIntervalSeconds() {
+        double jitter = 1 + ThreadLocalRandom.current().nextDouble(-jitterRatio, jitterRatio);
+        return (int) Math.max(1, Math.round(intervalSeconds * jitter));
+    }
+
+    @Scheduled(fixedDelayString = "${app.device.heartbeat.interval.recompute-interval-ms:5000}")
+    public synchronized void recompute() {
+        long now = System.nanoTime();
+        double elapsedSeconds = Math.max((now - lastRecomputeNanos) / 1e9, 0.001);
+        lastRecomputeNanos = now;
+        double rate = beats.sumThenReset() / elapsedSeconds;
+
+        try {
+            double fleetFloor = presenceService.countOnline() / fleetTargetRate;
+            double pressure = Math.max(rate / nodeTargetRate,
+                    (double) heartbeatWriteBuffer.lastFlushLagMillis() / flushLagTargetMillis);
+            updateInterval(pressure, fleetFloor);
+            publishCeiling();
+        } catch (DataAccessException ex) {
+            // Redis unavailable: keep the last interval and TTL rather than guessing
+            log.warn("Heartbeat interval recompute skipped: {}", ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void withdraw() {
+        try {
+            stringRedisTemplate.opsForHash().delete(INTERVALS_KEY, nodeId);
+        } catch (DataAccessException ex) {
+            log.debug("Could not withdraw heartbeat interval of node {}: {}", nodeId, ex.getMessage());
+        }
+    }
+
+    // Helper methods
+    private void updateInterval(double pressure, double fleetFloor) {
+        double current = intervalSeconds;
+        double next = pressure > 1
+                ? current * Math.min(pressure, MAX_STRETCH)
+                : pressure < 0.5 ? current * RELAX_FACTOR : current;
+        next = Math.min(Math.max(Math.max(next, fleetFloor), baseSeconds), maxSeconds);
+
+        long nowMillis = System.currentTimeMillis();
+        if (next >= ceilingSeconds) {
+            ceilingSeconds = next;
+            ceilingUntilMillis = nowMillis + (long) (next * 1000);
+        } else if (nowMillis >= ceilingUntilMillis) {
+            // Everyone told the old ceiling has beaten since, only the last tick's interval can still be in use
+            ceilingSeconds = Math.max(current, next);
+            ceilingUntilMillis = nowMillis + (long) (ceilingSeconds * 1000);
+        }
+
+        if (Math.abs(next - current) >= 1)
+            log.info("Heartbeat interval {}s -> {}s (pressure {}, fleet floor {}s)",
+                    Math.round(current), Math.round(next), String.format("%.2f", pressure), Math.round(fleetFloor));
+        intervalSeconds = next;
+    }
+
+    private void publishCeiling() {
+        long nowMillis = System.currentTimeMillis();
+        stringRedisTemplate.opsForHash().put(INTERVALS_KEY, nodeId, (long) Math.ceil(ceilingSeconds) + ":" + nowMillis);
+
+        // Entries a node stopped refreshing (crashed without withdrawing) age out after two max intervals
+        long staleBefore = nowMillis - maxSeconds * 2000L;
+        double clusterCeiling = ceilingSeconds;
+        for (Map.Entry<Object, Object> entry : stringRedisTemplate.opsForHash().entries(INTERVALS_KEY).entrySet()) {
+            String[] value = entry.getValue().toString().split(":");
+            if (Long.parseLong(value[1]) < staleBefore) {
+                stringRedisTemplate.opsForHash().delete(INTERVALS_KEY, entry.getKey());
+                continue;
+            }
+            clusterCeiling = Math.max(clusterCeiling, Double.parseDouble(value[0]));
+        }
+        presenceService.adjustTtl(Duration.ofMillis((long) (clusterCeiling * ttlMultiplier * 1000)));
+    }
+}
@@ -0,0 +1,143 @@
+package com.almousleck.service;
+
+import com.almousleck.dto.device.HeartbeatSample;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides whether a heartbeat is worth a MySQL write.
+ * Redis presence is refreshed on every beat anyway, so the devices row only needs to change when
+ * the battery moved by more than the configured delta, the IP changed, or the row got too stale.
+ * Snapshots are kept per node, so an eviction (the device went OFFLINE) is published to every
+ * node over Redis pub/sub: a device that comes back through another node gets its first beat written.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HeartbeatSignificanceFilter implements MessageListener {
+
+    private static final String EVICT_CHANNEL = "device:heartbeat:evict"; // Newline-separated serial numbers
+
+    @Value("${app.device.heartbeat.significance.battery-delta:5}")
+    private int batteryDelta;
+    @Value("${app.device.heartbeat.significance.max-staleness-seconds:300}")
+    private long maxStalenessSeconds;
+    @Value("${app.device.heartbeat.significance.max-tracked:100000}")
+    private int maxTracked; // Devices beyond this are not tracked and always persisted
+
+    private final MeterRegistry meterRegistry;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    // serial -> what was last handed to persistence for that device
+    private final Map<String, PersistedSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    private Counter persistedCounter;
+    private Counter suppressedCounter;
+
+    @PostConstruct
+    void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(EVICT_CHANNEL));
+        persistedCounter = Counter.builder("device.heartbeat.writes")
+                .tag("outcome", "persisted")
+                .description("Heartbeats forwarded to the database")
+                .register(meterRegistry);
+        suppressedCounter = Counter.builder("device.heartbeat.writes")
+                .tag("outcome", "suppressed")
+                .description("Heartbeats that only refreshed presence, no database write")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns true if the heartbeat changes the device row enough to be written,
+     * and in that case records it as the new last-persisted snapshot.
+     */
+    public boolean shouldPersist(HeartbeatSample sample) {
+        String serialNumber = sample.getSerialNumber();
+        if (snapshots.size() >= maxTracked && !snapshots.containsKey(serialNumber)) {
+            persistedCounter.increment();
+            return true;
+        }
+
+        boolean[] significant = {false};
+        snapshots.compute(serialNumber, (serial, last) -> {
+            if (last == null || isSignificant(last, sample)) {
+                significant[0] = true;
+                return last == null ? PersistedSnapshot.of(sample) : last.update(sample);
+            }
+            return last;
+        });
+
+        (significant[0] ? persistedCounter : suppressedCounter).increment();
+        return significant[0];
+    }
+
+    // Forget the snapshot on every node so the next heartbeat of this device is written unconditionally
+    public void evict(String serialNumber) {
+        evict(List.of(serialNumber));
+    }
+
+    public void evict(Collection<String> serialNumbers) {
+        if (serialNumbers.isEmpty()) return;
+        snapshots.keySet().removeAll(serialNumbers);
+        try {
+            stringRedisTemplate.convertAndSend(EVICT_CHANNEL, String.join("\n", serialNumbers));
+        } catch (DataAccessException ex) {
+            // Other nodes write the device again once their snapshot is stale
+            log.warn("Heartbeat snapshot eviction of {} devices not published: {}", serialNumbers.size(), ex.getMessage());
+        }
+    }
+
+    // Evictions published by any node, this one included
+    @Override
+    public void onMessage(@NonNull Message message, byte[] pattern) {
+        for (String serialNumber : new String(message.getBody(), StandardCharsets.UTF_8).split("\n"))
+            snapshots.remove(serialNumber);
+    }
+
+    // Helper methods
+    private boolean isSignificant(PersistedSnapshot last, HeartbeatSample sample) {
+        if (sample.getBatteryLevel() != null
+                && (last.batteryLevel() == null || Math.abs(sample.getBatteryLevel() - last.batteryLevel()) >= batteryDelta))
+            return true;
+
+        if (sample.getIpAddress() != null && !sample.getIpAddress().equals(last.ipAddress()))
+            return true;
+
+        return Duration.between(last.persistedAt(), sample.getHeartbeatAt()).getSeconds() >= maxStalenessSeconds;
+    }
+
+    private record PersistedSnapshot(Integer batteryLevel, String ipAddress, Instant persistedAt) {
+        static PersistedSnapshot of(HeartbeatSample sample) {
+            return new PersistedSnapshot(sample.getBatteryLevel(), sample.getIpAddress(), sample.getHeartbeatAt());
+        }
+
+        // Null fields in a beat mean "not reported", keep what was persisted before
+        PersistedSnapshot update(HeartbeatSample sample) {
+            return new PersistedSnapshot(
+                    sample.getBatteryLevel() != null ? sample.getBatteryLevel() : batteryLevel,
+                    sample.getIpAddress() != null ? sample.getIpAddress() : ipAddress,
+                    sample.getHeartbeatAt());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.almousleck.service;
+
+import com.almousleck.dto.device.HeartbeatSample;
+import com.almousleck.repository.device.DeviceRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for device heartbeats.
+ * Keeps only the latest battery/IP/lastHeartbeat per serial number and flushes them
+ * on a timer as one JDBC batch UPDATE, instead of a SELECT + entity save per heartbeat.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HeartbeatWriteBuffer {
+
+    @Value("${app.device.heartbeat.write-behind.enabled:true}")
+    private boolean enabled;
+    @Value("${app.device.heartbeat.write-behind.max-pending:50000}")
+    private int maxPending; // Distinct serials held in memory before falling back to synchronous writes
+
+    private final DeviceRepository deviceRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, PendingHeartbeat> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private Timer flushTimer;
+    private Timer flushLagTimer;
+    private Counter flushedCounter;
+    private Counter overflowCounter;
+    private Counter unknownSerialCounter;
+    private volatile long lastFlushLagMillis; // Age of the oldest heartbeat in the latest batch, 0 once idle
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("device.heartbeat.buffer.pending", pending, Map::size)
+                .description("Heartbeats waiting for the next flush")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("device.heartbeat.flush.duration")
+                .description("Time spent writing one heartbeat batch")
+                .register(meterRegistry);
+        flushLagTimer = Timer.builder("device.heartbeat.flush.lag")
+                .description("Age of the oldest buffered heartbeat when its batch is flushed")
+                .register(meterRegistry);
+        flushedCounter = Counter.builder("device.heartbeat.flushed")
+                .description("Heartbeats written to the database by the write-behind buffer")
+                .register(meterRegistry);
+        overflowCounter = Counter.builder("device.heartbeat.buffer.overflow")
+                .description("Heartbeats rejected because the buffer was full")
+                .register(meterRegistry);
+        unknownSerialCounter = Counter.builder("device.heartbeat.flush.unknown")
+                .description("Flushed heartbeats that matched no device row or were older than the stored heartbeat")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Buffers a heartbeat, coalescing it with any pending one for the same serial.
+     *
+     * @return false when write-behind is disabled or the buffer is full; the caller must write synchronously
+     */
+    public boolean offer(HeartbeatSample sample) {
+        if (!enabled) return false;
+
+        if (pending.size() >= maxPending && !pending.containsKey(sample.getSerialNumber())) {
+            overflowCounter.increment();
+            return false;
+        }
+        pending.merge(sample.getSerialNumber(),
+                new PendingHeartbeat(sample, System.nanoTime()),
+                PendingHeartbeat::coalesce);
+        return true;
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    public long lastFlushLagMillis() {
+        return lastFlushLagMillis;
+    }
+
+    @Scheduled(fixedDelayString = "${app.device.heartbeat.write-behind.flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            lastFlushLagMillis = 0; // Nothing waited; a stale lag would keep the advisor stretching intervals
+            return;
+        }
+
+        flushLock.lock();
+        try {
+            List<PendingHeartbeat> batch = drain();
+            if (!batch.isEmpty()) write(batch);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        log.info("Flushing {} buffered heartbeats before shutdown", pending.size());
+        flush();
+    }
+
+    // Helper methods
+    private void write(List<PendingHeartbeat> batch) {
+        long oldest = batch.stream().mapToLong(PendingHeartbeat::bufferedAtNanos).min().orElseThrow();
+        long lagNanos = System.nanoTime() - oldest;
+        flushLagTimer.record(lagNanos, TimeUnit.NANOSECONDS);
+        lastFlushLagMillis = TimeUnit.NANOSECONDS.toMillis(lagNanos);
+
+        List<HeartbeatSample> samples = batch.stream().map(PendingHeartbeat::sample).toList();
+        try {
+            int[] counts = flushTimer.record(() -> deviceRepository.batchUpdateHeartbeats(samples));
+
+            int unknown = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    unknown++;
+                    log.debug("Buffered heartbeat dropped, unknown device or newer beat stored: {}", samples.get(i).getSerialNumber());
+                }
+            }
+            flushedCounter.increment(samples.size() - unknown);
+            unknownSerialCounter.increment(unknown);
+        } catch (DataAccessException ex) {
+            // Put the batch back underneath anything that arrived meanwhile, it goes out with the next flush
+            batch.forEach(entry -> pending.merge(entry.sample().getSerialNumber(), entry,
+                    (newer, retried) -> retried.coalesce(newer)));
+            log.error("Heartbeat flush failed, {} heartbeats kept for retry: {}", batch.size(), ex.getMessage());
+        }
+    }
+
+    private List<PendingHeartbeat> drain() {
+        List<PendingHeartbeat> batch = new ArrayList<>(pending.size());
+        for (String serialNumber : pending.keySet()) {
+            PendingHeartbeat entry = pending.remove(serialNumber);
+            if (entry != null) batch.add(entry);
+        }
+        return batch;
+    }
+
+    private record PendingHeartbeat(HeartbeatSample sample, long bufferedAtNanos) {
+        PendingHeartbeat coalesce(PendingHeartbeat newer) {
+            return new PendingHeartbeat(sample.merge(newer.sample), bufferedAtNanos);
+        }
+    }
+}
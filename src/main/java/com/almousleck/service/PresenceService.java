@@ -0,0 +1,23 @@
+package com.almousleck.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface PresenceService {
+    void markOnline(String serialNumber);
+    void markOnline(Collection<String> serialNumbers);
+    void markOnline(Map<String, Instant> lastSeen); // Scored at each beat's own time, never moved back
+    void markOffline(String serialNumber);
+    void markOffline(Collection<String> serialNumbers);
+    boolean isOnline(String serialNumber);
+    Map<String, Boolean> isOnline(Collection<String> serialNumbers);
+    long countOnline();
+    List<String> findOnline(int offset, int limit); // most recently seen first
+    List<String> findWentOfflineBetween(Instant from, Instant to);
+    Map<String, Instant> findLastSeenBetween(Instant from, Instant to, long offset, int limit); // Inclusive, oldest first, ties by serial
+    Duration presenceTtl();
+    void adjustTtl(Duration ttl); // Raised with the advised heartbeat interval, never below the configured TTL
+}
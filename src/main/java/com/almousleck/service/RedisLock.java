@@ -0,0 +1,42 @@
+package com.almousleck.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Short cluster-wide locks on a Redis key, for work only one replica should do at a time.
+ * Each acquisition stores its own random token, and release deletes the key only while it still
+ * holds that token: a holder that ran past the timeout cannot remove the lock the next holder took.
+ */
+@Component
+@RequiredArgsConstructor
+public class RedisLock {
+
+    // Compare-and-delete in one step, so the key cannot change hands between the GET and the DEL
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) end return 0",
+            Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * Takes the lock for at most the given timeout.
+     * Returns the token to release it with, or null when another holder has it.
+     */
+    public String tryAcquire(String key, Duration timeout) {
+        String token = UUID.randomUUID().toString();
+        return Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(key, token, timeout)) ? token : null;
+    }
+
+    // Releases the lock if this acquisition still holds it; after the timeout it may belong to someone else
+    public void release(String key, String token) {
+        stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(key), token);
+    }
+}
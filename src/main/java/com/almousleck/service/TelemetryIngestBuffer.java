@@ -0,0 +1,112 @@
+package com.almousleck.service;
+
+import com.almousleck.dto.telemetry.TelemetrySample;
+import com.almousleck.repository.telemetry.TelemetryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue between the heartbeat path and the append-only telemetry table.
+ * Samples are written as batched INSERTs on a timer; when the queue is full new samples
+ * are dropped and counted, so telemetry never adds latency to a heartbeat.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TelemetryIngestBuffer {
+
+    @Value("${app.telemetry.ingest.enabled:true}")
+    private boolean enabled;
+    @Value("${app.telemetry.ingest.max-pending:100000}")
+    private int maxPending;
+    @Value("${app.telemetry.ingest.batch-size:1000}")
+    private int batchSize; // Rows per INSERT batch
+
+    private final TelemetryRepository telemetryRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private BlockingQueue<TelemetrySample> queue;
+
+    private Timer flushTimer;
+    private Counter writtenCounter;
+    private Counter droppedCounter;
+
+    @PostConstruct
+    void init() {
+        queue = new LinkedBlockingQueue<>(maxPending);
+        Gauge.builder("telemetry.ingest.pending", queue, BlockingQueue::size)
+                .description("Telemetry samples waiting for the next flush")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("telemetry.ingest.flush.duration")
+                .description("Time spent inserting one telemetry batch")
+                .register(meterRegistry);
+        writtenCounter = Counter.builder("telemetry.ingest.written")
+                .description("Telemetry samples inserted")
+                .register(meterRegistry);
+        droppedCounter = Counter.builder("telemetry.ingest.dropped")
+                .description("Telemetry samples dropped because the queue was full")
+                .register(meterRegistry);
+    }
+
+    public void offer(TelemetrySample sample) {
+        if (!enabled) return;
+        if (!queue.offer(sample)) droppedCounter.increment();
+    }
+
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.telemetry.ingest.flush-interval-ms:1000}")
+    public void flush() {
+        if (queue.isEmpty()) return;
+
+        flushLock.lock();
+        try {
+            List<TelemetrySample> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0 && write(batch)) {
+                batch = new ArrayList<>(batchSize);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        log.info("Flushing {} buffered telemetry samples before shutdown", queue.size());
+        flush();
+    }
+
+    // Helper methods
+    private boolean write(List<TelemetrySample> batch) {
+        try {
+            flushTimer.record(() -> telemetryRepository.batchInsert(batch));
+            writtenCounter.increment(batch.size());
+            return true;
+        } catch (DataAccessException ex) {
+            // Requeue for the next flush; whatever no longer fits is dropped
+            int requeued = (int) batch.stream().filter(queue::offer).count();
+            droppedCounter.increment(batch.size() - requeued);
+            log.error("Telemetry flush failed, {} samples requeued: {}", requeued, ex.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.almousleck.service;
+
+import com.almousleck.config.SchedulingConfig;
+import com.almousleck.repository.telemetry.TelemetryRepository;
+import com.almousleck.repository.telemetry.TelemetryRepository.TelemetryPartition;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Keeps device_telemetry partitioned by UTC day: creates daily partitions ahead of time by splitting
+ * p_future, and drops whole partitions once they fall out of raw retention (no row-by-row DELETE).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TelemetryPartitionManager {
+
+    // MySQL TO_DAYS('1970-01-01')
+    private static final long TO_DAYS_EPOCH_OFFSET = 719528;
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+    @Value("${app.telemetry.raw.partition-maintenance-enabled:true}")
+    private boolean enabled;
+    @Value("${app.telemetry.raw.retention-days:7}")
+    private long retentionDays;
+    @Value("${app.telemetry.raw.partitions-ahead-days:3}")
+    private long partitionsAheadDays;
+
+    private final TelemetryRepository telemetryRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.telemetry.raw.partition-cron:0 5 0 * * *}", zone = "UTC", scheduler = SchedulingConfig.BATCH_SCHEDULER)
+    public void maintain() {
+        if (!enabled) return;
+        try {
+            maintain(LocalDate.now(ZoneOffset.UTC));
+        } catch (DataAccessException ex) {
+            // Another node may have reorganized at the same time; the next run converges
+            log.warn("Telemetry partition maintenance failed: {}", ex.getMessage());
+        }
+    }
+
+    // Helper methods
+    void maintain(LocalDate today) {
+        List<TelemetryPartition> partitions = telemetryRepository.findPartitions();
+
+        // Daily partitions can only be split off p_future above the highest existing bound
+        long highestBound = partitions.stream()
+                .map(TelemetryPartition::lessThanDays)
+                .filter(bound -> bound != null)
+                .mapToLong(Long::longValue)
+                .max().orElse(toDays(today));
+        LocalDate firstDay = max(today, fromDays(highestBound));
+
+        SortedMap<Long, String> toAdd = new TreeMap<>();
+        for (LocalDate day = firstDay; !day.isAfter(today.plusDays(partitionsAheadDays)); day = day.plusDays(1)) {
+            toAdd.put(toDays(day.plusDays(1)), day.format(PARTITION_NAME));
+        }
+        telemetryRepository.addPartitions(toAdd);
+
+        // A daily partition is droppable once its whole day is older than the retention
+        long cutoff = toDays(today.minusDays(retentionDays));
+        List<String> toDrop = partitions.stream()
+                .filter(partition -> partition.name().matches("p\\d{8}"))
+                .filter(partition -> partition.lessThanDays() != null && partition.lessThanDays() <= cutoff)
+                .map(TelemetryPartition::name)
+                .toList();
+        telemetryRepository.dropPartitions(toDrop);
+
+        if (!toAdd.isEmpty() || !toDrop.isEmpty())
+            log.info("Telemetry partitions added {}, dropped {}", toAdd.values(), toDrop);
+    }
+
+    private static long toDays(LocalDate date) {
+        return date.toEpochDay() + TO_DAYS_EPOCH_OFFSET;
+    }
+
+    private static LocalDate fromDays(long toDays) {
+        return LocalDate.ofEpochDay(toDays - TO_DAYS_EPOCH_OFFSET);
+    }
+
+    private static LocalDate max(LocalDate a, LocalDate b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
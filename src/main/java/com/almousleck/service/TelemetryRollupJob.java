@@ -0,0 +1,87 @@
+package com.almousleck.service;
+
+import com.almousleck.config.SchedulingConfig;
+import com.almousleck.enums.TelemetryResolution;
+import com.almousleck.repository.telemetry.TelemetryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Rolls raw telemetry into 1-minute buckets and 1-minute buckets into 1-hour buckets.
+ * Progress lives in telemetry_rollup_state, each tick handles at most one window per tier,
+ * and buckets are recomputed rather than incremented, so overlapping runs on several nodes are harmless.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TelemetryRollupJob {
+
+    @Value("${app.telemetry.rollup.lateness-seconds:30}")
+    private long latenessSeconds; // Raw rows may arrive this late (ingest flush interval + clock skew)
+    @Value("${app.telemetry.rollup.max-window-minutes:60}")
+    private long maxWindowMinutes; // Raw minutes aggregated per tick
+    @Value("${app.telemetry.rollup.minute-retention-days:30}")
+    private long minuteRetentionDays;
+    @Value("${app.telemetry.rollup.hour-retention-days:365}")
+    private long hourRetentionDays;
+    @Value("${app.telemetry.rollup.purge-batch-size:10000}")
+    private int purgeBatchSize;
+
+    private final TelemetryRepository telemetryRepository;
+
+    @Scheduled(fixedDelayString = "${app.telemetry.rollup.interval-ms:30000}", scheduler = SchedulingConfig.BATCH_SCHEDULER)
+    public void rollup() {
+        Instant minutesDone = rollupMinutes(Instant.now());
+        rollupHours(minutesDone);
+    }
+
+    @Scheduled(fixedDelayString = "${app.telemetry.rollup.purge-interval-ms:3600000}", scheduler = SchedulingConfig.BATCH_SCHEDULER)
+    public void purgeExpiredBuckets() {
+        Instant now = Instant.now();
+        purge(TelemetryResolution.MINUTE, now.minus(Duration.ofDays(minuteRetentionDays)));
+        purge(TelemetryResolution.HOUR, now.minus(Duration.ofDays(hourRetentionDays)));
+    }
+
+    // Helper methods
+    Instant rollupMinutes(Instant now) {
+        Instant upTo = now.minusSeconds(latenessSeconds).truncatedTo(ChronoUnit.MINUTES);
+        Instant from = telemetryRepository.findRolledUpTo(TelemetryResolution.MINUTE)
+                .orElse(upTo.minus(Duration.ofMinutes(maxWindowMinutes)));
+        Instant to = min(upTo, from.plus(Duration.ofMinutes(maxWindowMinutes)));
+        if (!to.isAfter(from)) return from;
+
+        int buckets = telemetryRepository.rollupMinutes(from, to);
+        log.debug("Telemetry rolled up to {} ({} minute buckets)", to, buckets);
+        return to;
+    }
+
+    void rollupHours(Instant minutesDone) {
+        // Only hours whose minutes are all rolled up
+        Instant upTo = minutesDone.truncatedTo(ChronoUnit.HOURS);
+        Instant from = telemetryRepository.findRolledUpTo(TelemetryResolution.HOUR)
+                .orElse(upTo.minus(Duration.ofHours(1)));
+        Instant to = min(upTo, from.plus(Duration.ofDays(1)));
+        if (!to.isAfter(from)) return;
+
+        int buckets = telemetryRepository.rollupHours(from, to);
+        log.debug("Telemetry rolled up to {} ({} hour buckets)", to, buckets);
+    }
+
+    private void purge(TelemetryResolution tier, Instant cutoff) {
+        int deleted;
+        do {
+            deleted = telemetryRepository.deleteBucketsBefore(tier, cutoff, purgeBatchSize);
+        } while (deleted >= purgeBatchSize);
+    }
+
+    private static Instant min(Instant a, Instant b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
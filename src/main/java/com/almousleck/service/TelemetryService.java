@@ -0,0 +1,9 @@
+package com.almousleck.service;
+
+import com.almousleck.dto.telemetry.TelemetryResponse;
+
+import java.time.Instant;
+
+public interface TelemetryService {
+    TelemetryResponse getTelemetry(String serialNumber, Instant from, Instant to, Long userId);
+}
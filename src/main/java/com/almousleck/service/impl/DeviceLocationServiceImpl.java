@@ -0,0 +1,162 @@
+package com.almousleck.service.impl;
+
+import com.almousleck.config.SchedulingConfig;
+import com.almousleck.dto.device.NearbyDeviceResponse;
+import com.almousleck.event.DeviceDisconnectedEvent;
+import com.almousleck.service.DeviceLocationService;
+import com.almousleck.service.PresenceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.core.GeoOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.domain.geo.GeoReference;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Live device positions in one Redis GEO set (a sorted set scored by 52-bit geohash).
+ * Radius queries are a GEOSEARCH over the geohash cells around the point, O(N+log M)
+ * in the devices near the point rather than a scan of the devices table.
+ * A position is only meaningful while the device is present: entries are dropped when the
+ * device disconnects or its presence expires, and results are filtered against presence
+ * to hide anything the eviction has not reached yet. Since GEOSEARCH applies COUNT before that
+ * filter, a query over-fetches and widens COUNT until it has enough online devices, the radius is
+ * exhausted or max-scanned positions were read.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeviceLocationServiceImpl implements DeviceLocationService {
+
+    private static final String LOCATION_KEY = "device:geo";
+    private static final int OVER_FETCH_FACTOR = 2;
+
+    @Value("${app.device.location.max-radius-meters:50000}")
+    private double maxRadiusMeters;
+    @Value("${app.device.location.max-results:500}")
+    private int maxResults;
+    @Value("${app.device.location.max-scanned:5000}")
+    private int maxScanned; // Positions one nearby query reads at most, online or not
+    @Value("${app.device.location.purge-page-size:1000}")
+    private int purgePageSize;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final PresenceService presenceService;
+
+    @Override
+    public void updateLocation(String serialNumber, double latitude, double longitude) {
+        geo().add(LOCATION_KEY, new Point(longitude, latitude), serialNumber);
+    }
+
+    @Override
+    public void updateLocations(Map<String, Point> locations) {
+        if (locations.isEmpty()) return;
+        geo().add(LOCATION_KEY, locations); // One GEOADD with all members
+    }
+
+    @Override
+    public void remove(String serialNumber) {
+        geo().remove(LOCATION_KEY, serialNumber);
+    }
+
+    @Override
+    public void remove(Collection<String> serialNumbers) {
+        if (serialNumbers.isEmpty()) return;
+        geo().remove(LOCATION_KEY, serialNumbers.toArray(String[]::new));
+    }
+
+    @Override
+    public List<NearbyDeviceResponse> findNearby(double latitude, double longitude, double radiusMeters, int limit) {
+        // GEOSEARCH rejects centres outside the indexable range, nothing can be near them anyway
+        if (Math.abs(latitude) > MAX_LATITUDE || Math.abs(longitude) > 180 || radiusMeters <= 0) return List.of();
+
+        // COUNT applies before the presence filter, so ask for more than wanted and widen while short
+        int wanted = Math.max(1, Math.min(limit, maxResults));
+        int count = Math.min(wanted * OVER_FETCH_FACTOR, maxScanned);
+        Map<String, Boolean> online = new HashMap<>();
+        while (true) {
+            List<GeoResult<RedisGeoCommands.GeoLocation<String>>> hits = search(latitude, longitude, radiusMeters, count);
+            if (hits.isEmpty()) return List.of();
+
+            // One ZMSCORE per round, only for hits the previous rounds have not checked (results are nearest first)
+            List<String> unchecked = hits.stream()
+                    .map(hit -> hit.getContent().getName())
+                    .filter(serial -> !online.containsKey(serial))
+                    .toList();
+            if (!unchecked.isEmpty()) online.putAll(presenceService.isOnline(unchecked));
+
+            List<NearbyDeviceResponse> nearby = new ArrayList<>(wanted);
+            for (GeoResult<RedisGeoCommands.GeoLocation<String>> hit : hits) {
+                RedisGeoCommands.GeoLocation<String> location = hit.getContent();
+                if (!online.getOrDefault(location.getName(), false)) continue; // Positions of devices that just expired
+
+                nearby.add(NearbyDeviceResponse.builder()
+                        .serialNumber(location.getName())
+                        .latitude(location.getPoint().getY())
+                        .longitude(location.getPoint().getX())
+                        .distanceMeters(hit.getDistance().getValue())
+                        .build());
+                if (nearby.size() == wanted) return nearby;
+            }
+            // Fewer hits than asked for means the whole radius was read
+            if (hits.size() < count || count >= maxScanned) return nearby;
+            count = Math.min(count * OVER_FETCH_FACTOR * OVER_FETCH_FACTOR, maxScanned);
+        }
+    }
+
+    @EventListener
+    public void onDeviceDisconnected(DeviceDisconnectedEvent event) {
+        remove(event.serialNumber());
+    }
+
+    // Catches positions whose disconnect event was never seen (e.g. a node died between heartbeat and sweep)
+    @Scheduled(fixedDelayString = "${app.device.location.purge-interval-ms:300000}", scheduler = SchedulingConfig.BATCH_SCHEDULER)
+    public void purgeStale() {
+        long offset = 0;
+        int purged = 0;
+        while (true) {
+            Set<String> page = stringRedisTemplate.opsForZSet().range(LOCATION_KEY, offset, offset + purgePageSize - 1);
+            if (page == null || page.isEmpty()) break;
+
+            List<String> stale = presenceService.isOnline(page).entrySet().stream()
+                    .filter(entry -> !entry.getValue())
+                    .map(Map.Entry::getKey)
+                    .toList();
+            remove(stale);
+            purged += stale.size();
+
+            if (page.size() < purgePageSize) break;
+            offset += page.size() - stale.size(); // Removed members shift the ranks after them down
+        }
+        if (purged > 0)
+            log.debug("Purged {} stale device locations", purged);
+    }
+
+    // Helper methods
+    private List<GeoResult<RedisGeoCommands.GeoLocation<String>>> search(double latitude, double longitude,
+                                                                        double radiusMeters, int count) {
+        RedisGeoCommands.GeoSearchCommandArgs args = RedisGeoCommands.GeoSearchCommandArgs.newGeoSearchArgs()
+                .includeDistance()
+                .includeCoordinates()
+                .sortAscending()
+                .limit(count);
+        GeoResults<RedisGeoCommands.GeoLocation<String>> results = geo().search(LOCATION_KEY,
+                GeoReference.fromCoordinate(longitude, latitude),
+                new Distance(Math.min(radiusMeters, maxRadiusMeters), RedisGeoCommands.DistanceUnit.METERS),
+                args);
+        return results != null ? results.getContent() : List.of();
+    }
+
+    private GeoOperations<String, String> geo() {
+        return stringRedisTemplate.opsForGeo();
+    }
+}
@@ -1,40 +1,72 @@
 package com.almousleck.service.impl;
 
+import com.almousleck.dto.device.BatchHeartbeatRequest;
+import com.almousleck.dto.device.BatchHeartbeatResponse;
+import com.almousleck.dto.device.DeviceHeartbeatEntry;
 import com.almousleck.dto.device.DevicePairRequest;
+import com.almousleck.dto.device.DeviceSliceResponse;
 import com.almousleck.dto.device.DeviceResponse;
+import com.almousleck.dto.device.DeviceTokenResponse;
+import com.almousleck.dto.device.HeartbeatResponse;
+import com.almousleck.dto.device.HeartbeatSample;
+import com.almousleck.dto.telemetry.TelemetrySample;
 import com.almousleck.enums.DeviceStatus;
+import com.almousleck.event.DeviceDisconnectedEvent;
 import com.almousleck.exceptions.DuplicationException;
 import com.almousleck.exceptions.ResourceNotFoundException;
 import com.almousleck.exceptions.UnauthorizedDeviceAccessException;
 import com.almousleck.exceptions.UserNotFoundException;
+import com.almousleck.jwt.DeviceTokenUtils;
 import com.almousleck.model.Device;
 import com.almousleck.model.User;
 import com.almousleck.repository.UserRepository;
+import com.almousleck.repository.device.DeviceLookup;
 import com.almousleck.repository.device.DeviceRepository;
+import com.almousleck.repository.device.DeviceSummary;
+import com.almousleck.service.DeviceLocationService;
+import com.almousleck.service.DeviceLookupCache;
 import com.almousleck.service.DeviceService;
+import com.almousleck.service.FleetStatsService;
+import com.almousleck.service.HeartbeatIntervalAdvisor;
+import com.almousleck.service.HeartbeatSignificanceFilter;
+import com.almousleck.service.HeartbeatWriteBuffer;
+import com.almousleck.service.PresenceService;
+import com.almousleck.service.TelemetryIngestBuffer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.geo.Point;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class DeviceServiceImpl implements DeviceService {
+    private static final int MAX_SLICE_SIZE = 100;
+
     private final DeviceRepository deviceRepository;
     private final UserRepository userRepository;
-    private final StringRedisTemplate stringRedisTemplate;
-
-    private static final String DEVICE_ONLINE_KEY_PREFIX = "device:online:";
-    private static final long HEARTBEAT_TTL_SECONDS = 60;// Device considered offline if no pulse for the next 60s
-
+    private final PresenceService presenceService;
+    private final HeartbeatWriteBuffer heartbeatWriteBuffer;
+    private final HeartbeatSignificanceFilter heartbeatSignificanceFilter;
+    private final DeviceLookupCache deviceLookupCache;
+    private final DeviceTokenUtils deviceTokenUtils;
+    private final TelemetryIngestBuffer telemetryIngestBuffer;
+    private final DeviceLocationService deviceLocationService;
+    private final FleetStatsService fleetStatsService;
+    private final HeartbeatIntervalAdvisor heartbeatIntervalAdvisor;
+    private final ApplicationEventPublisher eventPublisher;
 
 
     @Override
@@ -53,38 +85,135 @@ public class DeviceServiceImpl implements DeviceService {
         device.setName(request.getDeviceName());
         device.setStatus(DeviceStatus.OFFLINE); // Production Best Practice: Pairing != Online
 
-        return mapToResponseWithRealTimeStatus(deviceRepository.save(device));
+        Device saved = deviceRepository.save(device);
+        deviceLookupCache.invalidate(saved.getSerialNumber());
+        fleetStatsService.onPaired(saved.getSerialNumber(), saved.getBatteryLevel(), saved.getFirmwareVersion(), saved.getType());
+
+        // The glasses authenticate their heartbeats with this token from now on
+        DeviceTokenResponse token = issueDeviceToken(saved);
+        DeviceResponse response = mapToResponse(saved, presenceService.isOnline(saved.getSerialNumber()));
+        response.setDeviceToken(token.getDeviceToken());
+        response.setDeviceTokenExpiresAt(token.getExpiresAt());
+        return response;
     }
 
     @Override
-    public Page<DeviceResponse> getMyDevices(Long userId, Pageable pageable) {
-        User user = getUserByIdOrThrow(userId);
+    public DeviceSliceResponse getMyDevices(Long userId, Long afterId, int size, boolean withTotal) {
+        int limit = Math.max(1, Math.min(size, MAX_SLICE_SIZE));
 
-        return deviceRepository.findByOwner(user, pageable)
-                .map(this::mapToResponseWithRealTimeStatus);
+        // One range read on (owner_id, id), the extra row only tells whether another slice follows
+        List<DeviceSummary> rows = deviceRepository.findSummariesByOwnerId(
+                userId, afterId != null ? afterId : 0L, Limit.of(limit + 1));
+        boolean hasNext = rows.size() > limit;
+        List<DeviceSummary> slice = hasNext ? rows.subList(0, limit) : rows;
+
+        return DeviceSliceResponse.builder()
+                .content(mapToResponsesWithRealTimeStatus(slice))
+                .hasNext(hasNext)
+                .nextAfterId(hasNext ? slice.get(slice.size() - 1).id() : null)
+                .totalElements(withTotal ? deviceRepository.countByOwnerId(userId) : null)
+                .build();
     }
 
     @Override
-    public void updateHeartbeat(String serialNumber, Integer batteryLevel, String ipAddress) {
-        // 1. Redis: Extend "ONLINE" presence (The Pulse)
-        String redisKey = DEVICE_ONLINE_KEY_PREFIX + serialNumber;
-        stringRedisTemplate.opsForValue().set(redisKey, "1", HEARTBEAT_TTL_SECONDS, TimeUnit.SECONDS);
-
-        // 2. Database: Update 'Hard State' (Audit trails and battery)
-        // Optimization: In high-scale, I might only write to DB if battery changes > 5%
-        // For now, update strictly necessary fields
-        Device device = getDeviceBySerial(serialNumber);
+    public HeartbeatResponse updateHeartbeat(String serialNumber, Integer batteryLevel, String ipAddress,
+                                Double latitude, Double longitude) {
+        // Unknown serials are rejected from memory, before they reach Redis or the buffer
+        DeviceLookup device = requireKnownDevice(serialNumber);
+        boolean located = isIndexableLocation(latitude, longitude);
+
+        // 1. Redis: Extend "ONLINE" presence (The Pulse) and move the device in the live location index
+        presenceService.markOnline(serialNumber);
+        if (located) deviceLocationService.updateLocation(serialNumber, latitude, longitude);
 
-        if (batteryLevel != null)
-            device.setBatteryLevel(batteryLevel);
+        // 2. Database: Update 'Hard State' (Audit trails, battery, last known location)
+        HeartbeatSample sample = HeartbeatSample.builder()
+                .serialNumber(serialNumber)
+                .batteryLevel(batteryLevel)
+                .ipAddress(ipAddress)
+                .latitude(located ? latitude : null)
+                .longitude(located ? longitude : null)
+                .heartbeatAt(Instant.now())
+                .build();
 
-        if (ipAddress != null)
-            device.setIpAddress(ipAddress);
+        // Every beat goes to the telemetry history and fleet stats, even when the devices row is not updated
+        recordTelemetry(device, sample);
+        fleetStatsService.onBatteryLevel(serialNumber, batteryLevel);
 
-        // Always update last_heartbeat for audit
-        device.setLastHeartbeat(Instant.now());
+        // Only write when battery/IP changed significantly or last_heartbeat got stale,
+        // the row's location is refreshed with those writes while Redis always has the live one.
+        // Write-behind: coalesced per serial and flushed as one batch UPDATE, so no SELECT/save per beat
+        if (heartbeatSignificanceFilter.shouldPersist(sample) && !heartbeatWriteBuffer.offer(sample)) {
+            // Buffer disabled or full: write synchronously
+            persistHeartbeat(sample);
+        }
 
-        deviceRepository.save(device);
+        // The device paces its next beat by the server's current load
+        heartbeatIntervalAdvisor.recordBeats(1);
+        return HeartbeatResponse.builder()
+                .nextIntervalSeconds(heartbeatIntervalAdvisor.nextIntervalSeconds())
+                .build();
+    }
+
+    @Override
+    public BatchHeartbeatResponse updateHeartbeats(BatchHeartbeatRequest request) {
+        Instant now = Instant.now();
+        Instant presenceCutoff = now.minus(presenceService.presenceTtl());
+
+        // A gateway may relay several beats of one device, keep the latest per serial
+        Map<String, HeartbeatSample> latest = new LinkedHashMap<>();
+        for (DeviceHeartbeatEntry entry : request.getHeartbeats()) {
+            boolean located = isIndexableLocation(entry.getLatitude(), entry.getLongitude());
+            HeartbeatSample sample = HeartbeatSample.builder()
+                    .serialNumber(entry.getSerialNumber())
+                    .batteryLevel(entry.getBatteryLevel())
+                    .latitude(located ? entry.getLatitude() : null)
+                    .longitude(located ? entry.getLongitude() : null)
+                    .heartbeatAt(clampToNow(entry.getTimestamp(), now)) // IP is the gateway's, not the device's
+                    .build();
+            latest.merge(sample.getSerialNumber(), sample,
+                    (a, b) -> b.getHeartbeatAt().isBefore(a.getHeartbeatAt()) ? b.merge(a) : a.merge(b));
+        }
+
+        // Unknown serials are dropped, known ones are resolved from the near-cache
+        int received = latest.size();
+        Map<String, DeviceLookup> known = deviceLookupCache.findAll(latest.keySet());
+        latest.keySet().retainAll(known.keySet());
+        latest.values().forEach(sample -> {
+            recordTelemetry(known.get(sample.getSerialNumber()), sample);
+            fleetStatsService.onBatteryLevel(sample.getSerialNumber(), sample.getBatteryLevel());
+        });
+
+        // 1. Redis: refresh presence (as of each beat's own time) and positions for all fresh beats, one command each
+        Map<String, Instant> fresh = new LinkedHashMap<>();
+        Map<String, Point> locations = new LinkedHashMap<>();
+        for (HeartbeatSample sample : latest.values()) {
+            if (!sample.getHeartbeatAt().isAfter(presenceCutoff)) continue;
+            fresh.put(sample.getSerialNumber(), sample.getHeartbeatAt());
+            if (sample.hasLocation())
+                locations.put(sample.getSerialNumber(), new Point(sample.getLongitude(), sample.getLatitude()));
+        }
+        presenceService.markOnline(fresh);
+        deviceLocationService.updateLocations(locations);
+
+        // 2. Database: significant beats go to the write-behind buffer, overflow goes out as one batch.
+        // Stale beats are left out: the write flips OFFLINE rows to ONLINE, while presence says the device is gone
+        List<HeartbeatSample> overflow = new ArrayList<>();
+        for (HeartbeatSample sample : latest.values()) {
+            if (!fresh.containsKey(sample.getSerialNumber())) continue;
+            if (heartbeatSignificanceFilter.shouldPersist(sample) && !heartbeatWriteBuffer.offer(sample))
+                overflow.add(sample);
+        }
+        if (!overflow.isEmpty())
+            deviceRepository.batchUpdateHeartbeats(overflow);
+
+        heartbeatIntervalAdvisor.recordBeats(latest.size());
+        return BatchHeartbeatResponse.builder()
+                .accepted(latest.size())
+                .stale(latest.size() - fresh.size())
+                .unknown(received - latest.size())
+                .nextIntervalSeconds(heartbeatIntervalAdvisor.nextIntervalSeconds())
+                .build();
     }
 
     @Override
@@ -93,6 +222,7 @@ public class DeviceServiceImpl implements DeviceService {
         Device device = getDeviceBySerial(serialNumber);
         device.setFirmwareVersion(firmwareVersion);
         deviceRepository.save(device);
+        fleetStatsService.onFirmwareVersion(serialNumber, firmwareVersion);
         log.info("Firmware updated for device {}: {}", serialNumber, firmwareVersion);
     }
 
@@ -100,14 +230,12 @@ public class DeviceServiceImpl implements DeviceService {
     @Transactional
     public void markDeviceOnline(String serialNumber) {
         // Called when WebSocket connects
-        String redisKey = DEVICE_ONLINE_KEY_PREFIX + serialNumber;
-        stringRedisTemplate.opsForValue().set(redisKey, "1", HEARTBEAT_TTL_SECONDS, TimeUnit.SECONDS);
+        requireKnownDevice(serialNumber);
+        presenceService.markOnline(serialNumber);
 
-        // Update DB Connection History
-        Device device = getDeviceBySerial(serialNumber);
-        device.setStatus(DeviceStatus.ONLINE);
-        device.setConnectTime(Instant.now());
-        deviceRepository.save(device);
+        // Update DB Connection History, single UPDATE without loading the entity
+        deviceRepository.markOnline(serialNumber, Instant.now());
+        deviceLookupCache.updateStatus(serialNumber, DeviceStatus.ONLINE);
         log.info("Device connected (Online): {}", serialNumber);
     }
 
@@ -115,15 +243,50 @@ public class DeviceServiceImpl implements DeviceService {
     @Transactional
     public void markDeviceOffline(String serialNumber) {
         // Called when WebSocket disconnects
-        String redisKey = DEVICE_ONLINE_KEY_PREFIX + serialNumber;
-        stringRedisTemplate.delete(redisKey);
+        requireKnownDevice(serialNumber);
+        presenceService.markOffline(serialNumber);
+        heartbeatSignificanceFilter.evict(serialNumber); // first beat after reconnect is always written
 
-        Device device = getDeviceBySerial(serialNumber);
-        device.setStatus(DeviceStatus.OFFLINE);
-        deviceRepository.save(device);
+        Instant now = Instant.now();
+        deviceRepository.markOffline(serialNumber, now);
+        deviceLookupCache.updateStatus(serialNumber, DeviceStatus.OFFLINE);
+        eventPublisher.publishEvent(new DeviceDisconnectedEvent(
+                serialNumber, now, DeviceDisconnectedEvent.Reason.DISCONNECTED));
         log.info("Device disconnected (Offline): {}", serialNumber);
     }
 
+    @Override
+    @Transactional
+    public void markDevicesOnline(Collection<String> serialNumbers) {
+        // Batched WebSocket connects: one ZADD and one UPDATE for all of them
+        Set<String> known = deviceLookupCache.findAll(serialNumbers).keySet();
+        if (known.isEmpty()) return;
+
+        presenceService.markOnline(known);
+        deviceRepository.markOnline(known, Instant.now());
+        known.forEach(serial -> deviceLookupCache.updateStatus(serial, DeviceStatus.ONLINE));
+        log.info("Devices connected (Online): {}", known.size());
+    }
+
+    @Override
+    @Transactional
+    public void markDevicesOffline(Collection<String> serialNumbers) {
+        // Batched WebSocket disconnects
+        Set<String> known = deviceLookupCache.findAll(serialNumbers).keySet();
+        if (known.isEmpty()) return;
+
+        presenceService.markOffline(known);
+        Instant now = Instant.now();
+        deviceRepository.markOfflineIfOnline(known, now);
+        heartbeatSignificanceFilter.evict(known);
+        for (String serialNumber : known) {
+            deviceLookupCache.updateStatus(serialNumber, DeviceStatus.OFFLINE);
+            eventPublisher.publishEvent(new DeviceDisconnectedEvent(
+                    serialNumber, now, DeviceDisconnectedEvent.Reason.DISCONNECTED));
+        }
+        log.info("Devices disconnected (Offline): {}", known.size());
+    }
+
     @Override
     @Transactional
     public void unpairDevice(String serialNumber, Long userId) {
@@ -133,17 +296,63 @@ public class DeviceServiceImpl implements DeviceService {
             throw new UnauthorizedDeviceAccessException("Not authorized to unpair this device");
 
         // Clean up
-        String redisKey = DEVICE_ONLINE_KEY_PREFIX + serialNumber;
-        stringRedisTemplate.delete(redisKey);
+        presenceService.markOffline(serialNumber);
+        heartbeatSignificanceFilter.evict(serialNumber);
+        deviceLocationService.remove(serialNumber);
 
         device.setOwner(null);
         device.setStatus(DeviceStatus.OFFLINE);
         device.setConnectTime(null);
+        device.setTokenVersion(device.getTokenVersion() + 1); // The previous owner's glasses lose access
         deviceRepository.save(device);
+        deviceLookupCache.invalidate(serialNumber);
+        fleetStatsService.onUnpaired(serialNumber);
         log.info("Device unpaired: {}", serialNumber);
     }
 
+    @Override
+    public void reportLocation(String serialNumber, Double latitude, Double longitude, Long userId) {
+        DeviceLookup device = requireKnownDevice(serialNumber);
+
+        if (!userId.equals(device.ownerId()))
+            throw new UnauthorizedDeviceAccessException("Not authorized to report the location of this device");
+        if (!isIndexableLocation(latitude, longitude)) return;
+
+        deviceLocationService.updateLocation(serialNumber, latitude, longitude);
+        recordTelemetry(device, HeartbeatSample.builder()
+                .serialNumber(serialNumber)
+                .latitude(latitude)
+                .longitude(longitude)
+                .heartbeatAt(Instant.now())
+                .build());
+    }
+
+    @Override
+    @Transactional
+    public DeviceTokenResponse reissueDeviceToken(String serialNumber, Long userId) {
+        Device device = getDeviceBySerial(serialNumber);
+
+        if (device.getOwner() == null || !device.getOwner().getId().equals(userId))
+            throw new UnauthorizedDeviceAccessException("Not authorized to issue a token for this device");
+
+        // A leaked token stops working once the new one is issued
+        device.setTokenVersion(device.getTokenVersion() + 1);
+        deviceRepository.save(device);
+        deviceLookupCache.invalidate(serialNumber);
+        log.info("Device token reissued: {}", serialNumber);
+        return issueDeviceToken(device);
+    }
+
     // Helper methods
+    private DeviceTokenResponse issueDeviceToken(Device device) {
+        Instant expiresAt = Instant.now().plus(deviceTokenUtils.getValidity());
+        return DeviceTokenResponse.builder()
+                .serialNumber(device.getSerialNumber())
+                .deviceToken(deviceTokenUtils.generateToken(device.getSerialNumber(), device.getTokenVersion(), expiresAt))
+                .expiresAt(expiresAt)
+                .build();
+    }
+
     private User getUserByIdOrThrow(Long userId) {
         return userRepository.findById(userId)
                 .orElseThrow(() -> new UserNotFoundException("User not found: " + userId));
@@ -165,10 +374,70 @@ public class DeviceServiceImpl implements DeviceService {
                 .orElseThrow(() -> new ResourceNotFoundException("Device not found with serial number: [%s] ".formatted(serialNumber)));
     }
 
-    private DeviceResponse mapToResponseWithRealTimeStatus(Device device) {
-        String redisKey = DEVICE_ONLINE_KEY_PREFIX + device.getSerialNumber();
-        boolean isOnlineInRedis = stringRedisTemplate.hasKey(redisKey);
+    private DeviceLookup requireKnownDevice(String serialNumber) {
+        return deviceLookupCache.find(serialNumber)
+                .orElseThrow(() -> new ResourceNotFoundException("Device not found with serial number: [%s] ".formatted(serialNumber)));
+    }
+
+    private void recordTelemetry(DeviceLookup device, HeartbeatSample sample) {
+        if (sample.getBatteryLevel() == null && !sample.hasLocation()) return; // Nothing to chart
+
+        telemetryIngestBuffer.offer(TelemetrySample.builder()
+                .deviceId(device.id())
+                .recordedAt(sample.getHeartbeatAt())
+                .batteryLevel(sample.getBatteryLevel())
+                .locationLat(sample.getLatitude())
+                .locationLng(sample.getLongitude())
+                .build());
+    }
+
+    // A fix needs both coordinates inside what GEOADD accepts; anything else is treated as "no fix"
+    private boolean isIndexableLocation(Double latitude, Double longitude) {
+        return latitude != null && longitude != null
+                && Math.abs(latitude) <= DeviceLocationService.MAX_LATITUDE
+                && Math.abs(longitude) <= 180;
+    }
+
+    private Instant clampToNow(Instant timestamp, Instant now) {
+        // Gateways clocks are not trusted to be ahead of ours
+        return (timestamp == null || timestamp.isAfter(now)) ? now : timestamp;
+    }
+
+    private void persistHeartbeat(HeartbeatSample sample) {
+        // Single UPDATE keyed by serial number, the Device entity is never loaded
+        int updated = deviceRepository.updateHeartbeat(
+                sample.getSerialNumber(), sample.getBatteryLevel(), sample.getIpAddress(),
+                sample.getLatitude(), sample.getLongitude(), sample.getHeartbeatAt());
+
+        if (updated == 0) {
+            heartbeatSignificanceFilter.evict(sample.getSerialNumber());
+            deviceLookupCache.invalidate(sample.getSerialNumber());
+            throw new ResourceNotFoundException("Device not found with serial number: [%s] ".formatted(sample.getSerialNumber()));
+        }
+    }
+
+    // Resolves real-time status of the whole slice with one Redis round trip
+    private List<DeviceResponse> mapToResponsesWithRealTimeStatus(List<DeviceSummary> devices) {
+        if (devices.isEmpty()) return List.of();
+        Map<String, Boolean> online = presenceService.isOnline(
+                devices.stream().map(DeviceSummary::serialNumber).toList());
+
+        return devices.stream()
+                .map(device -> DeviceResponse.builder()
+                        .id(device.id())
+                        .name(device.name())
+                        .serialNumber(device.serialNumber())
+                        .status(online.getOrDefault(device.serialNumber(), false) ? DeviceStatus.ONLINE : DeviceStatus.OFFLINE)
+                        .batteryLevel(device.batteryLevel())
+                        .firmwareVersion(device.firmwareVersion())
+                        .ipAddress(device.ipAddress())
+                        .lastHeartbeat(device.lastHeartbeat())
+                        .connectTime(device.connectTime())
+                        .build())
+                .toList();
+    }
 
+    private DeviceResponse mapToResponse(Device device, boolean isOnlineInRedis) {
         return DeviceResponse.builder()
                 .id(device.getId())
                 .name(device.getName())
@@ -0,0 +1,184 @@
+package com.almousleck.service.impl;
+
+import com.almousleck.service.PresenceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisZSetCommands.ZAddArgs;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Real-time device presence in one Redis sorted set, scored by last-seen epoch millis.
+ * A device is online while its score is within the presence TTL; counts and recency ranges
+ * are O(log n) score queries instead of a KEYS/SCAN over per-device keys.
+ * Expired members are kept for a retention window (for "went offline recently" queries)
+ * and then trimmed by a periodic job.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PresenceServiceImpl implements PresenceService {
+
+    private static final String PRESENCE_KEY = "device:presence";
+
+    @Value("${app.device.presence.ttl-seconds:60}")
+    private long ttlSeconds; // Device considered offline if no pulse for this long, at least
+    @Value("${app.device.presence.retention-seconds:900}")
+    private long retentionSeconds; // How long offline devices stay queryable before trimming
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private volatile long adjustedTtlMillis; // Set from the advised heartbeat interval, 0 = configured TTL only
+
+    @Override
+    public void markOnline(String serialNumber) {
+        zSet().add(PRESENCE_KEY, serialNumber, System.currentTimeMillis());
+    }
+
+    @Override
+    public void markOnline(Collection<String> serialNumbers) {
+        if (serialNumbers.isEmpty()) return;
+
+        // One ZADD with all members
+        double now = System.currentTimeMillis();
+        Set<ZSetOperations.TypedTuple<String>> members = serialNumbers.stream()
+                .map(serial -> (ZSetOperations.TypedTuple<String>) new DefaultTypedTuple<>(serial, now))
+                .collect(Collectors.toSet());
+        zSet().add(PRESENCE_KEY, members);
+    }
+
+    @Override
+    public void markOnline(Map<String, Instant> lastSeen) {
+        if (lastSeen.isEmpty()) return;
+
+        // ZADD GT: a beat relayed late never lowers the score a newer beat already set
+        Set<Tuple> members = lastSeen.entrySet().stream()
+                .map(entry -> (Tuple) new DefaultTuple(StringRedisSerializer.UTF_8.serialize(entry.getKey()),
+                        (double) entry.getValue().toEpochMilli()))
+                .collect(Collectors.toSet());
+        byte[] key = StringRedisSerializer.UTF_8.serialize(PRESENCE_KEY);
+        stringRedisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.zSetCommands().zAdd(key, members, ZAddArgs.empty().gt()));
+    }
+
+    @Override
+    public void markOffline(String serialNumber) {
+        // Backdate to exactly one TTL ago: offline as of now, and still visible to recency queries
+        zSet().add(PRESENCE_KEY, serialNumber, System.currentTimeMillis() - ttlMillis());
+    }
+
+    @Override
+    public void markOffline(Collection<String> serialNumbers) {
+        if (serialNumbers.isEmpty()) return;
+
+        double offlineAt = System.currentTimeMillis() - ttlMillis();
+        Set<ZSetOperations.TypedTuple<String>> members = serialNumbers.stream()
+                .map(serial -> (ZSetOperations.TypedTuple<String>) new DefaultTypedTuple<>(serial, offlineAt))
+                .collect(Collectors.toSet());
+        zSet().add(PRESENCE_KEY, members);
+    }
+
+    @Override
+    public boolean isOnline(String serialNumber) {
+        Double lastSeen = zSet().score(PRESENCE_KEY, serialNumber);
+        return lastSeen != null && lastSeen > onlineThreshold();
+    }
+
+    @Override
+    public Map<String, Boolean> isOnline(Collection<String> serialNumbers) {
+        if (serialNumbers.isEmpty()) return Map.of();
+
+        // One ZMSCORE for the whole page instead of a lookup per device
+        List<String> serials = new ArrayList<>(new LinkedHashSet<>(serialNumbers));
+        List<Double> lastSeen = zSet().score(PRESENCE_KEY, serials.toArray());
+        double threshold = onlineThreshold();
+
+        Map<String, Boolean> online = new HashMap<>(serials.size() * 2);
+        for (int i = 0; i < serials.size(); i++) {
+            Double score = lastSeen != null ? lastSeen.get(i) : null;
+            online.put(serials.get(i), score != null && score > threshold);
+        }
+        return online;
+    }
+
+    @Override
+    public long countOnline() {
+        Long count = zSet().count(PRESENCE_KEY, Math.nextUp(onlineThreshold()), Double.POSITIVE_INFINITY);
+        return count != null ? count : 0;
+    }
+
+    @Override
+    public List<String> findOnline(int offset, int limit) {
+        Set<String> serials = zSet().reverseRangeByScore(PRESENCE_KEY,
+                Math.nextUp(onlineThreshold()), Double.POSITIVE_INFINITY, offset, limit);
+        return serials != null ? List.copyOf(serials) : List.of();
+    }
+
+    @Override
+    public List<String> findWentOfflineBetween(Instant from, Instant to) {
+        // A device went offline one TTL after it was last seen
+        long ttlMillis = ttlMillis();
+        Set<String> serials = zSet().rangeByScore(PRESENCE_KEY,
+                from.toEpochMilli() - ttlMillis, Math.min(to.toEpochMilli(), System.currentTimeMillis()) - ttlMillis);
+        return serials != null ? List.copyOf(serials) : List.of();
+    }
+
+    @Override
+    public Map<String, Instant> findLastSeenBetween(Instant from, Instant to, long offset, int limit) {
+        // Equal scores come back in member order, so (from, offset) pages through ties without skipping any
+        Set<ZSetOperations.TypedTuple<String>> members = zSet().rangeByScoreWithScores(PRESENCE_KEY,
+                from.toEpochMilli(), to.toEpochMilli(), offset, limit);
+        if (members == null) return Map.of();
+
+        Map<String, Instant> lastSeen = new LinkedHashMap<>(members.size() * 2);
+        for (ZSetOperations.TypedTuple<String> member : members) {
+            if (member.getValue() != null && member.getScore() != null)
+                lastSeen.put(member.getValue(), Instant.ofEpochMilli(member.getScore().longValue()));
+        }
+        return lastSeen;
+    }
+
+    @Override
+    public Duration presenceTtl() {
+        return Duration.ofMillis(ttlMillis());
+    }
+
+    @Override
+    public void adjustTtl(Duration ttl) {
+        adjustedTtlMillis = ttl.toMillis();
+    }
+
+    @Scheduled(fixedDelayString = "${app.device.presence.trim-interval-ms:60000}")
+    public void trimExpired() {
+        double cutoff = System.currentTimeMillis() - ttlMillis() - retentionSeconds * 1000;
+        Long removed = zSet().removeRangeByScore(PRESENCE_KEY, Double.NEGATIVE_INFINITY, cutoff);
+        if (removed != null && removed > 0)
+            log.debug("Trimmed {} expired presence entries", removed);
+    }
+
+    // Helper methods
+    private ZSetOperations<String, String> zSet() {
+        return stringRedisTemplate.opsForZSet();
+    }
+
+    private double onlineThreshold() {
+        return System.currentTimeMillis() - ttlMillis();
+    }
+
+    private long ttlMillis() {
+        return Math.max(ttlSeconds * 1000, adjustedTtlMillis);
+    }
+}
@@ -0,0 +1,83 @@
+package com.almousleck.service.impl;
+
+import com.almousleck.dto.telemetry.TelemetryPoint;
+import com.almousleck.dto.telemetry.TelemetryResponse;
+import com.almousleck.enums.TelemetryResolution;
+import com.almousleck.exceptions.ResourceNotFoundException;
+import com.almousleck.exceptions.UnauthorizedDeviceAccessException;
+import com.almousleck.repository.device.DeviceLookup;
+import com.almousleck.repository.telemetry.TelemetryRepository;
+import com.almousleck.service.DeviceLookupCache;
+import com.almousleck.service.TelemetryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class TelemetryServiceImpl implements TelemetryService {
+
+    @Value("${app.telemetry.query.raw-max-range-minutes:120}")
+    private long rawMaxRangeMinutes; // Ranges up to this read raw samples
+    @Value("${app.telemetry.query.minute-max-range-hours:48}")
+    private long minuteMaxRangeHours; // Ranges up to this read 1-minute buckets, longer ones 1-hour buckets
+    @Value("${app.telemetry.query.max-range-days:366}")
+    private long maxRangeDays;
+    @Value("${app.telemetry.query.raw-max-points:10000}")
+    private int rawMaxPoints;
+    @Value("${app.telemetry.raw.retention-days:7}")
+    private long rawRetentionDays;
+    @Value("${app.telemetry.rollup.minute-retention-days:30}")
+    private long minuteRetentionDays;
+
+    private final DeviceLookupCache deviceLookupCache;
+    private final TelemetryRepository telemetryRepository;
+
+    @Override
+    public TelemetryResponse getTelemetry(String serialNumber, Instant from, Instant to, Long userId) {
+        DeviceLookup device = deviceLookupCache.find(serialNumber)
+                .orElseThrow(() -> new ResourceNotFoundException("Device not found with serial number: [%s] ".formatted(serialNumber)));
+        if (!userId.equals(device.ownerId()))
+            throw new UnauthorizedDeviceAccessException("Not authorized to read telemetry of this device");
+
+        // Clamp to the past and to the longest supported range
+        Instant now = Instant.now();
+        Instant end = to == null || to.isAfter(now) ? now : to;
+        Instant start = from == null ? end.minus(Duration.ofHours(1)) : from;
+        Instant earliest = end.minus(Duration.ofDays(maxRangeDays));
+        if (start.isBefore(earliest)) start = earliest;
+
+        TelemetryResolution resolution = resolutionFor(start, end, now);
+        List<TelemetryPoint> points = !start.isBefore(end) ? List.of()
+                : resolution == TelemetryResolution.RAW
+                ? telemetryRepository.findRaw(device.id(), start, end, rawMaxPoints)
+                : telemetryRepository.findBuckets(resolution, device.id(), start, end);
+
+        return TelemetryResponse.builder()
+                .serialNumber(serialNumber)
+                .from(start)
+                .to(end)
+                .resolution(resolution)
+                .points(points)
+                .build();
+    }
+
+    // Helper methods
+    // Finest tier that keeps the point count bounded and still holds data for the start of the range
+    TelemetryResolution resolutionFor(Instant start, Instant end, Instant now) {
+        Duration range = Duration.between(start, end);
+        if (range.compareTo(Duration.ofMinutes(rawMaxRangeMinutes)) <= 0
+                && !start.isBefore(now.minus(Duration.ofDays(rawRetentionDays))))
+            return TelemetryResolution.RAW;
+
+        if (range.compareTo(Duration.ofHours(minuteMaxRangeHours)) <= 0
+                && !start.isBefore(now.minus(Duration.ofDays(minuteRetentionDays))))
+            return TelemetryResolution.MINUTE;
+
+        return TelemetryResolution.HOUR;
+    }
+}
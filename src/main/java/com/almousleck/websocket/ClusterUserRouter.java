@@ -0,0 +1,294 @@
+package com.almousleck.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Delivers user-destination messages to whichever replica holds the user's WebSocket sessions.
+ * The simple broker only knows this JVM's sessions, so each node records in a Redis set per user
+ * which nodes it is connected to, and a push is published only to those nodes' own channels
+ * (Redis pub/sub): one hop, no broadcast to the whole cluster.
+ * Route claims follow the session registry through a dirty set flushed on a short schedule,
+ * like device presence. Nodes beat into a Redis sorted set; claims of a node that stopped
+ * beating, or whose channel has no subscriber any more, are dropped when a send comes across them.
+ * Route sets expire after route-ttl-seconds and each node re-claims its users every half TTL, so the
+ * sets of users whose nodes vanished without releasing them do not pile up.
+ * A message that reaches no subscription is kept in the user's offline queue and replayed when the
+ * user subscribes again, or when this node claims the user's route. That includes a user connected
+ * here who has not subscribed to the destination yet: the broker would drop the message, so delivery
+ * is decided per destination from the user registry rather than from the session alone.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClusterUserRouter implements MessageListener {
+
+    private static final String ROUTE_KEY_PREFIX = "ws:route:";  // Set of node ids per user name
+    private static final String NODES_KEY = "ws:nodes";          // Node id -> last beat, epoch millis
+    private static final String CHANNEL_PREFIX = "ws:node:";
+    private static final long DEAD_NODE_RETENTION_MILLIS = 24 * 3600 * 1000L;
+
+    @Value("${app.websocket.cluster.node-timeout-ms:15000}")
+    private long nodeTimeoutMillis;
+    @Value("${app.websocket.cluster.route-ttl-seconds:3600}")
+    private long routeTtlSeconds;
+
+    private final WebSocketSessionRegistry sessionRegistry;
+    private final SimpUserRegistry userRegistry;
+    private final OfflineMessageQueue offlineMessageQueue;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Set<String> dirtyUsers = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private volatile Set<String> deadNodes = Set.of(); // Stopped beating; nodes not yet seen are assumed alive
+    private long lastBeatMillis;
+    private long lastRouteRefreshMillis;
+    private Counter localCounter;
+    private Counter remoteCounter;
+    private Counter droppedCounter;
+
+    record RoutedMessage(String username, String destination, JsonNode payload) {
+    }
+
+    @PostConstruct
+    void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL_PREFIX + nodeId));
+        localCounter = routedCounter("local");
+        remoteCounter = routedCounter("remote");
+        droppedCounter = routedCounter("dropped");
+        try {
+            beat();
+        } catch (DataAccessException ex) {
+            log.warn("Cluster node {} not registered yet: {}", nodeId, ex.getMessage());
+        }
+    }
+
+    /**
+     * Sends to every session of the user, on whichever nodes they are connected to.
+     * Users with no route anywhere get the message queued for their next connection, and users
+     * connected here but not subscribed to the destination yet get it queued for that subscription.
+     */
+    public void convertAndSendToUser(String username, String destination, Object payload) {
+        JsonNode body = objectMapper.valueToTree(payload); // Same JSON whichever node delivers it
+
+        boolean local = sessionRegistry.hasSessions(username);
+        if (local) deliverLocallyOrQueue(username, destination, body);
+
+        Set<String> nodes;
+        try {
+            nodes = stringRedisTemplate.opsForSet().members(ROUTE_KEY_PREFIX + username);
+        } catch (DataAccessException ex) {
+            log.warn("User route lookup failed for [{}], delivered locally only: {}", username, ex.getMessage());
+            if (!local) offlineMessageQueue.enqueue(username, destination, body);
+            return;
+        }
+
+        boolean remote = false;
+        for (String node : nodes != null ? nodes : Set.<String>of()) {
+            if (node.equals(nodeId)) continue; // Handled above from the local registry
+            if (deadNodes.contains(node)) dropRoute(username, node);
+            else remote |= publish(node, new RoutedMessage(username, destination, body));
+        }
+        if (!local && !remote) offlineMessageQueue.enqueue(username, destination, body);
+    }
+
+    @Override
+    public void onMessage(@NonNull Message message, byte[] pattern) {
+        try {
+            RoutedMessage routed = objectMapper.readValue(message.getBody(), RoutedMessage.class);
+            if (sessionRegistry.hasSessions(routed.username())) {
+                deliverLocallyOrQueue(routed.username(), routed.destination(), routed.payload());
+            } else {
+                // The user left this node after the sender read the route
+                droppedCounter.increment();
+                dirtyUsers.add(routed.username());
+                offlineMessageQueue.enqueue(routed.username(), routed.destination(), routed.payload());
+            }
+        } catch (IOException ex) {
+            log.error("Unreadable routed message on {}: {}", new String(message.getChannel(), StandardCharsets.UTF_8), ex.getMessage());
+        }
+    }
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        markDirty(event.getUser());
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        markDirty(event.getUser());
+    }
+
+    // Claims or releases this node in each dirty user's route set, by whether the user still has a session here
+    @Scheduled(fixedDelayString = "${app.websocket.cluster.route-flush-interval-ms:200}")
+    public void flushRoutes() {
+        if (dirtyUsers.isEmpty() || !flushLock.tryLock()) return;
+        try {
+            for (Iterator<String> it = dirtyUsers.iterator(); it.hasNext(); ) {
+                String username = it.next();
+                it.remove();
+                try {
+                    if (sessionRegistry.hasSessions(username)) {
+                        stringRedisTemplate.opsForSet().add(ROUTE_KEY_PREFIX + username, nodeId);
+                        stringRedisTemplate.expire(ROUTE_KEY_PREFIX + username, Duration.ofSeconds(routeTtlSeconds));
+                        // Messages queued while the claim was not visible yet
+                        offlineMessageQueue.replay(username);
+                    } else
+                        stringRedisTemplate.opsForSet().remove(ROUTE_KEY_PREFIX + username, nodeId);
+                } catch (DataAccessException ex) {
+                    dirtyUsers.add(username); // Retried with the next flush
+                    log.warn("User route update failed for [{}]: {}", username, ex.getMessage());
+                    return;
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Announces this node and refreshes which nodes stopped beating
+    @Scheduled(fixedDelayString = "${app.websocket.cluster.beat-interval-ms:5000}")
+    public void beat() {
+        long now = System.currentTimeMillis();
+        stringRedisTemplate.opsForZSet().add(NODES_KEY, nodeId, now);
+        // Others may have taken this node for dead (long pause, Redis outage) and dropped its claims
+        if (lastBeatMillis > 0 && now - lastBeatMillis >= nodeTimeoutMillis)
+            dirtyUsers.addAll(sessionRegistry.connectedUsers());
+        lastBeatMillis = now;
+        if (now - lastRouteRefreshMillis >= routeTtlSeconds * 500) {
+            refreshRoutes();
+            lastRouteRefreshMillis = now;
+        }
+        // Dead nodes are remembered for a day, long enough for sends to clean up most of their claims
+        stringRedisTemplate.opsForZSet().removeRangeByScore(NODES_KEY, 0, now - DEAD_NODE_RETENTION_MILLIS);
+
+        Set<String> dead = stringRedisTemplate.opsForZSet().rangeByScore(NODES_KEY, 0, now - nodeTimeoutMillis);
+        deadNodes = dead != null ? Set.copyOf(dead) : Set.of();
+    }
+
+    @PreDestroy
+    void leave() {
+        try {
+            stringRedisTemplate.opsForZSet().remove(NODES_KEY, nodeId);
+            flushRoutes(); // Disconnects of the closing sessions release this node's claims
+        } catch (DataAccessException ex) {
+            log.debug("Cluster node {} could not leave cleanly: {}", nodeId, ex.getMessage());
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    // Helper methods
+    private void deliverLocallyOrQueue(String username, String destination, JsonNode payload) {
+        if (isSubscribed(username, destination)) {
+            messagingTemplate.convertAndSendToUser(username, destination, payload);
+            localCounter.increment();
+        } else {
+            // Connected but not subscribed yet (between CONNECT and SUBSCRIBE): replayed on SUBSCRIBE
+            offlineMessageQueue.enqueue(username, destination, payload);
+        }
+    }
+
+    // Whether one of the user's sessions on this node subscribed to /user + destination
+    private boolean isSubscribed(String username, String destination) {
+        SimpUser user = userRegistry.getUser(username);
+        if (user == null) return false;
+        String userDestination = "/user" + destination;
+        return user.getSessions().stream()
+                .flatMap(session -> session.getSubscriptions().stream())
+                .anyMatch(subscription -> userDestination.equals(subscription.getDestination()));
+    }
+
+    // Re-claims every local user in one pipeline, which also pushes their route sets' expiry out
+    private void refreshRoutes() {
+        Set<String> users = sessionRegistry.connectedUsers();
+        if (users.isEmpty()) return;
+
+        byte[] member = StringRedisSerializer.UTF_8.serialize(nodeId);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String username : users) {
+                byte[] key = StringRedisSerializer.UTF_8.serialize(ROUTE_KEY_PREFIX + username);
+                connection.setCommands().sAdd(key, member);
+                connection.keyCommands().expire(key, routeTtlSeconds);
+            }
+            return null;
+        });
+    }
+
+    private boolean publish(String node, RoutedMessage message) {
+        try {
+            Long receivers = stringRedisTemplate.convertAndSend(CHANNEL_PREFIX + node, objectMapper.writeValueAsString(message));
+            if (receivers != null && receivers == 0) {
+                // Nobody listens on that node's channel (restarted or gone without leaving), its claim is stale
+                droppedCounter.increment();
+                dropRoute(message.username(), node);
+                return false;
+            }
+            remoteCounter.increment();
+            return true;
+        } catch (JsonProcessingException | DataAccessException ex) {
+            log.warn("Routing to node {} for [{}] failed: {}", node, message.username(), ex.getMessage());
+            return false;
+        }
+    }
+
+    private void dropRoute(String username, String node) {
+        try {
+            stringRedisTemplate.opsForSet().remove(ROUTE_KEY_PREFIX + username, node);
+        } catch (DataAccessException ex) {
+            log.debug("Could not drop route of [{}] to dead node {}: {}", username, node, ex.getMessage());
+        }
+    }
+
+    private void markDirty(Principal user) {
+        if (user != null) dirtyUsers.add(user.getName());
+    }
+
+    private Counter routedCounter(String target) {
+        return Counter.builder("websocket.user.routed")
+                .tag("target", target)
+                .description("User-destination messages by where they were delivered")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,65 @@
+package com.almousleck.websocket;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.websocket.server.ServerEndpointConfig;
+import org.springframework.lang.NonNull;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.server.standard.TomcatRequestUpgradeStrategy;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+
+/**
+ * Handshake of the native device endpoint. Tomcat negotiates permessage-deflate whenever the client
+ * offers it, reading the offer straight from the request; each deflate session then keeps its own
+ * zlib state. With app.websocket.device.permessage-deflate=false the upgrade is handed a request
+ * without the offer, so devices get uncompressed frames whatever they ask for.
+ */
+public class DeviceHandshakeHandler extends DefaultHandshakeHandler {
+
+    public DeviceHandshakeHandler(boolean perMessageDeflate) {
+        super(perMessageDeflate ? new TomcatRequestUpgradeStrategy() : new WithoutExtensionsUpgradeStrategy());
+    }
+
+    private static final class WithoutExtensionsUpgradeStrategy extends TomcatRequestUpgradeStrategy {
+        @Override
+        protected void upgradeHttpToWebSocket(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                              @NonNull ServerEndpointConfig endpointConfig,
+                                              @NonNull Map<String, String> pathParams) throws Exception {
+            super.upgradeHttpToWebSocket(new WithoutExtensions(request), response, endpointConfig, pathParams);
+        }
+    }
+
+    // The upgrade request minus its Sec-WebSocket-Extensions offer
+    static final class WithoutExtensions extends HttpServletRequestWrapper {
+
+        WithoutExtensions(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return isExtensions(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return isExtensions(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            return Collections.enumeration(Collections.list(super.getHeaderNames()).stream()
+                    .filter(name -> !isExtensions(name))
+                    .toList());
+        }
+
+        private static boolean isExtensions(String name) {
+            return WebSocketHttpHeaders.SEC_WEBSOCKET_EXTENSIONS.equalsIgnoreCase(name);
+        }
+    }
+}
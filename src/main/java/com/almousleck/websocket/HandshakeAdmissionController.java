@@ -0,0 +1,185 @@
+package com.almousleck.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for WebSocket connection bursts, e.g. the whole fleet reconnecting after a deploy.
+ * At most max-concurrent STOMP CONNECTs (JWT check + user lookup in MySQL) run at once; a CONNECT without
+ * a free slot is rejected with a jittered retry-after, so retries spread out instead of arriving as a
+ * second wave. The limit starts low after startup and ramps up over the warm-up period, while connection
+ * pools and caches are still cold.
+ * The check runs in the inbound channel's preSend, i.e. on the Tomcat thread that read the frame, before
+ * the channel executor. So by default it never waits. With max-wait-ms > 0 a CONNECT may wait for a slot,
+ * parking that container thread; at most max-queued do so at once, capped at a quarter of
+ * server.tomcat.threads.max so the waits cannot stall WebSocket and HTTP I/O.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HandshakeAdmissionController {
+
+    @Value("${app.websocket.handshake.max-concurrent:50}")
+    private int maxConcurrent;
+    @Value("${app.websocket.handshake.initial-concurrent:5}")
+    private int initialConcurrent; // Limit right after startup
+    @Value("${app.websocket.handshake.warmup-seconds:60}")
+    private long warmupSeconds;
+    @Value("${app.websocket.handshake.max-queued:200}")
+    private int maxQueued; // Beyond this many waiting, new CONNECTs are rejected without waiting
+    @Value("${app.websocket.handshake.max-wait-ms:0}")
+    private long maxWaitMillis; // 0 = reject at once; a wait blocks a Tomcat container thread
+    @Value("${server.tomcat.threads.max:200}")
+    private int containerThreads;
+    @Value("${app.websocket.handshake.retry-after-base-seconds:2}")
+    private int retryAfterBaseSeconds;
+    @Value("${app.websocket.handshake.retry-after-max-seconds:30}")
+    private int retryAfterMaxSeconds;
+
+    private final MeterRegistry meterRegistry;
+
+    private AdjustableSemaphore permits;
+    private int initialLimit;
+    private volatile int reserved; // Permits still held back by the warm-up ramp
+    private long startedAtNanos;
+
+    private Counter admittedCounter;
+    private Counter rejectedBusyCounter;
+    private Counter rejectedSaturatedCounter;
+    private Timer waitTimer;
+
+    @PostConstruct
+    void init() {
+        if (maxWaitMillis > 0 && maxQueued > containerThreads / 4) {
+            log.warn("app.websocket.handshake.max-queued {} capped at {}, waiting CONNECTs hold container threads",
+                    maxQueued, containerThreads / 4);
+            maxQueued = containerThreads / 4;
+        }
+        initialLimit = Math.min(Math.max(initialConcurrent, 1), maxConcurrent);
+        permits = new AdjustableSemaphore(maxConcurrent);
+        reserved = maxConcurrent - initialLimit;
+        permits.reduce(reserved);
+        startedAtNanos = System.nanoTime();
+
+        Gauge.builder("websocket.handshake.queued", permits, Semaphore::getQueueLength)
+                .description("STOMP CONNECTs waiting for a handshake slot")
+                .register(meterRegistry);
+        Gauge.builder("websocket.handshake.in-flight", this, HandshakeAdmissionController::inFlight)
+                .description("STOMP CONNECTs being authenticated right now")
+                .register(meterRegistry);
+        Gauge.builder("websocket.handshake.limit", this, HandshakeAdmissionController::currentLimit)
+                .description("Concurrent handshake limit, ramping up during warm-up")
+                .register(meterRegistry);
+        admittedCounter = Counter.builder("websocket.handshake.admitted")
+                .description("Handshakes given a slot")
+                .register(meterRegistry);
+        rejectedBusyCounter = Counter.builder("websocket.handshake.rejected")
+                .tag("reason", "busy")
+                .description("STOMP CONNECTs rejected after waiting for a slot")
+                .register(meterRegistry);
+        rejectedSaturatedCounter = Counter.builder("websocket.handshake.rejected")
+                .tag("reason", "saturated")
+                .description("HTTP upgrades turned away because the wait queue was full")
+                .register(meterRegistry);
+        waitTimer = Timer.builder("websocket.handshake.wait")
+                .description("Time a STOMP CONNECT waited for a slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a handshake slot, waiting up to max-wait-ms on the calling container thread.
+     * Callers must {@link #release()} once admitted.
+     *
+     * @return false when no slot was free (or freed up in time)
+     */
+    public boolean tryAdmit() {
+        if (maxWaitMillis <= 0) {
+            boolean admitted = permits.tryAcquire();
+            (admitted ? admittedCounter : rejectedBusyCounter).increment();
+            return admitted;
+        }
+        if (permits.getQueueLength() >= maxQueued) {
+            rejectedBusyCounter.increment();
+            return false;
+        }
+
+        long start = System.nanoTime();
+        boolean admitted;
+        try {
+            admitted = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        (admitted ? admittedCounter : rejectedBusyCounter).increment();
+        return admitted;
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    // Cheap pre-check at the HTTP upgrade: with every slot taken (and, when CONNECTs may wait, a full
+    // slot's worth already waiting) a new socket would likely end in a rejected CONNECT, so it is not opened
+    public boolean isSaturated() {
+        int waitingBeyond = maxWaitMillis > 0 ? Math.min(maxQueued, currentLimit()) : 0;
+        boolean saturated = permits.availablePermits() == 0 && permits.getQueueLength() >= waitingBeyond;
+        if (saturated) rejectedSaturatedCounter.increment();
+        return saturated;
+    }
+
+    // Grows with the backlog and is spread by +/-50%, so rejected clients do not come back together
+    public int retryAfterSeconds() {
+        double backlog = (double) permits.getQueueLength() / Math.max(currentLimit(), 1);
+        double seconds = retryAfterBaseSeconds * (1 + backlog) * ThreadLocalRandom.current().nextDouble(0.5, 1.5);
+        return (int) Math.min(Math.max(Math.round(seconds), 1), retryAfterMaxSeconds);
+    }
+
+    @Scheduled(fixedRateString = "${app.websocket.handshake.ramp-interval-ms:1000}")
+    public synchronized void rampUp() {
+        if (reserved == 0) return;
+
+        double progress = Math.min(1.0, (System.nanoTime() - startedAtNanos) / (warmupSeconds * 1e9));
+        int target = initialLimit + (int) Math.round((maxConcurrent - initialLimit) * progress);
+        int toRelease = Math.min(reserved, target - currentLimit());
+        if (toRelease <= 0) return;
+
+        permits.release(toRelease);
+        reserved -= toRelease;
+        if (reserved == 0) log.info("Handshake warm-up finished, limit {}", maxConcurrent);
+    }
+
+    public int currentLimit() {
+        return maxConcurrent - reserved;
+    }
+
+    // Helper methods
+    private int inFlight() {
+        return Math.max(0, currentLimit() - permits.availablePermits());
+    }
+
+    // Semaphore.reducePermits is protected; the warm-up holds permits back without blocking a thread
+    private static final class AdjustableSemaphore extends Semaphore {
+        AdjustableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        void reduce(int reduction) {
+            reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.almousleck.websocket;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+// Turns WebSocket upgrades away with 503 + Retry-After while the node is saturated with handshakes
+@Component
+@RequiredArgsConstructor
+public class HandshakeAdmissionInterceptor implements HandshakeInterceptor {
+
+    private final HandshakeAdmissionController admissionController;
+
+    @Override
+    public boolean beforeHandshake(@NonNull ServerHttpRequest request, @NonNull ServerHttpResponse response,
+                                   @NonNull WebSocketHandler wsHandler, @NonNull Map<String, Object> attributes) {
+        if (!admissionController.isSaturated()) return true;
+
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set("Retry-After", String.valueOf(admissionController.retryAfterSeconds()));
+        return false;
+    }
+
+    @Override
+    public void afterHandshake(@NonNull ServerHttpRequest request, @NonNull ServerHttpResponse response,
+                               @NonNull WebSocketHandler wsHandler, Exception exception) {
+        // Nothing to release, the slot is only taken by the STOMP CONNECT
+    }
+}
@@ -0,0 +1,35 @@
+package com.almousleck.websocket;
+
+import com.almousleck.exceptions.HandshakeRejectedException;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.StompSubProtocolErrorHandler;
+
+// STOMP ERROR frame for a CONNECT turned away by admission control, carrying a retry-after header
+@Component
+public class HandshakeRejectionErrorHandler extends StompSubProtocolErrorHandler {
+
+    @Override
+    public Message<byte[]> handleClientMessageProcessingError(Message<byte[]> clientMessage, @NonNull Throwable ex) {
+        HandshakeRejectedException rejection = findRejection(ex);
+        if (rejection == null) return super.handleClientMessageProcessingError(clientMessage, ex);
+
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.ERROR);
+        accessor.setMessage(rejection.getMessage());
+        accessor.setNativeHeader("retry-after", String.valueOf(rejection.getRetryAfterSeconds()));
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    // Helper methods
+    private HandshakeRejectedException findRejection(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HandshakeRejectedException rejection) return rejection;
+        }
+        return null;
+    }
+}
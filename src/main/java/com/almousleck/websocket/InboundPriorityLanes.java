@@ -0,0 +1,196 @@
+package com.almousleck.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for the STOMP inbound channel that dispatches each frame to a lane by signal type:
+ * EMERGENCY and VOICE_COMMAND get a lane of their own, heavy high-rate signals (object detection,
+ * text recognition) go to a bulk lane, everything else (including CONNECT/SUBSCRIBE/DISCONNECT)
+ * to the default lane. Every lane has its own threads and bounded queue, so a flood of bulk frames
+ * can only fill the bulk queue. Bulk frames are shed when their queue is full or they waited too
+ * long to still be useful; the other lanes never drop, they run on the caller when full.
+ * The type comes from {@link SignalTypeReader}, without binding the body.
+ * With app.websocket.executor.virtual-threads each lane runs frames on virtual threads instead of
+ * its fixed pool, one session at a time and in arrival order, so a handler that blocks holds up
+ * only its own session. Queue capacity then only limits the bulk lane, which sheds above it.
+ */
+@Component
+@RequiredArgsConstructor
+public class InboundPriorityLanes {
+
+    public static final String SIGNAL_TYPE_HEADER = SignalTypeReader.SIGNAL_TYPE_HEADER;
+    private static final String SIGNAL_DESTINATION = "/app/signal";
+
+    public enum Lane { PRIORITY, DEFAULT, BULK }
+
+    @Value("${app.websocket.inbound.priority-types:EMERGENCY,VOICE_COMMAND}")
+    private Set<String> priorityTypes;
+    @Value("${app.websocket.inbound.bulk-types:OBJECT_DETECTION,TEXT_RECOGNITION}")
+    private Set<String> bulkTypes;
+    @Value("${app.websocket.inbound.priority.threads:2}")
+    private int priorityThreads;
+    @Value("${app.websocket.inbound.priority.queue-capacity:1000}")
+    private int priorityQueueCapacity;
+    @Value("${app.websocket.inbound.default.threads:0}")
+    private int defaultThreads; // 0 = 2 per CPU, Spring's default for the inbound channel
+    @Value("${app.websocket.inbound.default.queue-capacity:10000}")
+    private int defaultQueueCapacity;
+    @Value("${app.websocket.inbound.bulk.threads:0}")
+    private int bulkThreads; // 0 = 1 per CPU
+    @Value("${app.websocket.inbound.bulk.queue-capacity:1000}")
+    private int bulkQueueCapacity;
+    @Value("${app.websocket.inbound.bulk.max-wait-ms:2000}")
+    private long bulkMaxWaitMillis; // A detection frame older than this is no longer worth answering
+    @Value("${app.websocket.executor.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Lane, LaneExecutor> lanes = new EnumMap<>(Lane.class);
+
+    @PostConstruct
+    void init() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        lanes.put(Lane.PRIORITY, new LaneExecutor(Lane.PRIORITY, priorityThreads, priorityQueueCapacity, 0));
+        lanes.put(Lane.DEFAULT, new LaneExecutor(Lane.DEFAULT,
+                defaultThreads > 0 ? defaultThreads : cpus * 2, defaultQueueCapacity, 0));
+        lanes.put(Lane.BULK, new LaneExecutor(Lane.BULK,
+                bulkThreads > 0 ? bulkThreads : cpus, bulkQueueCapacity, bulkMaxWaitMillis));
+    }
+
+    public void execute(Runnable task) {
+        if (task instanceof MessageHandlingRunnable handling) {
+            Message<?> message = handling.getMessage();
+            lanes.get(classify(message)).submit(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()), task);
+        } else {
+            lanes.get(Lane.DEFAULT).submit(null, task);
+        }
+    }
+
+    public Lane classify(Message<?> message) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE
+                || !SIGNAL_DESTINATION.equals(accessor.getDestination())) return Lane.DEFAULT;
+
+        String type = SignalTypeReader.read(message);
+        if (type == null) return Lane.DEFAULT;
+        if (priorityTypes.contains(type)) return Lane.PRIORITY;
+        return bulkTypes.contains(type) ? Lane.BULK : Lane.DEFAULT;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        lanes.values().forEach(LaneExecutor::shutdown);
+    }
+
+    private final class LaneExecutor {
+        final Lane lane;
+        final int queueCapacity;
+        final ThreadPoolExecutor pool;             // Platform threads
+        final ExecutorService virtualThreadPerTask;
+        final SessionOrderedExecutor ordered;      // Virtual threads, per-session order
+        final long maxWaitNanos;
+        final Timer waitTimer;
+        final Counter shedCounter;
+        final Counter callerRunsCounter;
+
+        LaneExecutor(Lane lane, int threads, int queueCapacity, long maxWaitMillis) {
+            this.lane = lane;
+            this.queueCapacity = queueCapacity;
+            this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+            String name = lane.name().toLowerCase();
+            if (virtualThreads) {
+                this.pool = null;
+                this.virtualThreadPerTask = Executors.newThreadPerTaskExecutor(
+                        Thread.ofVirtual().name("inbound-" + name + "-", 0).factory());
+                this.ordered = new SessionOrderedExecutor(virtualThreadPerTask);
+            } else {
+                AtomicInteger threadCount = new AtomicInteger();
+                this.virtualThreadPerTask = null;
+                this.ordered = null;
+                this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(queueCapacity),
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "inbound-" + name + "-" + threadCount.incrementAndGet());
+                            thread.setDaemon(true); // No OS priority: ignored on Linux, the lane's own threads are the guarantee
+                            return thread;
+                        },
+                        new ThreadPoolExecutor.AbortPolicy());
+            }
+
+            Gauge.builder("websocket.inbound.queue", this, LaneExecutor::depth)
+                    .tag("lane", name)
+                    .description("Inbound STOMP frames waiting in the lane")
+                    .register(meterRegistry);
+            waitTimer = Timer.builder("websocket.inbound.wait")
+                    .tag("lane", name)
+                    .description("Time an inbound STOMP frame waited before a lane thread took it")
+                    .register(meterRegistry);
+            shedCounter = Counter.builder("websocket.inbound.shed")
+                    .tag("lane", name)
+                    .description("Inbound STOMP frames dropped because the lane was saturated")
+                    .register(meterRegistry);
+            callerRunsCounter = Counter.builder("websocket.inbound.caller-runs")
+                    .tag("lane", name)
+                    .description("Inbound STOMP frames run on the receiving thread because the lane was full")
+                    .register(meterRegistry);
+        }
+
+        void submit(String sessionId, Runnable task) {
+            long queuedAt = System.nanoTime();
+            Runnable timed = () -> {
+                long waited = System.nanoTime() - queuedAt;
+                waitTimer.record(waited, TimeUnit.NANOSECONDS);
+                if (maxWaitNanos > 0 && waited > maxWaitNanos) {
+                    shedCounter.increment();
+                    return;
+                }
+                task.run();
+            };
+
+            if (ordered != null) {
+                // Running on the caller would overtake the session's queued frames, so only bulk is bounded
+                if (lane == Lane.BULK && ordered.pending() >= queueCapacity) shedCounter.increment();
+                else ordered.execute(sessionId, timed);
+                return;
+            }
+            try {
+                pool.execute(timed);
+            } catch (RejectedExecutionException ex) {
+                if (lane == Lane.BULK) {
+                    shedCounter.increment();
+                } else if (!pool.isShutdown()) {
+                    callerRunsCounter.increment();
+                    timed.run();
+                }
+            }
+        }
+
+        int depth() {
+            return ordered != null ? ordered.pending() : pool.getQueue().size();
+        }
+
+        void shutdown() {
+            if (pool != null) pool.shutdown();
+            else virtualThreadPerTask.shutdown();
+        }
+    }
+}
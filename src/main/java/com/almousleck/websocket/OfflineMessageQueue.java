@@ -0,0 +1,219 @@
+package com.almousleck.websocket;
+
+import com.almousleck.config.server.OfflineQueueConfig;
+import com.almousleck.dto.signal.SignalMessage;
+import com.almousleck.service.RedisLock;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpSubscription;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Keeps user-destination messages that found no session, so glasses that were reconnecting get
+ * their navigation instructions and alerts when they are back.
+ * Each user has a Redis stream, capped at max-length entries; every entry carries the expiry of
+ * its signal type, and types with a TTL of 0 are never kept. When a session subscribes to a user
+ * destination, the pending entries for that destination (or, when its node claims the user's route,
+ * for every destination the user is subscribed to) are replayed in stream order, batch-size messages
+ * per frame, and then deleted; expired entries are deleted unsent. A short Redis lock keeps two nodes from replaying
+ * the same backlog; it is released by token, so a replay that outlives it cannot free another node's lock.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OfflineMessageQueue implements ExecutorChannelInterceptor {
+
+    private static final String QUEUE_KEY_PREFIX = "ws:offline:";
+    private static final String LOCK_KEY_PREFIX = "ws:offline:lock:";
+    private static final Duration LOCK_TIMEOUT = Duration.ofSeconds(10);
+    private static final String USER_DESTINATION_PREFIX = "/user";
+
+    private final OfflineQueueConfig config;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisLock redisLock;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry userRegistry;
+    private final AbstractSubscribableChannel clientInboundChannel;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private Counter queuedCounter;
+    private Counter replayedCounter;
+    private Counter expiredCounter;
+
+    @PostConstruct
+    void init() {
+        clientInboundChannel.addInterceptor(this); // Replays once the broker has registered a subscription
+        queuedCounter = offlineCounter("queued");
+        replayedCounter = offlineCounter("replayed");
+        expiredCounter = offlineCounter("expired");
+    }
+
+    /**
+     * Keeps a message for a user without a session anywhere. The signal type is read from the
+     * payload's "type" field to pick its TTL.
+     */
+    public void enqueue(String username, String destination, JsonNode payload) {
+        if (!config.isEnabled()) return;
+        String type = payload.path("type").asText(null);
+        Duration ttl = config.ttlFor(type);
+        if (ttl.isZero() || ttl.isNegative()) return; // Stale by the time the device is back
+
+        Map<String, String> fields = Map.of(
+                "destination", destination,
+                "type", type != null ? type : "",
+                "expiresAt", String.valueOf(Instant.now().plus(ttl).toEpochMilli()),
+                "payload", payload.toString());
+        String key = QUEUE_KEY_PREFIX + username;
+        try {
+            stringRedisTemplate.opsForStream().add(StreamRecords.mapBacked(fields).withStreamKey(key),
+                    XAddOptions.maxlen(config.getMaxLength()).approximateTrimming(true));
+            stringRedisTemplate.expire(key, config.maxTtl()); // Idle queues go away on their own
+            queuedCounter.increment();
+        } catch (DataAccessException ex) {
+            log.warn("Offline message for [{}] not kept: {}", username, ex.getMessage());
+        }
+    }
+
+    /**
+     * Replays the user's pending messages for every user destination the user is subscribed to on
+     * this node, in the order they were queued. Messages for other destinations stay queued.
+     */
+    public void replay(String username) {
+        if (!config.isEnabled()) return;
+        replay(username, subscribedDestinations(username));
+    }
+
+    // Inbound channel: the user destination handler has just registered a SUBSCRIBE /user/...
+    @Override
+    public void afterMessageHandled(@NonNull Message<?> message, @NonNull MessageChannel channel,
+                                    @NonNull MessageHandler handler, Exception ex) {
+        if (ex != null || !(handler instanceof UserDestinationMessageHandler)) return;
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        Principal user = accessor.getUser();
+        String destination = accessor.getDestination();
+        // The destination comes from the frame itself: the user registry learns of the subscription
+        // from a SessionSubscribeEvent that may not have been handled yet
+        if (config.isEnabled() && accessor.getMessageType() == SimpMessageType.SUBSCRIBE && user != null
+                && destination != null && destination.startsWith(USER_DESTINATION_PREFIX + "/"))
+            replay(user.getName(), Set.of(destination.substring(USER_DESTINATION_PREFIX.length())));
+    }
+
+    // Helper methods
+    private void replay(String username, Set<String> destinations) {
+        if (destinations.isEmpty()) return;
+
+        String key = QUEUE_KEY_PREFIX + username;
+        String lockKey = LOCK_KEY_PREFIX + username;
+        try {
+            if (pending(key).isEmpty()) return; // The usual case, one round trip
+            String lockToken = redisLock.tryAcquire(lockKey, LOCK_TIMEOUT);
+            if (lockToken == null) return;
+            try {
+                deliver(username, key, destinations);
+            } finally {
+                redisLock.release(lockKey, lockToken);
+            }
+        } catch (DataAccessException ex) {
+            log.warn("Offline replay for [{}] failed, kept for the next subscription: {}", username, ex.getMessage());
+        }
+    }
+
+    private void deliver(String username, String key, Set<String> destinations) {
+        long now = System.currentTimeMillis();
+        Map<String, List<JsonNode>> byDestination = new LinkedHashMap<>();
+        List<RecordId> done = new ArrayList<>();
+
+        for (MapRecord<String, Object, Object> entry : pending(key)) {
+            Map<Object, Object> fields = entry.getValue();
+            String destination = String.valueOf(fields.get("destination"));
+            if (Long.parseLong(String.valueOf(fields.get("expiresAt"))) < now) {
+                done.add(entry.getId());
+                expiredCounter.increment();
+            } else if (destinations.contains(destination)) {
+                try {
+                    byDestination.computeIfAbsent(destination, d -> new ArrayList<>())
+                            .add(objectMapper.readTree(String.valueOf(fields.get("payload"))));
+                } catch (JsonProcessingException e) {
+                    log.warn("Unreadable offline message {} for [{}] dropped", entry.getId(), username);
+                }
+                done.add(entry.getId());
+            }
+        }
+
+        byDestination.forEach((destination, messages) -> {
+            for (int from = 0; from < messages.size(); from += config.getBatchSize()) {
+                List<JsonNode> batch = messages.subList(from, Math.min(from + config.getBatchSize(), messages.size()));
+                messagingTemplate.convertAndSendToUser(username, destination, SignalMessage.builder()
+                        .type("OFFLINE_BATCH")
+                        .action("REPLAY")
+                        .payload(Map.of("messages", batch))
+                        .senderId("system")
+                        .timestamp(Instant.now())
+                        .build());
+                replayedCounter.increment(batch.size());
+            }
+        });
+        // Sent (or expired): acknowledged by deleting them, the rest stays for other destinations
+        if (!done.isEmpty()) stringRedisTemplate.opsForStream().delete(key, done.toArray(RecordId[]::new));
+    }
+
+    private List<MapRecord<String, Object, Object>> pending(String key) {
+        List<MapRecord<String, Object, Object>> entries = stringRedisTemplate.opsForStream()
+                .range(key, Range.unbounded(), Limit.limit().count(config.getMaxLength() * 2));
+        return entries != null ? entries : List.of();
+    }
+
+    // /user/queue/notifications subscriptions of the user's sessions on this node, as /queue/notifications
+    private Set<String> subscribedDestinations(String username) {
+        SimpUser user = userRegistry.getUser(username);
+        if (user == null) return Set.of();
+        Set<String> destinations = new HashSet<>();
+        user.getSessions().forEach(session -> {
+            for (SimpSubscription subscription : session.getSubscriptions()) {
+                String destination = subscription.getDestination();
+                if (destination.startsWith(USER_DESTINATION_PREFIX + "/"))
+                    destinations.add(destination.substring(USER_DESTINATION_PREFIX.length()));
+            }
+        });
+        return destinations;
+    }
+
+    private Counter offlineCounter(String result) {
+        return Counter.builder("websocket.offline.messages")
+                .tag("result", result)
+                .description("User-destination messages kept for offline users, by what became of them")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,124 @@
+package com.almousleck.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks of the same WebSocket session one after another, in submission order, while
+ * different sessions run concurrently on the delegate. Meant for a virtual-thread-per-task
+ * delegate: each session with pending frames has at most one thread, which blocks only that
+ * session when a handler blocks. Tasks without a session id go straight to the delegate.
+ * Shutting down stops new drains and lets the running ones finish what their sessions have queued.
+ */
+@Slf4j
+public class SessionOrderedExecutor implements TaskExecutor, AutoCloseable {
+
+    private final ExecutorService delegate;
+    private final Duration drainTimeout; // How long close() waits for queued tasks
+    private final Map<String, Queue<Runnable>> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public SessionOrderedExecutor(ExecutorService delegate) {
+        this(delegate, Duration.ZERO);
+    }
+
+    public SessionOrderedExecutor(ExecutorService delegate, Duration drainTimeout) {
+        this.delegate = delegate;
+        this.drainTimeout = drainTimeout;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        String sessionId = task instanceof MessageHandlingRunnable handling
+                ? SimpMessageHeaderAccessor.getSessionId(handling.getMessage().getHeaders())
+                : null;
+        execute(sessionId, task);
+    }
+
+    public void execute(String sessionId, Runnable task) {
+        pending.incrementAndGet();
+        if (sessionId == null) {
+            delegate.execute(() -> runCounted(task));
+            return;
+        }
+
+        boolean[] created = new boolean[1];
+        Queue<Runnable> queue = queues.compute(sessionId, (id, current) -> {
+            if (current == null) {
+                current = new ConcurrentLinkedQueue<>();
+                created[0] = true; // No drain running for this session, start one
+            }
+            current.add(task);
+            return current;
+        });
+        if (!created[0]) return;
+        try {
+            delegate.execute(() -> drain(sessionId, queue));
+        } catch (RejectedExecutionException ex) {
+            // Shut down: nothing will drain this queue, take it back along with what joined it meanwhile
+            queues.remove(sessionId, queue);
+            pending.addAndGet(-queue.size());
+            throw ex;
+        }
+    }
+
+    /**
+     * Stops taking sessions that have no drain running and waits up to the drain timeout for the
+     * running drains to finish their queues, tasks submitted meanwhile included.
+     */
+    @Override
+    public void close() {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(drainTimeout.toMillis(), TimeUnit.MILLISECONDS))
+                log.warn("{} WebSocket tasks still pending after {} ms, abandoned", pending.get(), drainTimeout.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Tasks submitted but not finished yet, running ones included
+    public int pending() {
+        return pending.get();
+    }
+
+    // Sessions with a drain running
+    public int activeSessions() {
+        return queues.size();
+    }
+
+    // Helper methods
+    private void drain(String sessionId, Queue<Runnable> queue) {
+        while (true) {
+            Runnable task;
+            while ((task = queue.poll()) != null) runCounted(task);
+
+            // Enqueueing happens under compute on the same key, so a task cannot slip in between check and removal
+            boolean[] finished = new boolean[1];
+            queues.computeIfPresent(sessionId, (id, current) -> {
+                if (!current.isEmpty()) return current;
+                finished[0] = true;
+                return null;
+            });
+            if (finished[0]) return;
+        }
+    }
+
+    private void runCounted(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException ex) {
+            log.error("WebSocket task failed: {}", ex.getMessage(), ex); // Keep draining the session
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+}
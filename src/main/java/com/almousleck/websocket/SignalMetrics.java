@@ -0,0 +1,145 @@
+package com.almousleck.websocket;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of signals, per signal type:
+ * - websocket.signal.excess.delay: client timestamp to the handler picking the signal up, minus the
+ *   smallest such delay the session showed over the last two windows. Device clocks are not
+ *   synchronised with the server, so that minimum stands in for the clock offset; it also contains
+ *   the session's base network latency, which is therefore not measured here. What remains is the
+ *   delay above the session's fastest signal (jitter, queueing, retransmits), not an end-to-end
+ *   latency, so it has no latency objective.
+ * - signal.server.handler: time in the STOMP handler.
+ * - ai.service.calls: AI core round trip, recorded by AIServiceClient.
+ * - signal.outbound.queue: from the broker handing a message to the outbound channel to a thread
+ *   writing it to the session (outbound channel interceptor).
+ * Percentile histograms and the 100ms objective of the server-side legs are configured under
+ * management.metrics.distribution.
+ */
+@Component
+@RequiredArgsConstructor
+public class SignalMetrics implements ExecutorChannelInterceptor {
+
+    static final String QUEUED_AT_HEADER = "signalQueuedAt";
+    static final String SIGNAL_TYPE_HEADER = "signalType";
+    private static final String OTHER_TYPE = "OTHER"; // Types come from clients, only known ones become tags
+
+    @Value("${app.websocket.metrics.skew-window-ms:300000}")
+    private long skewWindowMillis;
+    @Value("${app.websocket.metrics.signal-types:NAVIGATION,OBJECT_DETECTION,TEXT_RECOGNITION,VOICE_COMMAND,EMERGENCY,SYSTEM_ALERT,OFFLINE_BATCH}")
+    private Set<String> signalTypes;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, SkewEstimate> skewBySession = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    // Smallest client-to-server delay of the current and the previous window, in millis
+    private static final class SkewEstimate {
+        long windowStart;
+        long windowMin = Long.MAX_VALUE;
+        long previousMin = Long.MAX_VALUE;
+
+        synchronized long offset(long delay, long now, long windowMillis) {
+            if (now - windowStart >= windowMillis) {
+                previousMin = windowMin;
+                windowMin = Long.MAX_VALUE;
+                windowStart = now;
+            }
+            windowMin = Math.min(windowMin, delay);
+            return Math.min(windowMin, previousMin);
+        }
+    }
+
+    /**
+     * Records the client leg of a signal the handler has just received; signals without a client
+     * timestamp or session are skipped.
+     */
+    public void recordReceived(String sessionId, String type, Instant clientTimestamp) {
+        if (sessionId == null || clientTimestamp == null) return;
+        long now = System.currentTimeMillis();
+        long delay = now - clientTimestamp.toEpochMilli();
+        long offset = skewBySession.computeIfAbsent(sessionId, id -> new SkewEstimate())
+                .offset(delay, now, skewWindowMillis);
+        timer("websocket.signal.excess.delay", type, "Client to server delay of signals above the session's fastest one")
+                .record(delay - offset, TimeUnit.MILLISECONDS);
+    }
+
+    public Timer.Sample startHandler() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void stopHandler(Timer.Sample sample, String type) {
+        sample.stop(timer("signal.server.handler", type, "Time the STOMP handler spent on a signal"));
+    }
+
+    public void stopAiCall(Timer.Sample sample, String type, String outcome) {
+        sample.stop(Timer.builder("ai.service.calls")
+                .tags("type", tagFor(type), "outcome", outcome)
+                .description("Round trips to the AI core by signal type and outcome")
+                .register(meterRegistry));
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        skewBySession.remove(event.getSessionId());
+    }
+
+    // Outbound channel: the broker leaves its messages mutable, so the stamp costs no copy
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        MessageHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, MessageHeaderAccessor.class);
+        if (accessor == null || !accessor.isMutable()
+                || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE)
+            return message;
+        accessor.setHeader(QUEUED_AT_HEADER, System.nanoTime());
+        String type = SignalTypeReader.read(message); // Read now, the payload may be transcoded to CBOR next
+        if (type != null) accessor.setHeader(SIGNAL_TYPE_HEADER, type);
+        return message;
+    }
+
+    @Override
+    public Message<?> beforeHandle(@NonNull Message<?> message, @NonNull MessageChannel channel,
+                                   @NonNull MessageHandler handler) {
+        if (message.getHeaders().get(QUEUED_AT_HEADER) instanceof Long queuedAt) {
+            timer("signal.outbound.queue", message.getHeaders().get(SIGNAL_TYPE_HEADER, String.class),
+                    "Time outbound messages waited before being written to their session")
+                    .record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+        }
+        return message;
+    }
+
+    // Helper methods
+    private Timer timer(String name, String type, String description) {
+        String tag = tagFor(type);
+        return timers.computeIfAbsent(name + ':' + tag, key -> Timer.builder(name)
+                .tag("type", tag)
+                .description(description)
+                .register(meterRegistry));
+    }
+
+    private String tagFor(String type) {
+        return type != null && signalTypes.contains(type) ? type : OTHER_TYPE;
+    }
+}
@@ -0,0 +1,57 @@
+package com.almousleck.websocket;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+
+/**
+ * Reads the signal type of a STOMP frame without binding the body: the "signal-type" header when
+ * the client sends one, otherwise the top-level "type" field (JSON or CBOR) with a streaming parser
+ * that stops at that field.
+ */
+@Slf4j
+public final class SignalTypeReader {
+
+    public static final String SIGNAL_TYPE_HEADER = "signal-type";
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final JsonFactory CBOR = new CBORFactory();
+
+    private SignalTypeReader() {
+    }
+
+    public static String read(Message<?> message) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        String type = accessor.getFirstNativeHeader(SIGNAL_TYPE_HEADER);
+        if (type != null || !(message.getPayload() instanceof byte[] body) || body.length == 0) return type;
+        return readBody(isCbor(accessor.getContentType()) ? CBOR : JSON, body);
+    }
+
+    // Helper methods
+    private static boolean isCbor(MimeType contentType) {
+        return contentType != null && (SignalWireFormat.CBOR.isCompatibleWith(contentType)
+                || "cbor".equals(contentType.getParameter("format")));
+    }
+
+    private static String readBody(JsonFactory format, byte[] body) {
+        try (JsonParser parser = format.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) return null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("type".equals(field)) return value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                parser.skipChildren(); // Nested payload is never read
+            }
+        } catch (IOException ex) {
+            log.debug("Signal type not readable: {}", ex.getMessage());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,155 @@
+package com.almousleck.websocket;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CBOR as a compact alternative to JSON for STOMP signals, chosen per session, JSON stays the default.
+ * - Inbound: a SEND frame with content-type application/cbor is decoded straight from CBOR by
+ *   {@link #cborMessageConverter()}; frames without it go to the JSON converter as before.
+ * - Outbound: a session whose CONNECT frame carries content-type application/cbor gets its MESSAGE
+ *   frames transcoded from JSON to CBOR, streaming token by token, no object tree.
+ * Spring writes binary WebSocket frames only for octet-stream content and never on SockJS, so
+ * outbound CBOR is labelled application/octet-stream;format=cbor and only offered to sessions the
+ * endpoint marked with {@link #BINARY_FRAMES_ATTRIBUTE}; other sessions asking for CBOR get JSON.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SignalWireFormat implements ChannelInterceptor {
+
+    public static final MimeType CBOR = new MimeType("application", "cbor");
+    public static final MimeType CBOR_FRAME = new MimeType("application", "octet-stream", Map.of("format", "cbor"));
+    public static final String BINARY_FRAMES_ATTRIBUTE = "binaryFrames"; // Set by endpoints without SockJS
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final String CONTENT_TYPE_HEADER = "content-type";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Set<String> cborSessions = ConcurrentHashMap.newKeySet();
+    private final CBORFactory cborFactory = new CBORFactory();
+    private volatile Transcoded lastTranscoded; // Topic fan-out sends the same payload array to every session
+    private Counter transcodedCounter;
+
+    private record Transcoded(byte[] json, byte[] cbor) {
+    }
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("websocket.sessions.cbor", cborSessions, Set::size)
+                .description("WebSocket sessions receiving CBOR instead of JSON")
+                .register(meterRegistry);
+        transcodedCounter = Counter.builder("websocket.outbound.transcoded")
+                .tag("format", "cbor")
+                .description("Outbound STOMP payloads transcoded from JSON")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Converter for SEND frames with content-type application/cbor. Strict, so frames without a
+     * content-type still go to the JSON converter. Instants are read from ISO strings or epoch millis.
+     */
+    public MappingJackson2MessageConverter cborMessageConverter() {
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory())
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS)
+                .disable(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS);
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter(CBOR);
+        converter.setObjectMapper(cborMapper);
+        converter.setStrictContentTypeMatch(true);
+        return converter;
+    }
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String requested = accessor.getFirstNativeHeader(CONTENT_TYPE_HEADER);
+        if (requested == null || !CBOR.isCompatibleWith(MimeTypeUtils.parseMimeType(requested))) return;
+
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes != null && Boolean.TRUE.equals(attributes.get(BINARY_FRAMES_ATTRIBUTE))) {
+            cborSessions.add(accessor.getSessionId());
+        } else {
+            log.debug("Session {} asked for CBOR on a text-only transport, using JSON", accessor.getSessionId());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        cborSessions.remove(event.getSessionId());
+    }
+
+    public boolean isCbor(String sessionId) {
+        return sessionId != null && cborSessions.contains(sessionId);
+    }
+
+    // Outbound channel: JSON MESSAGE frames for CBOR sessions are rewritten before they are encoded
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        if (accessor.getMessageType() != SimpMessageType.MESSAGE || !isCbor(accessor.getSessionId())) return message;
+        if (!(message.getPayload() instanceof byte[] json) || json.length == 0) return message;
+        MimeType contentType = accessor.getContentType();
+        if (contentType == null || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType)) return message;
+
+        try {
+            byte[] cbor = transcode(json);
+            accessor.setContentType(CBOR_FRAME);
+            if (accessor.getFirstNativeHeader(CONTENT_TYPE_HEADER) != null)
+                accessor.setNativeHeader(CONTENT_TYPE_HEADER, CBOR_FRAME.toString());
+            return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+        } catch (IOException ex) {
+            log.warn("CBOR transcoding failed for session {}, sent as JSON: {}", accessor.getSessionId(), ex.getMessage());
+            return message;
+        }
+    }
+
+    // Helper methods
+    byte[] transcode(byte[] json) throws IOException {
+        Transcoded last = lastTranscoded;
+        if (last != null && last.json() == json) return last.cbor();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = JSON.createParser(json);
+             JsonGenerator generator = cborFactory.createGenerator(out)) {
+            while (parser.nextToken() != null) generator.copyCurrentEvent(parser);
+        }
+        byte[] cbor = out.toByteArray();
+        lastTranscoded = new Transcoded(json, cbor);
+        transcodedCounter.increment();
+        return cbor;
+    }
+}
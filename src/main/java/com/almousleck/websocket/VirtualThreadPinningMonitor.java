@@ -0,0 +1,96 @@
+package com.almousleck.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reports virtual threads pinned to their carrier (blocking inside synchronized or native code)
+ * while the WebSocket channels run on virtual threads. Listens to the JDK's own
+ * jdk.VirtualThreadPinned flight recorder event, so nothing is instrumented; every pinning site
+ * is logged once with its stack and counted in websocket.virtual.pinned.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 16; // Enough to get past the JDK parking frames
+
+    @Value("${app.websocket.executor.virtual-threads:false}")
+    private boolean virtualThreads;
+    @Value("${app.websocket.executor.pinned-threshold-ms:20}")
+    private long pinnedThresholdMillis; // Shorter pins are not recorded by the JDK
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Boolean> loggedSites = new ConcurrentHashMap<>();
+    private RecordingStream recording;
+    private Counter pinnedCounter;
+    private Timer pinnedTimer;
+
+    @PostConstruct
+    void init() {
+        if (!virtualThreads) return;
+        pinnedCounter = Counter.builder("websocket.virtual.pinned")
+                .description("Virtual threads that blocked while pinned to their carrier thread")
+                .register(meterRegistry);
+        pinnedTimer = Timer.builder("websocket.virtual.pinned.duration")
+                .description("How long virtual threads stayed pinned to their carrier thread")
+                .register(meterRegistry);
+        try {
+            recording = new RecordingStream();
+            recording.enable(PINNED_EVENT)
+                    .withThreshold(Duration.ofMillis(pinnedThresholdMillis))
+                    .withStackTrace();
+            recording.onEvent(PINNED_EVENT, this::onPinned);
+            recording.startAsync();
+        } catch (RuntimeException ex) {
+            log.warn("Virtual thread pinning diagnostics unavailable: {}", ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        if (recording != null) recording.close();
+    }
+
+    // Helper methods
+    void onPinned(RecordedEvent event) {
+        pinnedCounter.increment();
+        pinnedTimer.record(event.getDuration());
+
+        List<RecordedFrame> frames = event.getStackTrace() != null ? event.getStackTrace().getFrames() : List.of();
+        // The top frames are the JDK parking the thread; the first application frame names the site
+        String site = frames.stream()
+                .filter(frame -> !frame.getMethod().getType().getName().matches("^(java|jdk|sun)\\..*"))
+                .findFirst()
+                .or(() -> frames.stream().findFirst())
+                .map(VirtualThreadPinningMonitor::describe)
+                .orElse("unknown");
+        if (loggedSites.putIfAbsent(site, Boolean.TRUE) != null) return; // Each site once, the counter keeps the rate
+
+        StringBuilder stack = new StringBuilder();
+        frames.stream().limit(LOGGED_FRAMES).forEach(frame -> stack.append("\n\tat ").append(describe(frame)));
+        log.warn("Virtual thread pinned for {} ms at {}{}", event.getDuration().toMillis(), site, stack);
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
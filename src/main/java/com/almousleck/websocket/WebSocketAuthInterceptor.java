@@ -1,5 +1,7 @@
 package com.almousleck.websocket;
 
+import com.almousleck.exceptions.HandshakeRejectedException;
+import com.almousleck.jwt.DeviceTokenUtils;
 import com.almousleck.jwt.JwtUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -17,6 +19,7 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Component
@@ -25,6 +28,8 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
 
     private final JwtUtils jwtUtils;
     private final UserDetailsService userDetailsService;
+    private final DeviceTokenUtils deviceTokenUtils;
+    private final HandshakeAdmissionController admissionController;
 
     @Override
     public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
@@ -33,30 +38,58 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
 
         assert accessor != null; //accessor may return NulPointerException
         if (StompCommand.CONNECT.equals(accessor.getCommand())) {
-            List<String> authHeaders = accessor.getNativeHeader("Authorization");
-
-            if (authHeaders != null && !authHeaders.isEmpty()) {
-                String token = authHeaders.get(0).replace("Bearer ", "");
-                try {
-                    if (jwtUtils.validateToken(token)) {
-                        String username = jwtUtils.getUsernameFromToken(token);
-                        UserDetails userDetails = userDetailsService
-                                .loadUserByUsername(username);
-                        UsernamePasswordAuthenticationToken authentication =
-                                new UsernamePasswordAuthenticationToken(
-                                        userDetails,
-                                        null,
-                                        userDetails.getAuthorities()
-                                );
-                        accessor.setUser(authentication);
-                        SecurityContextHolder.getContext().setAuthentication(authentication);
-                        log.info("WebSocket authenticated {}", username);
-                    }
-                } catch (Exception ex) {
-                    log.error("WebSocket Auth Failed: {}", ex.getMessage());
-                }
+            // JWT check + user lookup is the expensive part of a reconnect storm, bound how many run at once
+            if (!admissionController.tryAdmit()) {
+                throw new HandshakeRejectedException("Server busy, retry later", admissionController.retryAfterSeconds());
+            }
+            try {
+                authenticate(accessor);
+                bindDevice(accessor);
+            } finally {
+                admissionController.release();
             }
         }
         return message;
     }
+
+    // Helper methods
+    private void authenticate(StompHeaderAccessor accessor) {
+        List<String> authHeaders = accessor.getNativeHeader("Authorization");
+
+        if (authHeaders != null && !authHeaders.isEmpty()) {
+            String token = authHeaders.get(0).replace("Bearer ", "");
+            try {
+                if (jwtUtils.validateToken(token)) {
+                    String username = jwtUtils.getUsernameFromToken(token);
+                    UserDetails userDetails = userDetailsService
+                            .loadUserByUsername(username);
+                    UsernamePasswordAuthenticationToken authentication =
+                            new UsernamePasswordAuthenticationToken(
+                                    userDetails,
+                                    null,
+                                    userDetails.getAuthorities()
+                            );
+                    accessor.setUser(authentication);
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                    log.info("WebSocket authenticated {}", username);
+                }
+            } catch (Exception ex) {
+                log.error("WebSocket Auth Failed: {}", ex.getMessage());
+            }
+        }
+    }
+
+    // Glasses send their serial and device token on CONNECT; the session then drives the device's presence
+    private void bindDevice(StompHeaderAccessor accessor) {
+        String serialNumber = accessor.getFirstNativeHeader("device-serial");
+        if (serialNumber == null) return;
+
+        Map<String, Object> sessionAttributes = accessor.getSessionAttributes();
+        if (sessionAttributes == null) return;
+        if (deviceTokenUtils.isValidFor(accessor.getFirstNativeHeader("device-token"), serialNumber)) {
+            sessionAttributes.put(WebSocketSessionRegistry.DEVICE_SERIAL_ATTRIBUTE, serialNumber);
+        } else {
+            log.warn("WebSocket device token rejected for {}", serialNumber);
+        }
+    }
 }
@@ -1,14 +1,27 @@
 package com.almousleck.websocket;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -16,24 +29,104 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @Order(Ordered.HIGHEST_PRECEDENCE + 99)
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Value("${app.websocket.broker.cache-limit:20000}")
+    private int brokerCacheLimit; // Destinations whose subscribers the simple broker caches
+    @Value("${app.websocket.executor.virtual-threads:false}")
+    private boolean virtualThreads;
+    @Value("${app.websocket.executor.outbound-drain-timeout-ms:10000}")
+    private long outboundDrainTimeoutMillis; // How long shutdown waits for queued outbound frames
+    @Value("${app.websocket.device.path:/ws/device}")
+    private String devicePath;
+    @Value("${app.websocket.device.permessage-deflate:true}")
+    private boolean devicePerMessageDeflate;
+    @Value("${app.websocket.transport.buffer-size:16384}")
+    private int bufferSize; // Container read buffer per session and direction, allocated up front
+    @Value("${app.websocket.transport.message-size-limit:65536}")
+    private int messageSizeLimit; // Largest STOMP message, Spring's default
+    @Value("${app.websocket.transport.send-buffer-size-limit:262144}")
+    private int sendBufferSizeLimit;
+
     private final WebSocketAuthInterceptor authInterceptor;
+    private final HandshakeAdmissionInterceptor handshakeAdmissionInterceptor;
+    private final HandshakeRejectionErrorHandler handshakeRejectionErrorHandler;
+    private final BinaryFramesHandshakeInterceptor binaryFramesHandshakeInterceptor;
+    private final InboundPriorityLanes inboundPriorityLanes;
+    private final SignalWireFormat signalWireFormat;
+    private final SignalMetrics signalMetrics;
+    private final MeterRegistry meterRegistry;
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // Browsers: SockJS, with its HTTP fallbacks
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("http://localhost:3000", "http://localhost:8081")
+                .addInterceptors(handshakeAdmissionInterceptor)
                 .withSockJS();
+        // Device firmware: plain WebSocket, one upgrade instead of an info request plus SockJS framing
+        registry.addEndpoint(devicePath)
+                .setAllowedOriginPatterns("http://localhost:3000", "http://localhost:8081")
+                .setHandshakeHandler(new DeviceHandshakeHandler(devicePerMessageDeflate))
+                .addInterceptors(handshakeAdmissionInterceptor, binaryFramesHandshakeInterceptor);
+        registry.setErrorHandler(handshakeRejectionErrorHandler);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // The STOMP limit stays independent of the container buffers: SockJS HTTP transports never use
+        // those, and a STOMP message split over several WebSocket frames is reassembled up to this size
+        registration.setMessageSizeLimit(messageSizeLimit)
+                .setSendBufferSizeLimit(sendBufferSizeLimit);
+    }
+
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(bufferSize);
+        container.setMaxBinaryMessageBufferSize(bufferSize);
+        return container;
     }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         registry.enableSimpleBroker("/topic", "/queue");
+        // Every session has its own /queue/...-user{sessionId} destination, the default 1024 would thrash
+        registry.setCacheLimit(brokerCacheLimit);
         registry.setApplicationDestinationPrefixes("/app");
         registry.setUserDestinationPrefix("/user");
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(authInterceptor);
+        // EMERGENCY and VOICE_COMMAND frames get their own lane, so detection floods cannot delay them.
+        // Typed as TaskExecutor: the broker stats bean injects the channel executor as one, startup fails otherwise
+        registration.interceptors(authInterceptor)
+                .executor((TaskExecutor) inboundPriorityLanes::execute);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Metrics first: it reads the signal type before the payload is transcoded to CBOR for sessions that negotiated it
+        registration.interceptors(signalMetrics, signalWireFormat);
+        if (virtualThreads) registration.executor(clientOutboundSessionExecutor()); // Else Spring's default pool
+    }
+
+    // One virtual thread per session with frames to write, in publish order, so a slow client blocks only itself.
+    // Closed on shutdown after writing what sessions still have queued, like the write-behind buffers flush
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "app.websocket.executor.virtual-threads", havingValue = "true")
+    public SessionOrderedExecutor clientOutboundSessionExecutor() {
+        SessionOrderedExecutor outbound = new SessionOrderedExecutor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("outbound-", 0).factory()),
+                Duration.ofMillis(outboundDrainTimeoutMillis));
+        Gauge.builder("websocket.outbound.pending", outbound, SessionOrderedExecutor::pending)
+                .description("Outbound STOMP frames not yet written to their session")
+                .register(meterRegistry);
+        return outbound;
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.add(signalWireFormat.cborMessageConverter());
+        return true; // Keep the default converters, JSON stays the fallback
     }
 }
@@ -0,0 +1,189 @@
+package com.almousleck.websocket;
+
+import com.almousleck.service.DeviceService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * STOMP sessions connected to this node, indexed by session id, by user and by device serial.
+ * Filled from the session connect/disconnect events; the events only mark a device dirty, and a
+ * scheduled flush moves dirty devices ONLINE or OFFLINE in batches, by whether they still have a
+ * session here, so a quick reconnect does not flap the row and no MySQL write runs on a
+ * WebSocket thread.
+ * A device that moves to another node may briefly be marked OFFLINE by the node it left;
+ * its next heartbeat on the new node restores it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WebSocketSessionRegistry {
+
+    // Session attribute holding the serial a device token was verified for at CONNECT
+    public static final String DEVICE_SERIAL_ATTRIBUTE = "deviceSerialNumber";
+
+    @Value("${app.websocket.sessions.presence-batch-size:500}")
+    private int presenceBatchSize;
+
+    private final DeviceService deviceService;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, SessionInfo> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sessionsByDevice = new ConcurrentHashMap<>();
+    private final Set<String> dirtyDevices = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public record SessionInfo(String sessionId, String username, String serialNumber, Instant connectedAt) {
+    }
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("websocket.sessions", sessions, Map::size)
+                .description("STOMP sessions connected to this node")
+                .register(meterRegistry);
+        Gauge.builder("websocket.presence.pending", dirtyDevices, Set::size)
+                .description("Devices whose connect/disconnect is not written to presence yet")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String sessionId = accessor.getSessionId();
+        if (sessionId == null) return;
+
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        Object serial = attributes != null ? attributes.get(DEVICE_SERIAL_ATTRIBUTE) : null;
+        Principal user = event.getUser();
+        register(new SessionInfo(sessionId, user != null ? user.getName() : null,
+                serial != null ? serial.toString() : null, Instant.now()));
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        // May be published more than once for the same session, removal is idempotent
+        unregister(event.getSessionId());
+    }
+
+    public Optional<SessionInfo> getSession(String sessionId) {
+        return Optional.ofNullable(sessions.get(sessionId));
+    }
+
+    public Set<String> getSessionIds(String username) {
+        Set<String> ids = sessionsByUser.get(username);
+        return ids != null ? Collections.unmodifiableSet(ids) : Set.of();
+    }
+
+    public boolean hasSessions(String username) {
+        return sessionsByUser.containsKey(username);
+    }
+
+    public Set<String> connectedUsers() {
+        return Collections.unmodifiableSet(sessionsByUser.keySet());
+    }
+
+    public boolean isDeviceConnected(String serialNumber) {
+        return sessionsByDevice.containsKey(serialNumber);
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    // Writes each dirty device's current state: ONLINE if it still has a session here, else OFFLINE
+    @Scheduled(fixedDelayString = "${app.websocket.sessions.presence-flush-interval-ms:500}")
+    public void flushPresence() {
+        if (dirtyDevices.isEmpty() || !flushLock.tryLock()) return;
+        try {
+            List<String> online = new ArrayList<>();
+            List<String> offline = new ArrayList<>();
+            for (Iterator<String> it = dirtyDevices.iterator(); it.hasNext(); ) {
+                String serial = it.next();
+                it.remove(); // A change after this point marks it dirty again for the next flush
+                (isDeviceConnected(serial) ? online : offline).add(serial);
+            }
+
+            for (int i = 0; i < online.size(); i += presenceBatchSize)
+                write(online.subList(i, Math.min(i + presenceBatchSize, online.size())), true);
+            for (int i = 0; i < offline.size(); i += presenceBatchSize)
+                write(offline.subList(i, Math.min(i + presenceBatchSize, offline.size())), false);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Sessions are closed by the broker lifecycle before this, their disconnects are still pending
+        flushPresence();
+    }
+
+    // Helper methods
+    private void register(SessionInfo session) {
+        if (sessions.putIfAbsent(session.sessionId(), session) != null) return;
+
+        if (session.username() != null) addTo(sessionsByUser, session.username(), session.sessionId());
+        if (session.serialNumber() != null) {
+            addTo(sessionsByDevice, session.serialNumber(), session.sessionId());
+            dirtyDevices.add(session.serialNumber());
+        }
+        log.debug("WebSocket session {} connected (user {}, device {})",
+                session.sessionId(), session.username(), session.serialNumber());
+    }
+
+    private void unregister(String sessionId) {
+        SessionInfo session = sessions.remove(sessionId);
+        if (session == null) return;
+
+        if (session.username() != null) removeFrom(sessionsByUser, session.username(), sessionId);
+        if (session.serialNumber() != null) {
+            removeFrom(sessionsByDevice, session.serialNumber(), sessionId);
+            dirtyDevices.add(session.serialNumber());
+        }
+        log.debug("WebSocket session {} disconnected", sessionId);
+    }
+
+    // Both run inside compute, so a session added while the last other one leaves is never dropped
+    private static void addTo(Map<String, Set<String>> index, String key, String sessionId) {
+        index.compute(key, (k, ids) -> {
+            Set<String> result = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            result.add(sessionId);
+            return result;
+        });
+    }
+
+    private static void removeFrom(Map<String, Set<String>> index, String key, String sessionId) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(sessionId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private void write(List<String> serialNumbers, boolean online) {
+        try {
+            if (online) deviceService.markDevicesOnline(serialNumbers);
+            else deviceService.markDevicesOffline(serialNumbers);
+        } catch (RuntimeException ex) {
+            // Retried with the next flush, by then the state may have changed again
+            log.warn("Presence update for {} devices failed, retrying: {}", serialNumbers.size(), ex.getMessage());
+            dirtyDevices.addAll(serialNumbers);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+-- Append-only raw telemetry, one row per heartbeat sample, partitioned by day (UTC).
+-- Partitioned tables cannot carry foreign keys, device_id is not constrained.
+-- Daily partitions are created ahead and dropped after retention by TelemetryPartitionManager.
+CREATE TABLE device_telemetry
+(
+    device_id     BIGINT      NOT NULL,
+    recorded_at   DATETIME(3) NOT NULL,
+    battery_level INT,
+    location_lat  DOUBLE,
+    location_lng  DOUBLE,
+    PRIMARY KEY (device_id, recorded_at),
+    INDEX         idx_telemetry_recorded (recorded_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+PARTITION BY RANGE (TO_DAYS(recorded_at)) (
+    PARTITION p_start VALUES LESS THAN (TO_DAYS('2026-01-01')),
+    PARTITION p_future VALUES LESS THAN MAXVALUE
+);
+
+-- 1-minute and 1-hour aggregates; avg = battery_sum / battery_count
+CREATE TABLE device_telemetry_1m
+(
+    device_id     BIGINT   NOT NULL,
+    bucket_start  DATETIME NOT NULL,
+    battery_min   INT,
+    battery_max   INT,
+    battery_sum   BIGINT   NOT NULL DEFAULT 0,
+    battery_count INT      NOT NULL DEFAULT 0,
+    sample_count  INT      NOT NULL,
+    PRIMARY KEY (device_id, bucket_start),
+    INDEX         idx_telemetry_1m_bucket (bucket_start)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE device_telemetry_1h
+(
+    device_id     BIGINT   NOT NULL,
+    bucket_start  DATETIME NOT NULL,
+    battery_min   INT,
+    battery_max   INT,
+    battery_sum   BIGINT   NOT NULL DEFAULT 0,
+    battery_count INT      NOT NULL DEFAULT 0,
+    sample_count  INT      NOT NULL,
+    PRIMARY KEY (device_id, bucket_start),
+    INDEX         idx_telemetry_1h_bucket (bucket_start)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- How far each rollup tier is complete, shared by all nodes
+CREATE TABLE telemetry_rollup_state
+(
+    tier          VARCHAR(8)  NOT NULL PRIMARY KEY,
+    rolled_up_to  DATETIME(3) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
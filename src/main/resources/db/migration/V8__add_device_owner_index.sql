@@ -0,0 +1,3 @@
+-- Keyset pagination of a user's devices: WHERE owner_id = ? AND id > ? ORDER BY id is one index range read.
+-- It also backs fk_device_owner, so MySQL drops the index it created implicitly for the foreign key.
+CREATE INDEX idx_device_owner_id ON devices(owner_id, id);
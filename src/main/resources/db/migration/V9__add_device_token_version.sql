@@ -0,0 +1,3 @@
+-- Device tokens carry this version in their signed payload; unpairing or reissuing a token bumps it,
+-- so every token issued before stops verifying.
+ALTER TABLE devices ADD COLUMN token_version INT NOT NULL DEFAULT 0;
@@ -0,0 +1,313 @@
+package com.almousleck.benchmark;
+
+import com.almousleck.websocket.BinaryFramesHandshakeInterceptor;
+import com.almousleck.websocket.DeviceHandshakeHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketServletAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SockJS /ws against the native /ws/device endpoint, over a real embedded Tomcat with the same
+ * endpoint, buffer and handshake setup as WebSocketConfig (no authentication or admission control).
+ * Traffic goes through a local TCP proxy that counts the bytes in both directions, so the sizes are
+ * what is on the wire (HTTP upgrade, SockJS framing, WebSocket headers, deflate) and not payloads.
+ * - connect: from opening the connection to the STOMP CONNECTED frame, and bytes exchanged for it.
+ *   SockJS also fetches /ws/info first; on loopback that round trip is nearly free, on a cellular
+ *   link each one is tens of milliseconds.
+ * - message: a signal SENT to a topic the same session subscribes to, waiting for each echo; bytes
+ *   both ways per signal.
+ * Each variant is also run with the client offering permessage-deflate, as browsers do.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=DeviceEndpointBenchmark
+ */
+@Slf4j
+@Tag("benchmark")
+class DeviceEndpointBenchmark {
+
+    private static final int CONNECTS = 200;
+    private static final int MESSAGES = 5_000;
+    private static final int BUFFER_SIZE = 16_384; // app.websocket.transport.buffer-size
+    private static final int MESSAGE_SIZE_LIMIT = 65_536; // app.websocket.transport.message-size-limit
+
+    @Test
+    void compareSockJsAndNativeEndpoints() throws Exception {
+        try (ServletWebServerApplicationContext server = (ServletWebServerApplicationContext) new SpringApplicationBuilder(Server.class)
+                .web(WebApplicationType.SERVLET)
+                .properties("server.port=0", "spring.main.banner-mode=off",
+                        // SockJS logs every frame still in flight when a session is disconnected
+                        "logging.level.org.springframework.web.socket.sockjs=off")
+                .run();
+             CountingProxy proxy = new CountingProxy(server.getWebServer().getPort())) {
+
+            String base = "127.0.0.1:" + proxy.port();
+            assertNativeEndpoint(base);
+
+            Variant[] variants = {
+                    new Variant("SockJS", sockJs(), "http://" + base + "/ws", false),
+                    new Variant("SockJS + deflate", sockJs(), "http://" + base + "/ws", true),
+                    new Variant("native", new StandardWebSocketClient(), "ws://" + base + "/ws/device", false),
+                    new Variant("native + deflate", new StandardWebSocketClient(), "ws://" + base + "/ws/device", true)};
+
+            // JIT and connection warm-up round, not reported
+            for (Variant variant : variants) {
+                connect(variant, proxy, CONNECTS / 4);
+                exchange(variant, proxy, MESSAGES / 5);
+            }
+            for (Variant variant : variants) {
+                Result connect = connect(variant, proxy, CONNECTS);
+                Result message = exchange(variant, proxy, MESSAGES);
+                log.info("{}: connect {} ms, {} bytes, {} TCP connections; signal round trip {} µs, {} bytes on the wire",
+                        variant.name, String.format("%.2f", connect.micros / 1000), Math.round(connect.bytes),
+                        String.format("%.1f", connect.connections), String.format("%.0f", message.micros), Math.round(message.bytes));
+            }
+        }
+    }
+
+    // Averages per connect, each session disconnected before the next
+    private Result connect(Variant variant, CountingProxy proxy, int connects) throws Exception {
+        long nanos = 0;
+        long bytes = 0;
+        long connections = 0;
+        for (int i = 0; i < connects; i++) {
+            proxy.reset();
+            long start = System.nanoTime();
+            StompSession session = variant.connect();
+            nanos += System.nanoTime() - start;
+            bytes += proxy.upstream.get() + proxy.downstream.get();
+            connections += proxy.connections.get();
+            session.disconnect();
+        }
+        return new Result(nanos / 1000.0 / connects, (double) bytes / connects, (double) connections / connects);
+    }
+
+    // Averages per signal, one session sending and receiving its own echo
+    private Result exchange(Variant variant, CountingProxy proxy, int messages) throws Exception {
+        StompSession session = variant.connect();
+        BlockingQueue<String> echoes = new LinkedBlockingQueue<>();
+        session.subscribe("/topic/bench", new StompFrameHandler() {
+            @Override
+            @NonNull
+            public Type getPayloadType(@NonNull StompHeaders headers) {
+                return String.class;
+            }
+
+            @Override
+            public void handleFrame(@NonNull StompHeaders headers, Object payload) {
+                echoes.add((String) payload);
+            }
+        });
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination("/topic/bench"); // Sent as text/plain, the broker relays it untouched
+        session.send(headers, signal(-1)); // Subscription is in place once its first echo arrives
+        assertNotNull(echoes.poll(5, TimeUnit.SECONDS));
+
+        proxy.reset();
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            session.send(headers, signal(i));
+            assertNotNull(echoes.poll(5, TimeUnit.SECONDS));
+        }
+        long nanos = System.nanoTime() - start;
+        long bytes = proxy.upstream.get() + proxy.downstream.get();
+        session.disconnect();
+        return new Result(nanos / 1000.0 / messages, (double) bytes / messages, 0);
+    }
+
+    // /ws/device is a plain WebSocket upgrade (not taken by the SockJS /ws/** mapping) and negotiates deflate
+    private void assertNativeEndpoint(String base) throws Exception {
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        headers.setSecWebSocketExtensions(List.of(new WebSocketExtension(DEFLATE, Map.of("client_max_window_bits", ""))));
+        WebSocketSession session = new StandardWebSocketClient()
+                .execute(new TextWebSocketHandler(), headers, URI.create("ws://" + base + "/ws/device"))
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(DEFLATE), session.getExtensions().stream().map(WebSocketExtension::getName).toList());
+        session.close();
+    }
+
+    // Helper methods
+    private static final String DEFLATE = "permessage-deflate";
+
+    private static SockJsClient sockJs() {
+        return new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient())));
+    }
+
+    // A NAVIGATION update as glasses send it, position and distance changing from one to the next
+    private static String signal(int i) {
+        return String.format("{\"type\":\"NAVIGATION\",\"action\":\"POSITION\",\"payload\":{\"serialNumber\":\"GLASS-000123\","
+                        + "\"lat\":%.6f,\"lng\":%.6f,\"heading\":%d,\"distance\":%d},\"senderId\":\"GLASS-000123\","
+                        + "\"timestamp\":\"2025-12-26T10:%02d:%02d.%03dZ\"}",
+                30.546812 + i * 0.000011, 114.312455 - i * 0.000007, (270 + i) % 360, 250 - i % 250,
+                (i / 60_000) % 60, (i / 1000) % 60, i % 1000);
+    }
+
+    private record Result(double micros, double bytes, double connections) {
+    }
+
+    private static final class Variant {
+        final String name;
+        final WebSocketStompClient client;
+        final String url;
+        final WebSocketHttpHeaders handshakeHeaders = new WebSocketHttpHeaders();
+
+        Variant(String name, WebSocketClient transport, String url, boolean deflate) {
+            this.name = name;
+            this.url = url;
+            client = new WebSocketStompClient(transport);
+            client.setMessageConverter(new StringMessageConverter());
+            client.setDefaultHeartbeat(new long[]{0, 0});
+            if (deflate) handshakeHeaders.setSecWebSocketExtensions(List.of(new WebSocketExtension(DEFLATE)));
+        }
+
+        StompSession connect() throws Exception {
+            return client.connectAsync(url, handshakeHeaders, new StompSessionHandlerAdapter() {
+            }).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    // Forwards loopback connections to the server, counting bytes in each direction
+    private static final class CountingProxy implements AutoCloseable {
+        final AtomicLong upstream = new AtomicLong();
+        final AtomicLong downstream = new AtomicLong();
+        final AtomicLong connections = new AtomicLong();
+        private final ServerSocket listener;
+
+        CountingProxy(int targetPort) throws IOException {
+            listener = new ServerSocket(0, 512, InetAddress.getLoopbackAddress());
+            Thread.ofVirtual().start(() -> {
+                while (!listener.isClosed()) {
+                    try {
+                        Socket client = listener.accept();
+                        Socket server = new Socket(InetAddress.getLoopbackAddress(), targetPort);
+                        client.setTcpNoDelay(true);
+                        server.setTcpNoDelay(true);
+                        connections.incrementAndGet();
+                        pump(client, server, upstream);
+                        pump(server, client, downstream);
+                    } catch (IOException ex) {
+                        // Listener closed
+                    }
+                }
+            });
+        }
+
+        int port() {
+            return listener.getLocalPort();
+        }
+
+        void reset() {
+            upstream.set(0);
+            downstream.set(0);
+            connections.set(0);
+        }
+
+        private static void pump(Socket from, Socket to, AtomicLong counter) {
+            Thread.ofVirtual().start(() -> {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                try (InputStream in = from.getInputStream()) {
+                    OutputStream out = to.getOutputStream();
+                    for (int read; (read = in.read(buffer)) != -1; ) {
+                        counter.addAndGet(read);
+                        out.write(buffer, 0, read);
+                    }
+                    to.shutdownOutput();
+                } catch (IOException ex) {
+                    closeQuietly(to);
+                }
+            });
+        }
+
+        private static void closeQuietly(Socket socket) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            listener.close();
+        }
+    }
+
+    // Endpoints, broker and buffers as in WebSocketConfig
+    @Configuration(proxyBeanMethods = false)
+    @EnableWebSocketMessageBroker
+    @ImportAutoConfiguration({ServletWebServerFactoryAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+            WebSocketServletAutoConfiguration.class})
+    static class Server implements WebSocketMessageBrokerConfigurer {
+
+        @Override
+        public void registerStompEndpoints(@NonNull StompEndpointRegistry registry) {
+            registry.addEndpoint("/ws").withSockJS();
+            registry.addEndpoint("/ws/device")
+                    .setHandshakeHandler(new DeviceHandshakeHandler(true))
+                    .addInterceptors(new BinaryFramesHandshakeInterceptor());
+        }
+
+        @Override
+        public void configureMessageBroker(@NonNull MessageBrokerRegistry registry) {
+            registry.enableSimpleBroker("/topic");
+        }
+
+        @Override
+        public void configureWebSocketTransport(@NonNull WebSocketTransportRegistration registration) {
+            registration.setMessageSizeLimit(MESSAGE_SIZE_LIMIT);
+        }
+
+        @Bean
+        public ServletServerContainerFactoryBean createWebSocketContainer() {
+            ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+            container.setMaxTextMessageBufferSize(BUFFER_SIZE);
+            container.setMaxBinaryMessageBufferSize(BUFFER_SIZE);
+            return container;
+        }
+    }
+}
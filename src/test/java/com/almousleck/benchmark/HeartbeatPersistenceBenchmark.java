@@ -0,0 +1,123 @@
+package com.almousleck.benchmark;
+
+import com.almousleck.dto.device.HeartbeatSample;
+import com.almousleck.enums.DeviceStatus;
+import com.almousleck.model.Device;
+import com.almousleck.repository.device.DeviceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Before/after cost of persisting one heartbeat (H2, in-process, so only relative numbers matter):
+ * - entity: findBySerialNumber + setters + save (the original updateHeartbeat path)
+ * - single UPDATE: DeviceRepository.updateHeartbeat, no entity hydration
+ * - batch: DeviceRepository.batchUpdateHeartbeats, what the write-behind buffer flushes
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=HeartbeatPersistenceBenchmark
+ */
+@Slf4j
+@Tag("benchmark")
+@DataJpaTest(showSql = false, properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // every call commits on its own, like production
+class HeartbeatPersistenceBenchmark {
+
+    private static final int DEVICES = 1_000;
+    private static final int WARMUP = 3_000;
+    private static final int MEASURED = 20_000;
+
+    @Autowired
+    private DeviceRepository deviceRepository;
+
+    @BeforeEach
+    void setUp() {
+        deviceRepository.deleteAll();
+        deviceRepository.saveAll(IntStream.range(0, DEVICES)
+                .mapToObj(i -> Device.builder()
+                        .name("Bench " + i)
+                        .serialNumber(serial(i))
+                        .type("AI-GLASS-V1")
+                        .status(DeviceStatus.OFFLINE)
+                        .batteryLevel(50)
+                        .build())
+                .toList());
+    }
+
+    @Test
+    void compareHeartbeatWritePaths() {
+        double entity = measure("entity load + save", this::entityPath);
+        double single = measure("single UPDATE", this::singleUpdatePath);
+        double batched = measureBatched();
+
+        log.info("Heartbeat persistence: single UPDATE is {}x, batch is {}x the entity path",
+                String.format("%.1f", entity / single), String.format("%.1f", entity / batched));
+
+        assertEquals(1, deviceRepository.updateHeartbeat(serial(0), 77, "10.0.0.9", null, null, Instant.now()));
+        assertEquals(77, deviceRepository.findBySerialNumber(serial(0)).orElseThrow().getBatteryLevel());
+        assertEquals(0, deviceRepository.updateHeartbeat("GHOST-404", 77, null, null, null, Instant.now()));
+    }
+
+    private void entityPath(int i) {
+        Device device = deviceRepository.findBySerialNumber(serial(i % DEVICES)).orElseThrow();
+        device.setBatteryLevel(i % 100);
+        device.setIpAddress("10.0.0.1");
+        device.setLastHeartbeat(Instant.now());
+        deviceRepository.save(device);
+    }
+
+    private void singleUpdatePath(int i) {
+        deviceRepository.updateHeartbeat(serial(i % DEVICES), i % 100, "10.0.0.1", null, null, Instant.now());
+    }
+
+    private double measure(String name, java.util.function.IntConsumer path) {
+        for (int i = 0; i < WARMUP; i++) path.accept(i);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED; i++) path.accept(i);
+        double micros = (System.nanoTime() - start) / 1_000.0 / MEASURED;
+
+        log.info("{}: {} us/heartbeat ({} heartbeats/s)", name,
+                String.format("%.1f", micros), String.format("%.0f", 1_000_000 / micros));
+        return micros;
+    }
+
+    private double measureBatched() {
+        List<HeartbeatSample> batch = new ArrayList<>(DEVICES);
+        for (int i = 0; i < DEVICES; i++) {
+            batch.add(HeartbeatSample.builder()
+                    .serialNumber(serial(i))
+                    .batteryLevel(i % 100)
+                    .ipAddress("10.0.0.1")
+                    .heartbeatAt(Instant.now())
+                    .build());
+        }
+        for (int i = 0; i < WARMUP / DEVICES; i++) deviceRepository.batchUpdateHeartbeats(batch);
+
+        int rounds = MEASURED / DEVICES;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) deviceRepository.batchUpdateHeartbeats(batch);
+        double micros = (System.nanoTime() - start) / 1_000.0 / (rounds * DEVICES);
+
+        log.info("batch UPDATE x{}: {} us/heartbeat ({} heartbeats/s)", DEVICES,
+                String.format("%.1f", micros), String.format("%.0f", 1_000_000 / micros));
+        return micros;
+    }
+
+    private static String serial(int i) {
+        return "BENCH-%05d".formatted(i);
+    }
+}
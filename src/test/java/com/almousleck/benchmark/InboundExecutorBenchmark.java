@@ -0,0 +1,100 @@
+package com.almousleck.benchmark;
+
+import com.almousleck.websocket.SessionOrderedExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Latency of inbound frames with 10k sessions when some handlers block (an AI core or database
+ * call), comparing the platform pool Spring uses by default (2 threads per CPU) with virtual
+ * threads ordered per session (app.websocket.executor.virtual-threads).
+ * Every session sends frames at a steady total rate; SLOW_EVERY-th frame blocks for BLOCK_MILLIS.
+ * Latency is measured from submission to the end of the handler, for the frames that do not block.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=InboundExecutorBenchmark
+ */
+@Slf4j
+@Tag("benchmark")
+class InboundExecutorBenchmark {
+
+    private static final int SESSIONS = 10_000;
+    private static final int FRAMES_PER_SESSION = 5;
+    private static final int FRAMES_PER_SECOND = 20_000;
+    private static final int SLOW_EVERY = 200;    // 0.5% of frames block
+    private static final long BLOCK_MILLIS = 50;
+
+    @Test
+    void comparePlatformPoolAndVirtualThreads() throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors() * 2;
+
+        // JIT warm-up round, not reported
+        run(new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>()), false);
+        run(null, true);
+
+        long[] platform = run(new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>()), false);
+        long[] virtual = run(null, true);
+
+        log.info("{} sessions, {} frames/s, 1 in {} blocking {} ms", SESSIONS, FRAMES_PER_SECOND, SLOW_EVERY, BLOCK_MILLIS);
+        log.info("platform pool ({} threads): {}", threads, percentiles(platform));
+        log.info("virtual threads, per-session order: {}", percentiles(virtual));
+    }
+
+    // Latencies in microseconds of the frames that did not block
+    private long[] run(ExecutorService pool, boolean virtual) throws InterruptedException {
+        ExecutorService virtualThreads = Executors.newVirtualThreadPerTaskExecutor();
+        SessionOrderedExecutor ordered = new SessionOrderedExecutor(virtualThreads);
+
+        int total = SESSIONS * FRAMES_PER_SESSION;
+        long[] latencies = new long[total];
+        int[] lastSequence = new int[SESSIONS];
+        Arrays.fill(lastSequence, -1);
+        AtomicInteger outOfOrder = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(total);
+
+        long intervalNanos = 1_000_000_000L / FRAMES_PER_SECOND;
+        long start = System.nanoTime();
+        for (int frame = 0; frame < total; frame++) {
+            long due = start + frame * intervalNanos;
+            while (System.nanoTime() < due) Thread.onSpinWait();
+
+            int session = frame % SESSIONS, sequence = frame / SESSIONS, index = frame;
+            boolean slow = frame % SLOW_EVERY == 0;
+            long submitted = System.nanoTime();
+            Runnable handler = () -> {
+                if (slow) LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(BLOCK_MILLIS));
+                synchronized (lastSequence) {
+                    if (lastSequence[session] > sequence) outOfOrder.incrementAndGet();
+                    lastSequence[session] = sequence;
+                }
+                latencies[index] = slow ? -1 : (System.nanoTime() - submitted) / 1_000;
+                done.countDown();
+            };
+            if (virtual) ordered.execute("session-" + session, handler);
+            else pool.execute(handler);
+        }
+
+        assertTrue(done.await(2, TimeUnit.MINUTES));
+        if (virtual) assertEquals(0, outOfOrder.get());
+        if (pool != null) pool.shutdown();
+        virtualThreads.shutdown();
+        return Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+    }
+
+    private static String percentiles(long[] sorted) {
+        return String.format("p50 %d us, p90 %d us, p99 %d us, p99.9 %d us, max %d us",
+                at(sorted, 0.50), at(sorted, 0.90), at(sorted, 0.99), at(sorted, 0.999), sorted[sorted.length - 1]);
+    }
+
+    private static long at(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+}
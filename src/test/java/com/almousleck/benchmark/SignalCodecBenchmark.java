@@ -0,0 +1,129 @@
+package com.almousleck.benchmark;
+
+import com.almousleck.dto.signal.SignalMessage;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON vs CBOR for the signals devices exchange most: a NAVIGATION instruction and an
+ * OBJECT_DETECTION frame with ten detections. The JUnit entry logs the encoded sizes and runs
+ * the JMH encode/decode benchmarks (average time per message, lower is better).
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=SignalCodecBenchmark
+ */
+@Slf4j
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignalCodecBenchmark {
+
+    // Same settings as the JSON and CBOR converters of the STOMP channel
+    private static final ObjectMapper JSON = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private static final ObjectMapper CBOR = new ObjectMapper(new CBORFactory())
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS)
+            .disable(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS);
+
+    @Param({"NAVIGATION", "OBJECT_DETECTION"})
+    public String type;
+
+    private SignalMessage signal;
+    private byte[] json;
+    private byte[] cbor;
+
+    @Setup
+    public void setUp() throws IOException {
+        signal = signal(type);
+        json = JSON.writeValueAsBytes(signal);
+        cbor = CBOR.writeValueAsBytes(signal);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return JSON.writeValueAsBytes(signal);
+    }
+
+    @Benchmark
+    public byte[] encodeCbor() throws IOException {
+        return CBOR.writeValueAsBytes(signal);
+    }
+
+    @Benchmark
+    public SignalMessage decodeJson() throws IOException {
+        return JSON.readValue(json, SignalMessage.class);
+    }
+
+    @Benchmark
+    public SignalMessage decodeCbor() throws IOException {
+        return CBOR.readValue(cbor, SignalMessage.class);
+    }
+
+    @Test
+    void compareJsonAndCbor() throws IOException, RunnerException {
+        for (String signalType : List.of("NAVIGATION", "OBJECT_DETECTION")) {
+            SignalMessage message = signal(signalType);
+            int jsonBytes = JSON.writeValueAsBytes(message).length;
+            int cborBytes = CBOR.writeValueAsBytes(message).length;
+            log.info("{}: JSON {} bytes, CBOR {} bytes ({}% smaller)", signalType, jsonBytes, cborBytes,
+                    Math.round(100.0 * (jsonBytes - cborBytes) / jsonBytes));
+        }
+
+        Options options = new OptionsBuilder()
+                .include(SignalCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    // Helper methods
+    private static SignalMessage signal(String type) {
+        Instant timestamp = Instant.parse("2025-12-26T10:00:00.123Z");
+        if ("NAVIGATION".equals(type)) {
+            return SignalMessage.builder()
+                    .type("NAVIGATION")
+                    .action("TURN_LEFT")
+                    .payload(Map.of("text", "Turn left onto Main St", "distance", 25,
+                            "lat", 30.546812, "lng", 114.312455, "heading", 270))
+                    .senderId("GLASS-000123")
+                    .timestamp(timestamp)
+                    .build();
+        }
+        List<Map<String, Object>> detections = new ArrayList<>();
+        String[] labels = {"person", "car", "bicycle", "traffic_light", "stop_sign"};
+        for (int i = 0; i < 10; i++) {
+            detections.add(Map.of(
+                    "label", labels[i % labels.length],
+                    "confidence", 0.5 + i * 0.047,
+                    "box", List.of(12 + i * 61, 40 + i * 17, 96 + i * 3, 128 - i * 5)));
+        }
+        return SignalMessage.builder()
+                .type("OBJECT_DETECTION")
+                .action("DETECTED")
+                .payload(Map.of("frameId", 48213, "width", 1280, "height", 720, "detections", detections))
+                .senderId("GLASS-000123")
+                .timestamp(timestamp)
+                .build();
+    }
+}
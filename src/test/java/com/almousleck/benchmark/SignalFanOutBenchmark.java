@@ -0,0 +1,160 @@
+package com.almousleck.benchmark;
+
+import com.almousleck.dto.signal.SignalMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.user.DefaultUserDestinationResolver;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.web.socket.messaging.DefaultSimpUserRegistry;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Cost of echoing one inbound signal with N sessions connected, through the real simple broker:
+ * - topic: @SendTo("/topic/ar-updates"), every signal goes to every subscribed session (N deliveries,
+ *   so N² when all N sessions are sending)
+ * - user: @SendToUser("/queue/ar-updates"), resolved to the sender's session only (1 delivery)
+ * Channels are synchronous and the outbound channel only counts, so the numbers are the broker's
+ * routing cost without any socket I/O.
+ * Each session's user queue is a destination of its own, so the user path is also run with the
+ * broker's default destination cache to show why app.websocket.broker.cache-limit is raised.
+ *
+ * Run with: mvn test -Pbenchmark -Dtest=SignalFanOutBenchmark
+ */
+@Slf4j
+@Tag("benchmark")
+class SignalFanOutBenchmark {
+
+    private static final int[] SESSIONS = {1_000, 5_000, 10_000};
+    private static final int TOPIC_SIGNALS = 200;
+    private static final int USER_SIGNALS = 50_000;
+    private static final int CACHE_LIMIT = 20_000;        // app.websocket.broker.cache-limit
+    private static final int DEFAULT_CACHE_LIMIT = 1_024; // Spring's default
+
+    private final MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+
+    @Test
+    void compareTopicAndUserReplies() {
+        // JIT warm-up round, not reported
+        Broker warmup = new Broker(SESSIONS[0], CACHE_LIMIT);
+        measure(warmup, SESSIONS[0], TOPIC_SIGNALS, false);
+        measure(warmup, SESSIONS[0], USER_SIGNALS, true);
+        warmup.stop();
+
+        for (int sessions : SESSIONS) {
+            Broker broker = new Broker(sessions, CACHE_LIMIT);
+            double topic = measure(broker, sessions, TOPIC_SIGNALS, false);
+            assertEquals((long) sessions * TOPIC_SIGNALS, broker.delivered.sum());
+            double user = measure(broker, sessions, USER_SIGNALS, true);
+            assertEquals(USER_SIGNALS, broker.delivered.sum());
+            broker.stop();
+
+            // Same user path with Spring's default destination cache, smaller than the session count
+            Broker defaultCache = new Broker(sessions, DEFAULT_CACHE_LIMIT);
+            double userDefaultCache = measure(defaultCache, sessions, USER_SIGNALS / 10, true);
+            defaultCache.stop();
+
+            log.info("{} sessions: topic {} signals/s ({} deliveries/s), user {} signals/s ({}x), user with default cache {} signals/s",
+                    sessions, String.format("%.0f", topic), String.format("%.0f", topic * sessions),
+                    String.format("%.0f", user), String.format("%.0f", user / topic), String.format("%.0f", userDefaultCache));
+        }
+    }
+
+    // Signals per second the broker echoes; warm-up gives every session a reply first, so caches are filled
+    private double measure(Broker broker, int sessions, int signals, boolean toUser) {
+        for (int i = 0; i < Math.min(sessions, signals); i++) broker.reply(i % sessions, toUser);
+        broker.delivered.reset();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < signals; i++) broker.reply(i % sessions, toUser);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return signals / seconds;
+    }
+
+    private final class Broker {
+        final LongAdder delivered = new LongAdder();
+        final ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        final ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        final SimpleBrokerMessageHandler simpleBroker;
+        final UserDestinationMessageHandler userDestinations;
+
+        Broker(int sessions, int cacheLimit) {
+            clientOutbound.subscribe(message -> delivered.increment());
+            simpleBroker = new SimpleBrokerMessageHandler(clientInbound, clientOutbound, brokerChannel,
+                    List.of("/topic", "/queue"));
+            simpleBroker.setCacheLimit(cacheLimit);
+            simpleBroker.start();
+
+            DefaultSimpUserRegistry userRegistry = new DefaultSimpUserRegistry();
+            userDestinations = new UserDestinationMessageHandler(clientInbound, brokerChannel,
+                    new DefaultUserDestinationResolver(userRegistry));
+            userDestinations.start();
+
+            for (int i = 0; i < sessions; i++) {
+                String sessionId = sessionId(i);
+                userRegistry.onApplicationEvent(new SessionConnectedEvent(this, headersOnly(SimpMessageType.CONNECT_ACK, sessionId, null),
+                        new UsernamePasswordAuthenticationToken(username(i), null, List.of())));
+                clientInbound.send(headersOnly(SimpMessageType.CONNECT, sessionId, null));
+                // What SUBSCRIBE /topic/ar-updates and SUBSCRIBE /user/queue/ar-updates reach the broker as
+                clientInbound.send(subscribe(sessionId, "t", "/topic/ar-updates"));
+                clientInbound.send(subscribe(sessionId, "u", "/queue/ar-updates-user" + sessionId));
+            }
+        }
+
+        // What the annotation return value handler sends for the signal of session i
+        void reply(int i, boolean toUser) {
+            SignalMessage signal = SignalMessage.builder().type("VOICE_COMMAND").action("ECHO")
+                    .payload(Map.of("text", "hello")).senderId(username(i)).build();
+            String destination = toUser ? "/user/" + username(i) + "/queue/ar-updates" : "/topic/ar-updates";
+
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            headers.setDestination(destination);
+            headers.setLeaveMutable(true);
+            Message<?> message = converter.toMessage(signal, headers.getMessageHeaders());
+            brokerChannel.send(message);
+        }
+
+        void stop() {
+            userDestinations.stop();
+            simpleBroker.stop();
+        }
+
+        private Message<byte[]> subscribe(String sessionId, String subscriptionId, String destination) {
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            headers.setSessionId(sessionId);
+            headers.setSubscriptionId(subscriptionId);
+            headers.setDestination(destination);
+            return MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+        }
+
+        private Message<byte[]> headersOnly(SimpMessageType type, String sessionId, String destination) {
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(type);
+            headers.setSessionId(sessionId);
+            if (destination != null) headers.setDestination(destination);
+            return MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+        }
+    }
+
+    private static String sessionId(int i) {
+        return "session-" + i;
+    }
+
+    private static String username(int i) {
+        return "user-" + i;
+    }
+}
@@ -2,13 +2,25 @@ package com.almousleck.controller;
 
 import com.almousleck.config.ApplicationUserDetails;
 import com.almousleck.config.ratelimit.RateLimitFilter;
+import com.almousleck.dto.device.BatchHeartbeatRequest;
+import com.almousleck.dto.device.BatchHeartbeatResponse;
 import com.almousleck.dto.device.DevicePairRequest;
 import com.almousleck.dto.device.DeviceResponse;
+import com.almousleck.dto.device.DeviceSliceResponse;
+import com.almousleck.dto.device.HeartbeatResponse;
+import com.almousleck.dto.telemetry.TelemetryResponse;
 import com.almousleck.enums.DeviceStatus;
+import com.almousleck.enums.TelemetryResolution;
 import com.almousleck.enums.UserRole;
+import com.almousleck.jwt.DeviceTokenUtils;
 import com.almousleck.model.User;
+import com.almousleck.repository.device.DeviceLookup;
+import com.almousleck.service.DeviceLookupCache;
 import com.almousleck.service.DeviceService;
+import com.almousleck.service.TelemetryService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
@@ -17,17 +29,31 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(
@@ -36,6 +62,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
         excludeAutoConfiguration = RedisAutoConfiguration.class
 )
 @AutoConfigureMockMvc
+@Import(DeviceTokenUtils.class)
 class DeviceControllerTest {
 
     @Autowired
@@ -44,15 +71,44 @@ class DeviceControllerTest {
     @MockBean
     private DeviceService deviceService;
 
+    @MockBean
+    private TelemetryService telemetryService;
+
     @MockBean
     private RateLimitFilter rateLimitFilter;
 
+    @MockBean
+    private DeviceLookupCache deviceLookupCache;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private DeviceTokenUtils deviceTokenUtils;
+
     private ApplicationUserDetails principal;
     private DeviceResponse deviceResponse;
 
+    @BeforeEach
+    void letRequestsThroughRateLimitFilter() throws Exception {
+        // A bare @MockBean filter would swallow every request before it reaches the controller
+        doAnswer(invocation -> {
+            invocation.<FilterChain>getArgument(2).doFilter(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(rateLimitFilter).doFilter(any(), any(), any());
+    }
+
+    @BeforeEach
+    void knowGlassDevicesAtTokenVersionZero() {
+        when(deviceLookupCache.find(startsWith("GLASS-"))).thenAnswer(invocation ->
+                Optional.of(lookup(invocation.getArgument(0))));
+        when(deviceLookupCache.findAll(any())).thenAnswer(invocation -> {
+            Collection<String> serials = invocation.getArgument(0);
+            return serials.stream().filter(serial -> serial.startsWith("GLASS-")).distinct()
+                    .collect(Collectors.toMap(Function.identity(), DeviceControllerTest::lookup));
+        });
+    }
+
     @Test
     void pairDevice_ShouldReturnOk_WhenValid() throws Exception {
         DevicePairRequest request = new DevicePairRequest();
@@ -93,6 +149,123 @@ class DeviceControllerTest {
                // .andExpect(jsonPath("$.serialNumber").value("GLASS-001"));
     }
 
+    @Test
+    void heartbeat_ShouldReturnOk_WhenTokenMatchesSerial() throws Exception {
+        when(deviceService.updateHeartbeat(eq("GLASS-001"), eq(80), any(), eq(31.2304), eq(121.4737)))
+                .thenReturn(HeartbeatResponse.builder().nextIntervalSeconds(30).build());
+
+        mockMvc.perform(post("/api/v1/devices/heartbeat")
+                        .param("serialNumber", "GLASS-001")
+                        .param("batteryLevel", "80")
+                        .param("latitude", "31.2304")
+                        .param("longitude", "121.4737")
+                        .header("X-Device-Token", tokenFor("GLASS-001"))
+                        .with(SecurityMockMvcRequestPostProcessors.user("device"))
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nextIntervalSeconds").value(30));
+
+        verify(deviceService).updateHeartbeat(eq("GLASS-001"), eq(80), any(), eq(31.2304), eq(121.4737));
+    }
+
+    @Test
+    void heartbeat_ShouldReturnForbidden_WhenTokenIssuedForAnotherSerial() throws Exception {
+        mockMvc.perform(post("/api/v1/devices/heartbeat")
+                        .param("serialNumber", "GLASS-002")
+                        .header("X-Device-Token", tokenFor("GLASS-001"))
+                        .with(SecurityMockMvcRequestPostProcessors.user("device"))
+                        .with(csrf()))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(deviceService);
+    }
+
+    @Test
+    void heartbeat_ShouldReturnForbidden_WhenTokenWasRevoked() throws Exception {
+        String revoked = tokenFor("GLASS-001");
+        when(deviceLookupCache.find("GLASS-001")).thenReturn(Optional.of(
+                new DeviceLookup("GLASS-001", 1L, 1L, DeviceStatus.OFFLINE, 1))); // Reissued since
+
+        mockMvc.perform(post("/api/v1/devices/heartbeat")
+                        .param("serialNumber", "GLASS-001")
+                        .header("X-Device-Token", revoked)
+                        .with(SecurityMockMvcRequestPostProcessors.user("device"))
+                        .with(csrf()))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(deviceService);
+    }
+
+    @Test
+    void batchHeartbeat_ShouldReturnBadRequest_WhenEntryInvalid() throws Exception {
+        String body = """
+                {"heartbeats": [
+                  {"serialNumber": "GLASS-001", "deviceToken": "%s", "batteryLevel": 80},
+                  {"serialNumber": "", "deviceToken": "x", "batteryLevel": 120}
+                ]}
+                """.formatted(tokenFor("GLASS-001"));
+
+        mockMvc.perform(post("/api/v1/devices/heartbeat/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body)
+                        .with(SecurityMockMvcRequestPostProcessors.user("dock"))
+                        .with(csrf()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void batchHeartbeat_ShouldReturnOk_WhenValid() throws Exception {
+        when(deviceService.updateHeartbeats(any(BatchHeartbeatRequest.class)))
+                .thenReturn(BatchHeartbeatResponse.builder().accepted(1).build());
+        String body = """
+                {"heartbeats": [
+                  {"serialNumber": "GLASS-001", "deviceToken": "%s", "batteryLevel": 80},
+                  {"serialNumber": "GLASS-002", "deviceToken": "%s", "batteryLevel": 35, "timestamp": "2025-12-26T10:00:00Z"}
+                ]}
+                """.formatted(tokenFor("GLASS-001"), tokenFor("GLASS-001")); // second entry spoofs GLASS-002
+
+        mockMvc.perform(post("/api/v1/devices/heartbeat/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body)
+                        .with(SecurityMockMvcRequestPostProcessors.user("dock"))
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rejected").value(1));
+
+        verify(deviceService).updateHeartbeats(argThat(request -> request.getHeartbeats().size() == 1));
+    }
+
+    @Test
+    void getTelemetry_ShouldPassRangeToService() throws Exception {
+        User mockUser = User.builder()
+                .username("testuser")
+                .role(UserRole.USER)
+                .phoneNumber("+1234567890")
+                .phoneVerified(true)
+                .locked(false)
+                .build();
+        mockUser.setId(1L);
+        Instant from = Instant.parse("2026-10-01T00:00:00Z");
+        Instant to = Instant.parse("2026-10-08T00:00:00Z");
+        when(telemetryService.getTelemetry("GLASS-001", from, to, 1L))
+                .thenReturn(TelemetryResponse.builder().serialNumber("GLASS-001").resolution(TelemetryResolution.HOUR).build());
+
+        mockMvc.perform(get("/api/v1/devices/GLASS-001/telemetry")
+                        .param("from", from.toString())
+                        .param("to", to.toString())
+                        .with(SecurityMockMvcRequestPostProcessors.user(ApplicationUserDetails.buildApplicationDetails(mockUser))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.resolution").value("HOUR"));
+    }
+
+    private String tokenFor(String serialNumber) {
+        return deviceTokenUtils.generateToken(serialNumber, 0, Instant.now().plusSeconds(3600));
+    }
+
+    private static DeviceLookup lookup(String serialNumber) {
+        return new DeviceLookup(serialNumber, 1L, 1L, DeviceStatus.OFFLINE, 0);
+    }
+
     @Test
     void getMyDevices_ShouldReturnList() throws Exception {
         // Prep User
@@ -107,12 +280,14 @@ class DeviceControllerTest {
 
         var principal = ApplicationUserDetails.buildApplicationDetails(mockUser);
 
-        // Mock the service to return empty page
-        when(deviceService.getMyDevices(eq(1L), any(org.springframework.data.domain.Pageable.class)))
-                .thenReturn(org.springframework.data.domain.Page.empty());
+        // Mock the service to return the last slice
+        when(deviceService.getMyDevices(1L, 40L, 20, false))
+                .thenReturn(DeviceSliceResponse.builder().content(List.of()).hasNext(false).build());
 
         mockMvc.perform(get("/api/v1/devices/my")
+                        .param("afterId", "40")
                         .with(SecurityMockMvcRequestPostProcessors.user(principal)))
-                .andExpect(status().isOk());
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hasNext").value(false));
     }
 }
\ No newline at end of file
@@ -0,0 +1,154 @@
+package com.almousleck.jwt;
+
+import com.almousleck.enums.DeviceStatus;
+import com.almousleck.repository.device.DeviceLookup;
+import com.almousleck.service.DeviceLookupCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeviceTokenUtilsTest {
+
+    private static final String SECRET = "xNDPXxe_MPZ7ffPo2vdFBAf2Gizewxps3HWpwtUzhhM";
+
+    @Mock
+    private DeviceLookupCache deviceLookupCache;
+
+    private DeviceTokenUtils deviceTokenUtils;
+
+    @BeforeEach
+    void setUp() {
+        // GLASS-* devices exist and are at token version 1
+        lenient().when(deviceLookupCache.find(startsWith("GLASS-"))).thenAnswer(invocation ->
+                Optional.of(lookup(invocation.getArgument(0), 1)));
+        lenient().when(deviceLookupCache.findAll(any())).thenAnswer(invocation -> {
+            Collection<String> serials = invocation.getArgument(0);
+            return serials.stream().filter(serial -> serial.startsWith("GLASS-")).distinct()
+                    .collect(Collectors.toMap(Function.identity(), serial -> lookup(serial, 1)));
+        });
+        deviceTokenUtils = new DeviceTokenUtils(deviceLookupCache);
+        ReflectionTestUtils.setField(deviceTokenUtils, "secret", SECRET);
+        ReflectionTestUtils.setField(deviceTokenUtils, "expirationDays", 365L);
+        deviceTokenUtils.init();
+    }
+
+    @Test
+    void isValidFor_ShouldAcceptTokenIssuedForSerial() {
+        String token = deviceTokenUtils.generateToken("GLASS-001", 1, Instant.now().plusSeconds(3600));
+
+        assertTrue(deviceTokenUtils.isValidFor(token, "GLASS-001"));
+    }
+
+    @Test
+    void isValidFor_ShouldRejectTokenOfAnotherSerial() {
+        String token = deviceTokenUtils.generateToken("GLASS-001", 1, Instant.now().plusSeconds(3600));
+
+        assertFalse(deviceTokenUtils.isValidFor(token, "GLASS-002"));
+    }
+
+    @Test
+    void isValidFor_ShouldRejectExpiredToken() {
+        String token = deviceTokenUtils.generateToken("GLASS-001", 1, Instant.now().minusSeconds(1));
+
+        assertFalse(deviceTokenUtils.isValidFor(token, "GLASS-001"));
+    }
+
+    @Test
+    void isValidFor_ShouldRejectExtendedExpiry() {
+        String token = deviceTokenUtils.generateToken("GLASS-001", 1, Instant.now().minusSeconds(1));
+        String[] parts = token.split("\\.");
+        String forged = parts[0] + "." + parts[1] + "." + Instant.now().plusSeconds(3600).getEpochSecond() + "." + parts[3];
+
+        assertFalse(deviceTokenUtils.isValidFor(forged, "GLASS-001"));
+    }
+
+    @Test
+    void isValidFor_ShouldRejectTokenSignedWithAnotherKey() {
+        DeviceTokenUtils other = new DeviceTokenUtils(deviceLookupCache);
+        ReflectionTestUtils.setField(other, "secret", "bWRldi1kZXZpY2UtdG9rZW4tc2VjcmV0LWZvci1sb2NhbC11c2U");
+        ReflectionTestUtils.setField(other, "expirationDays", 365L);
+        other.init();
+
+        String token = other.generateToken("GLASS-001", 1, Instant.now().plusSeconds(3600));
+
+        assertFalse(deviceTokenUtils.isValidFor(token, "GLASS-001"));
+    }
+
+    @Test
+    void isValidFor_ShouldRejectMalformedTokens() {
+        assertFalse(deviceTokenUtils.isValidFor(null, "GLASS-001"));
+        assertFalse(deviceTokenUtils.isValidFor("", "GLASS-001"));
+        assertFalse(deviceTokenUtils.isValidFor("dock-token", "GLASS-001"));
+        assertFalse(deviceTokenUtils.isValidFor("a.b.c", "GLASS-001"));
+        assertFalse(deviceTokenUtils.isValidFor("a.b.c.d", "GLASS-001"));
+        assertFalse(deviceTokenUtils.isValidFor("R0xBU1MtMDAx.1.notanumber.!!!", "GLASS-001"));
+    }
+
+    @Test
+    void isValidFor_ShouldRejectTokenOfAnOlderVersion() {
+        // Issued before the device was unpaired or its token reissued
+        String token = deviceTokenUtils.generateToken("GLASS-001", 0, Instant.now().plusSeconds(3600));
+
+        assertFalse(deviceTokenUtils.isValidFor(token, "GLASS-001"));
+    }
+
+    @Test
+    void isValidFor_ShouldRejectForgedVersion() {
+        String token = deviceTokenUtils.generateToken("GLASS-001", 0, Instant.now().plusSeconds(3600));
+        String[] parts = token.split("\\.");
+        String forged = parts[0] + ".1." + parts[2] + "." + parts[3];
+
+        assertFalse(deviceTokenUtils.isValidFor(forged, "GLASS-001"));
+    }
+
+    @Test
+    void isValidFor_ShouldRejectValidlySignedTokenOfUnknownDevice() {
+        String token = deviceTokenUtils.generateToken("DOCK-001", 1, Instant.now().plusSeconds(3600));
+
+        assertFalse(deviceTokenUtils.isValidFor(token, "DOCK-001"));
+    }
+
+    @Test
+    void filterValid_ShouldKeepCurrentTokens_AndLookUpOnlyCorrectlySignedSerials() {
+        Instant expiresAt = Instant.now().plusSeconds(3600);
+        List<String[]> entries = List.of(
+                new String[]{"GLASS-001", deviceTokenUtils.generateToken("GLASS-001", 1, expiresAt)},
+                new String[]{"GLASS-002", deviceTokenUtils.generateToken("GLASS-002", 0, expiresAt)}, // Revoked
+                new String[]{"GLASS-003", deviceTokenUtils.generateToken("GLASS-001", 1, expiresAt)}); // Another serial's
+
+        List<String[]> valid = deviceTokenUtils.filterValid(entries, entry -> entry[1], entry -> entry[0]);
+
+        assertEquals(List.of("GLASS-001"), valid.stream().map(entry -> entry[0]).toList());
+        verify(deviceLookupCache).findAll(List.of("GLASS-001", "GLASS-002"));
+        verify(deviceLookupCache, never()).find(any());
+    }
+
+    // Helper methods
+    private static DeviceLookup lookup(String serialNumber, int tokenVersion) {
+        return new DeviceLookup(serialNumber, 1L, 7L, DeviceStatus.OFFLINE, tokenVersion);
+    }
+
+    @Test
+    void init_ShouldRejectShortSecret() {
+        DeviceTokenUtils weak = new DeviceTokenUtils(deviceLookupCache);
+        ReflectionTestUtils.setField(weak, "secret", "c2hvcnQ");
+
+        assertThrows(IllegalStateException.class, weak::init);
+    }
+}
@@ -0,0 +1,71 @@
+package com.almousleck.repository.device;
+
+import com.almousleck.dto.device.HeartbeatSample;
+import com.almousleck.enums.DeviceStatus;
+import com.almousleck.model.Device;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // The JDBC batch and the reads see committed rows
+class DeviceRepositoryCustomImplTest {
+
+    private static final Instant LAST_BEAT = Instant.parse("2025-12-26T10:00:00Z");
+
+    @Autowired
+    private DeviceRepository deviceRepository;
+
+    @BeforeEach
+    void setUp() {
+        deviceRepository.deleteAll();
+        deviceRepository.save(Device.builder()
+                .name("Glasses")
+                .serialNumber("GLASS-001")
+                .type("AI-GLASS-V1")
+                .status(DeviceStatus.ONLINE)
+                .batteryLevel(80)
+                .lastHeartbeat(LAST_BEAT)
+                .build());
+    }
+
+    @Test
+    void batchUpdateHeartbeats_ShouldIgnoreBeatsOlderThanTheStoredOne() {
+        int[] counts = deviceRepository.batchUpdateHeartbeats(List.of(beat(LAST_BEAT.minusSeconds(30), 40)));
+
+        assertArrayEquals(new int[]{0}, counts);
+        Device device = deviceRepository.findBySerialNumber("GLASS-001").orElseThrow();
+        assertEquals(LAST_BEAT, device.getLastHeartbeat().truncatedTo(ChronoUnit.SECONDS));
+        assertEquals(80, device.getBatteryLevel());
+    }
+
+    @Test
+    void batchUpdateHeartbeats_ShouldApplyNewerBeats_ThenKeepThemAgainstLateOnes() {
+        deviceRepository.batchUpdateHeartbeats(List.of(beat(LAST_BEAT.plusSeconds(30), 70)));
+        deviceRepository.batchUpdateHeartbeats(List.of(beat(LAST_BEAT.plusSeconds(10), 75))); // Relayed late
+
+        Device device = deviceRepository.findBySerialNumber("GLASS-001").orElseThrow();
+        assertEquals(LAST_BEAT.plusSeconds(30), device.getLastHeartbeat().truncatedTo(ChronoUnit.SECONDS));
+        assertEquals(70, device.getBatteryLevel());
+    }
+
+    // Helper methods
+    private static HeartbeatSample beat(Instant at, int batteryLevel) {
+        return HeartbeatSample.builder()
+                .serialNumber("GLASS-001")
+                .batteryLevel(batteryLevel)
+                .heartbeatAt(at)
+                .build();
+    }
+}
@@ -0,0 +1,142 @@
+package com.almousleck.service;
+
+import com.almousleck.config.server.AiServiceConfig;
+import com.almousleck.dto.signal.SignalMessage;
+import com.almousleck.exceptions.AiServiceException;
+import com.almousleck.websocket.SignalMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against a stub of the AI core on a local port, so the real non-blocking HttpClient is exercised.
+ */
+class AIServiceClientTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private HttpServer aiCore;
+    private SimpleMeterRegistry meterRegistry;
+    private AIServiceClient client;
+    private final CountDownLatch releaseSlowCalls = new CountDownLatch(1);
+    private volatile int status = 200;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        aiCore = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        aiCore.setExecutor(Executors.newCachedThreadPool());
+        aiCore.createContext("/api/v1/signals", exchange -> {
+            SignalMessage signal = objectMapper.readValue(exchange.getRequestBody(), SignalMessage.class);
+            if ("SLOW".equals(signal.getAction())) {
+                try {
+                    releaseSlowCalls.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] body = objectMapper.writeValueAsBytes(SignalMessage.builder()
+                    .type(signal.getType())
+                    .action("RESULT")
+                    .payload(Map.of("echo", signal.getAction()))
+                    .senderId("ai-core")
+                    .build());
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        aiCore.start();
+
+        AiServiceConfig config = new AiServiceConfig();
+        config.setEnabled(true);
+        config.setBaseUrl("http://127.0.0.1:" + aiCore.getAddress().getPort());
+        config.setMaxInFlight(2);
+        config.setDefaultTimeoutMs(3000);
+        config.setTimeoutsMs(Map.of("EMERGENCY", 200L));
+
+        meterRegistry = new SimpleMeterRegistry();
+        SignalMetrics signalMetrics = new SignalMetrics(meterRegistry);
+        ReflectionTestUtils.setField(signalMetrics, "signalTypes", Set.of("NAVIGATION", "EMERGENCY"));
+        client = new AIServiceClient(config, config.aiHttpClient(), objectMapper, meterRegistry, signalMetrics);
+        client.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseSlowCalls.countDown();
+        aiCore.stop(0);
+    }
+
+    @Test
+    void processSignal_ShouldCompleteWithAiCoreResult() throws Exception {
+        SignalMessage result = client.processSignal(signal("NAVIGATION", "START")).get(5, TimeUnit.SECONDS);
+
+        assertEquals("RESULT", result.getAction());
+        assertEquals("START", result.getPayload().get("echo"));
+        assertEquals(1, meterRegistry.get("ai.service.calls").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void processSignal_ShouldReturnBeforeAiCoreAnswers() throws Exception {
+        CompletableFuture<SignalMessage> pending = client.processSignal(signal("NAVIGATION", "SLOW"));
+
+        assertFalse(pending.isDone()); // Caller thread was not held
+        releaseSlowCalls.countDown();
+        assertEquals("SLOW", pending.get(5, TimeUnit.SECONDS).getPayload().get("echo"));
+    }
+
+    @Test
+    void processSignal_ShouldTimeOut_WithSignalTypeTimeout() {
+        CompletableFuture<SignalMessage> emergency = client.processSignal(signal("EMERGENCY", "SLOW"));
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> emergency.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(HttpTimeoutException.class, ex.getCause());
+        assertEquals(1, meterRegistry.get("ai.service.calls").tag("outcome", "timeout").timer().count());
+    }
+
+    @Test
+    void processSignal_ShouldRejectAtOnce_WhenBulkheadIsFull() throws Exception {
+        CompletableFuture<SignalMessage> first = client.processSignal(signal("NAVIGATION", "SLOW"));
+        CompletableFuture<SignalMessage> second = client.processSignal(signal("NAVIGATION", "SLOW"));
+
+        CompletableFuture<SignalMessage> third = client.processSignal(signal("NAVIGATION", "START"));
+        assertTrue(third.isCompletedExceptionally());
+        assertEquals(1, meterRegistry.get("ai.service.rejected").counter().count());
+
+        releaseSlowCalls.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals("RESULT", client.processSignal(signal("NAVIGATION", "START")).get(5, TimeUnit.SECONDS).getAction());
+    }
+
+    @Test
+    void processSignal_ShouldFail_WhenAiCoreAnswersWithError() {
+        status = 500;
+
+        ExecutionException ex = assertThrows(ExecutionException.class,
+                () -> client.processSignal(signal("NAVIGATION", "START")).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(AiServiceException.class, ex.getCause());
+        assertTrue(ex.getCause().getMessage().contains("500"));
+    }
+
+    // Helper methods
+    private static SignalMessage signal(String type, String action) {
+        return SignalMessage.builder().type(type).action(action).senderId("alice").build();
+    }
+}
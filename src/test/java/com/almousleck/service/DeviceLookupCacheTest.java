@@ -0,0 +1,103 @@
+package com.almousleck.service;
+
+import com.almousleck.enums.DeviceStatus;
+import com.almousleck.repository.device.DeviceLookup;
+import com.almousleck.repository.device.DeviceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeviceLookupCacheTest {
+
+    private static final DeviceLookup GLASS_001 = new DeviceLookup("GLASS-001", 1L, 7L, DeviceStatus.OFFLINE, 0);
+    private static final DeviceLookup GLASS_002 = new DeviceLookup("GLASS-002", 2L, null, DeviceStatus.OFFLINE, 0);
+
+    @Mock
+    private DeviceRepository deviceRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private DeviceLookupCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new DeviceLookupCache(deviceRepository, meterRegistry);
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        cache.init();
+    }
+
+    @Test
+    void find_ShouldHitDatabaseOnlyOnce() {
+        when(deviceRepository.findLookupsBySerialNumberIn(List.of("GLASS-001"))).thenReturn(List.of(GLASS_001));
+
+        assertEquals(Optional.of(GLASS_001), cache.find("GLASS-001"));
+        assertEquals(Optional.of(GLASS_001), cache.find("GLASS-001"));
+
+        verify(deviceRepository, times(1)).findLookupsBySerialNumberIn(anyCollection());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "device.lookup").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void find_ShouldNotCacheUnknownSerials() {
+        when(deviceRepository.findLookupsBySerialNumberIn(List.of("GLASS-404"))).thenReturn(List.of());
+
+        assertTrue(cache.find("GLASS-404").isEmpty());
+        assertTrue(cache.find("GLASS-404").isEmpty());
+
+        verify(deviceRepository, times(2)).findLookupsBySerialNumberIn(anyCollection());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findAll_ShouldLoadOnlyMissesWithOneQuery() {
+        when(deviceRepository.findLookupsBySerialNumberIn(List.of("GLASS-001"))).thenReturn(List.of(GLASS_001));
+        cache.find("GLASS-001");
+        when(deviceRepository.findLookupsBySerialNumberIn(anyCollection())).thenAnswer(invocation ->
+                ((Collection<String>) invocation.getArgument(0)).contains("GLASS-002") ? List.of(GLASS_002) : List.of());
+
+        Map<String, DeviceLookup> found = cache.findAll(List.of("GLASS-001", "GLASS-002", "GLASS-404"));
+
+        assertEquals(Map.of("GLASS-001", GLASS_001, "GLASS-002", GLASS_002), found);
+        verify(deviceRepository, times(2)).findLookupsBySerialNumberIn(anyCollection());
+    }
+
+    @Test
+    void invalidate_ShouldReloadOnNextLookup() {
+        DeviceLookup unpaired = new DeviceLookup("GLASS-001", 1L, null, DeviceStatus.OFFLINE, 0);
+        when(deviceRepository.findLookupsBySerialNumberIn(List.of("GLASS-001")))
+                .thenReturn(List.of(GLASS_001), List.of(unpaired));
+        cache.find("GLASS-001");
+
+        cache.invalidate("GLASS-001");
+
+        assertEquals(Optional.of(unpaired), cache.find("GLASS-001"));
+    }
+
+    @Test
+    void updateStatus_ShouldOnlyTouchCachedEntries() {
+        when(deviceRepository.findLookupsBySerialNumberIn(List.of("GLASS-001"))).thenReturn(List.of(GLASS_001));
+        cache.find("GLASS-001");
+
+        cache.updateStatus("GLASS-001", DeviceStatus.ONLINE);
+        cache.updateStatus("GLASS-002", DeviceStatus.ONLINE);
+
+        assertEquals(DeviceStatus.ONLINE, cache.find("GLASS-001").orElseThrow().status());
+        verify(deviceRepository, never()).findLookupsBySerialNumberIn(List.of("GLASS-002"));
+    }
+}
@@ -0,0 +1,195 @@
+package com.almousleck.service;
+
+import com.almousleck.enums.DeviceStatus;
+import com.almousleck.event.DeviceDisconnectedEvent;
+import com.almousleck.repository.device.DeviceRepository;
+import com.almousleck.repository.device.DeviceSerialRef;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeviceOfflineSweeperTest {
+
+    @Mock
+    private PresenceService presenceService;
+    @Mock
+    private DeviceRepository deviceRepository;
+    @Mock
+    private HeartbeatSignificanceFilter heartbeatSignificanceFilter;
+    @Mock
+    private DeviceLookupCache deviceLookupCache;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private SimpleMeterRegistry meterRegistry;
+    private DeviceOfflineSweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sweeper = new DeviceOfflineSweeper(presenceService, deviceRepository, heartbeatSignificanceFilter,
+                deviceLookupCache, eventPublisher, new RedisLock(stringRedisTemplate), meterRegistry);
+        ReflectionTestUtils.setField(sweeper, "batchSize", 2);
+        ReflectionTestUtils.setField(sweeper, "reconcilePageSize", 2);
+        ReflectionTestUtils.setField(sweeper, "retentionSeconds", 900L);
+        when(presenceService.presenceTtl()).thenReturn(Duration.ofSeconds(60));
+        lenient().when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(valueOperations.setIfAbsent(eq("device:offline-sweeper:lock"), anyString(), any(Duration.class)))
+                .thenReturn(true);
+        sweeper.init();
+    }
+
+    @Test
+    void sweep_ShouldMarkExpiredDevicesOfflineAndPublishEvents() {
+        Instant lastSeen = Instant.now().minusSeconds(90);
+        when(presenceService.findLastSeenBetween(any(), any(), anyLong(), eq(2))).thenReturn(Map.of("GLASS-001", lastSeen));
+        when(presenceService.isOnline(anyCollection())).thenReturn(Map.of("GLASS-001", false));
+        when(deviceRepository.findSerialNumbersByStatus(DeviceStatus.ONLINE, List.of("GLASS-001")))
+                .thenReturn(List.of("GLASS-001"));
+
+        sweeper.sweep();
+
+        verify(deviceRepository).markOfflineIfOnline(eq(List.of("GLASS-001")), any());
+        verify(heartbeatSignificanceFilter).evict(List.of("GLASS-001"));
+        verify(deviceLookupCache).updateStatus("GLASS-001", DeviceStatus.OFFLINE);
+        verify(eventPublisher).publishEvent(
+                new DeviceDisconnectedEvent("GLASS-001", lastSeen, DeviceDisconnectedEvent.Reason.EXPIRED));
+        assertEquals(1.0, meterRegistry.get("device.presence.expired").counter().count());
+    }
+
+    @Test
+    void sweep_ShouldSkipDevicesThatBeatAgainOrAreAlreadyOffline() {
+        Instant lastSeen = Instant.now().minusSeconds(90);
+        when(presenceService.findLastSeenBetween(any(), any(), anyLong(), eq(2)))
+                .thenReturn(Map.of("GLASS-001", lastSeen));
+        when(presenceService.isOnline(anyCollection())).thenReturn(Map.of("GLASS-001", true));
+
+        sweeper.sweep();
+
+        verify(deviceRepository, never()).markOfflineIfOnline(any(), any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void sweep_ShouldAdvanceWatermarkPastHandledExpiries() {
+        when(presenceService.findLastSeenBetween(any(), any(), anyLong(), eq(2))).thenReturn(Map.of());
+
+        sweeper.sweep();
+        sweeper.sweep();
+
+        ArgumentCaptor<Instant> from = ArgumentCaptor.forClass(Instant.class);
+        ArgumentCaptor<Instant> upTo = ArgumentCaptor.forClass(Instant.class);
+        verify(presenceService, times(2)).findLastSeenBetween(from.capture(), upTo.capture(), anyLong(), eq(2));
+        assertEquals(upTo.getAllValues().get(0), from.getAllValues().get(1));
+    }
+
+    @Test
+    void sweep_ShouldPageThroughTiesAtTheLimit_WithoutSkippingAny() {
+        // Three devices flushed in one batch share a last-seen time, two fit a page
+        Instant shared = Instant.now().minusSeconds(120);
+        Map<String, Instant> first = new LinkedHashMap<>();
+        first.put("GLASS-001", shared);
+        first.put("GLASS-002", shared);
+        when(presenceService.findLastSeenBetween(any(), any(), anyLong(), eq(2)))
+                .thenReturn(first, Map.of("GLASS-003", shared), Map.of());
+        when(presenceService.isOnline(anyCollection())).thenReturn(Map.of());
+
+        sweeper.sweep();
+        sweeper.sweep();
+        sweeper.sweep();
+
+        ArgumentCaptor<Instant> from = ArgumentCaptor.forClass(Instant.class);
+        ArgumentCaptor<Long> offset = ArgumentCaptor.forClass(Long.class);
+        verify(presenceService, times(3)).findLastSeenBetween(from.capture(), any(), offset.capture(), eq(2));
+        assertEquals(shared, from.getAllValues().get(1));
+        assertEquals(2L, offset.getAllValues().get(1)); // Resumes after the two handled ties
+        assertNotEquals(shared, from.getAllValues().get(2));
+        assertEquals(0L, offset.getAllValues().get(2));
+    }
+
+    @Test
+    void sweep_ShouldSkipTick_WhenAnotherReplicaHoldsTheLock() {
+        when(valueOperations.setIfAbsent(eq("device:offline-sweeper:lock"), anyString(), any(Duration.class)))
+                .thenReturn(false);
+
+        sweeper.sweep();
+        sweeper.reconcile();
+
+        verify(presenceService, never()).findLastSeenBetween(any(), any(), anyLong(), anyInt());
+        verifyNoInteractions(deviceRepository, eventPublisher);
+        verify(stringRedisTemplate, never()).execute(any(RedisScript.class), anyList(), any());
+    }
+
+    @Test
+    void sweep_ShouldPublishNothing_WhenAnotherReplicaAlreadyFlippedTheDevice() {
+        // This replica's watermark lags, the expiry was handled under the lock by another one
+        Instant lastSeen = Instant.now().minusSeconds(90);
+        when(presenceService.findLastSeenBetween(any(), any(), anyLong(), eq(2))).thenReturn(Map.of("GLASS-001", lastSeen));
+        when(presenceService.isOnline(anyCollection())).thenReturn(Map.of("GLASS-001", false));
+        when(deviceRepository.findSerialNumbersByStatus(DeviceStatus.ONLINE, List.of("GLASS-001")))
+                .thenReturn(List.of());
+
+        sweeper.sweep();
+
+        verify(deviceRepository, never()).markOfflineIfOnline(any(), any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void sweep_ShouldReleaseTheLockOnlyWithItsOwnToken() {
+        when(presenceService.findLastSeenBetween(any(), any(), anyLong(), eq(2))).thenReturn(Map.of());
+
+        sweeper.sweep();
+        sweeper.sweep();
+
+        // Compare-and-delete: a pass that outlived the timeout cannot remove the next holder's lock
+        ArgumentCaptor<String> tokens = ArgumentCaptor.forClass(String.class);
+        verify(valueOperations, times(2)).setIfAbsent(eq("device:offline-sweeper:lock"), tokens.capture(), any(Duration.class));
+        assertNotEquals(tokens.getAllValues().get(0), tokens.getAllValues().get(1));
+        for (String token : tokens.getAllValues())
+            verify(stringRedisTemplate).execute(any(RedisScript.class), eq(List.of("device:offline-sweeper:lock")), eq(token));
+        verify(stringRedisTemplate, never()).delete(anyString());
+    }
+
+    @Test
+    void reconcile_ShouldMarkOnlineRowsWithoutPresenceOffline() {
+        DeviceSerialRef ref = mock(DeviceSerialRef.class);
+        when(ref.getSerialNumber()).thenReturn("GLASS-009");
+        when(deviceRepository.findByStatusAndIdGreaterThanOrderByIdAsc(DeviceStatus.ONLINE, 0L, Limit.of(2)))
+                .thenReturn(List.of(ref));
+        when(presenceService.isOnline(anyCollection())).thenReturn(Map.of("GLASS-009", false));
+        when(deviceRepository.findSerialNumbersByStatus(DeviceStatus.ONLINE, List.of("GLASS-009")))
+                .thenReturn(List.of("GLASS-009"));
+
+        sweeper.reconcile();
+
+        verify(deviceRepository).markOfflineIfOnline(eq(List.of("GLASS-009")), any());
+        verify(eventPublisher).publishEvent(
+                new DeviceDisconnectedEvent("GLASS-009", null, DeviceDisconnectedEvent.Reason.EXPIRED));
+    }
+}
@@ -0,0 +1,136 @@
+package com.almousleck.service;
+
+import com.almousleck.dto.device.FleetStatsResponse;
+import com.almousleck.repository.device.DeviceRepository;
+import com.almousleck.repository.device.DeviceStatsRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FleetStatsServiceTest {
+
+    @Mock
+    private DeviceRepository deviceRepository;
+    @Mock
+    private PresenceService presenceService;
+
+    @InjectMocks
+    private FleetStatsService fleetStatsService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(fleetStatsService, "reconcilePageSize", 2);
+        lenient().when(presenceService.countOnline()).thenReturn(1L);
+    }
+
+    @Test
+    void heartbeat_ShouldMoveDeviceBetweenBatteryBuckets() {
+        fleetStatsService.onPaired("GLASS-001", 95, "1.0.0", "AI-GLASS-V1");
+        fleetStatsService.onPaired("GLASS-002", null, "1.0.0", "AI-GLASS-V1");
+
+        fleetStatsService.onBatteryLevel("GLASS-001", 42);
+        fleetStatsService.onBatteryLevel("GLASS-002", 100);
+
+        Map<String, Long> battery = fleetStatsService.getStats().getBatteryHistogram();
+        assertEquals(1, battery.get("40-49"));
+        assertEquals(1, battery.get("90-100"));
+        assertEquals(0, battery.get("unknown"));
+        assertEquals(2, battery.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    void firmwareUpdateAndUnpair_ShouldAdjustBreakdowns() {
+        fleetStatsService.onPaired("GLASS-001", 50, "1.0.0", "AI-GLASS-V1");
+        fleetStatsService.onPaired("GLASS-002", 50, "1.0.0", "AI-GLASS-V2");
+
+        fleetStatsService.onFirmwareVersion("GLASS-001", "1.1.0");
+        fleetStatsService.onUnpaired("GLASS-002");
+
+        FleetStatsResponse stats = fleetStatsService.getStats();
+        assertEquals(1, stats.getTotalDevices());
+        assertEquals(1, stats.getOnlineDevices());
+        assertEquals(Map.of("1.1.0", 1L), stats.getFirmwareVersions());
+        assertEquals(Map.of("AI-GLASS-V1", 1L), stats.getDeviceTypes());
+    }
+
+    @Test
+    void updates_ShouldIgnoreDevicesNotYetCounted() {
+        fleetStatsService.onBatteryLevel("GLASS-404", 30);
+        fleetStatsService.onFirmwareVersion("GLASS-404", "2.0.0");
+
+        assertEquals(0, fleetStatsService.getStats().getTotalDevices());
+        assertTrue(fleetStatsService.getStats().getFirmwareVersions().isEmpty());
+    }
+
+    @Test
+    void reconcile_ShouldRebuildFromDatabaseInKeysetPages() {
+        fleetStatsService.onPaired("GLASS-STALE", 10, "0.9.0", "AI-GLASS-V1"); // no longer in the database
+        List<DeviceStatsRow> firstPage = List.of(row(1L, "GLASS-001", 80, "1.0.0"), row(2L, "GLASS-002", 15, "1.0.0"));
+        List<DeviceStatsRow> lastPage = List.of(row(3L, "GLASS-003", null, "1.1.0"));
+        when(deviceRepository.findByOwnerIsNotNullAndIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class))).thenReturn(firstPage);
+        when(deviceRepository.findByOwnerIsNotNullAndIdGreaterThanOrderByIdAsc(eq(2L), any(Limit.class))).thenReturn(lastPage);
+
+        fleetStatsService.reconcile();
+
+        FleetStatsResponse stats = fleetStatsService.getStats();
+        assertEquals(3, stats.getTotalDevices());
+        assertEquals(Map.of("1.0.0", 2L, "1.1.0", 1L), stats.getFirmwareVersions());
+        assertEquals(1, stats.getBatteryHistogram().get("unknown"));
+        assertEquals(1, stats.getBatteryHistogram().get("10-19")); // GLASS-002 only, the stale one is gone
+        assertNotNull(stats.getReconciledAt());
+    }
+
+    @Test
+    void reconcile_ShouldNotRestoreDeviceUnpairedWhileItsPageWasInFlight() {
+        fleetStatsService.onPaired("GLASS-002", 15, "1.0.0", "AI-GLASS-V1");
+        when(deviceRepository.findByOwnerIsNotNullAndIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class))).thenAnswer(invocation -> {
+            // The page was read before the unpair committed, its event arrives before the rows are applied
+            fleetStatsService.onUnpaired("GLASS-002");
+            return List.of(row(1L, "GLASS-001", 80, "1.0.0"), row(2L, "GLASS-002", 15, "1.0.0"));
+        });
+        when(deviceRepository.findByOwnerIsNotNullAndIdGreaterThanOrderByIdAsc(eq(2L), any(Limit.class))).thenReturn(List.of());
+
+        fleetStatsService.reconcile();
+
+        FleetStatsResponse stats = fleetStatsService.getStats();
+        assertEquals(1, stats.getTotalDevices());
+        assertEquals(0, stats.getBatteryHistogram().get("10-19"));
+    }
+
+    @Test
+    void reconcile_ShouldKeepCounters_WhenDatabaseFails() {
+        fleetStatsService.onPaired("GLASS-001", 50, "1.0.0", "AI-GLASS-V1");
+        when(deviceRepository.findByOwnerIsNotNullAndIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class)))
+                .thenThrow(new DataAccessResourceFailureException("db down"));
+
+        fleetStatsService.reconcile();
+
+        assertEquals(1, fleetStatsService.getStats().getTotalDevices());
+        assertNull(fleetStatsService.getStats().getReconciledAt());
+    }
+
+    // Helper methods
+    private static DeviceStatsRow row(Long id, String serial, Integer battery, String firmware) {
+        DeviceStatsRow row = mock(DeviceStatsRow.class);
+        lenient().when(row.getId()).thenReturn(id);
+        lenient().when(row.getSerialNumber()).thenReturn(serial);
+        lenient().when(row.getBatteryLevel()).thenReturn(battery);
+        lenient().when(row.getFirmwareVersion()).thenReturn(firmware);
+        lenient().when(row.getType()).thenReturn("AI-GLASS-V1");
+        return row;
+    }
+}
@@ -0,0 +1,140 @@
+package com.almousleck.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HeartbeatIntervalAdvisorTest {
+
+    private static final String KEY = "device:heartbeat:intervals";
+
+    @Mock
+    private PresenceService presenceService;
+    @Mock
+    private HeartbeatWriteBuffer heartbeatWriteBuffer;
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    private HeartbeatIntervalAdvisor advisor;
+    private final Map<Object, Object> published = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        advisor = new HeartbeatIntervalAdvisor(presenceService, heartbeatWriteBuffer, redisTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(advisor, "baseSeconds", 20);
+        ReflectionTestUtils.setField(advisor, "maxSeconds", 120);
+        ReflectionTestUtils.setField(advisor, "nodeTargetRate", 100d);
+        ReflectionTestUtils.setField(advisor, "fleetTargetRate", 10_000d);
+        ReflectionTestUtils.setField(advisor, "flushLagTargetMillis", 5000L);
+        ReflectionTestUtils.setField(advisor, "ttlMultiplier", 2.5);
+        ReflectionTestUtils.setField(advisor, "jitterRatio", 0.1);
+        advisor.init();
+
+        lenient().when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        lenient().doAnswer(invocation -> published.put(invocation.getArgument(1), invocation.getArgument(2)))
+                .when(hashOperations).put(eq(KEY), any(), any());
+        lenient().when(hashOperations.entries(KEY)).thenAnswer(invocation -> new HashMap<>(published));
+    }
+
+    @Test
+    void recompute_ShouldKeepBaseInterval_WhenIdle() {
+        recomputeAfter(5, 0);
+
+        assertEquals(20, interval());
+        verify(presenceService).adjustTtl(Duration.ofSeconds(50));
+    }
+
+    @Test
+    void recompute_ShouldStretch_WhenIngestRateExceedsTarget() {
+        recomputeAfter(5, 1000); // 200 beats/s against a target of 100
+
+        assertEquals(40, interval());
+        verify(presenceService).adjustTtl(Duration.ofSeconds(100));
+    }
+
+    @Test
+    void recompute_ShouldCapStretchPerTick_WhenFlushLagsBehind() {
+        when(heartbeatWriteBuffer.lastFlushLagMillis()).thenReturn(50_000L);
+
+        recomputeAfter(5, 0);
+
+        assertEquals(40, interval());
+    }
+
+    @Test
+    void recompute_ShouldKeepFleetWithinClusterBudget() {
+        when(presenceService.countOnline()).thenReturn(1_000_000L);
+
+        recomputeAfter(5, 0);
+
+        assertEquals(100, interval());
+    }
+
+    @Test
+    void recompute_ShouldKeepTtl_UntilDevicesOnTheLongerIntervalBeatAgain() {
+        recomputeAfter(5, 1000);
+        assertEquals(40, interval());
+
+        recomputeAfter(5, 0);
+
+        assertEquals(32, interval()); // relaxing
+        verify(presenceService, times(2)).adjustTtl(Duration.ofSeconds(100));
+    }
+
+    @Test
+    void recompute_ShouldFollowLongestIntervalInCluster_AndDropStaleNodes() {
+        published.put("other-node", "100:" + System.currentTimeMillis());
+        published.put("dead-node", "120:" + (System.currentTimeMillis() - 3_600_000));
+
+        recomputeAfter(5, 0);
+
+        verify(presenceService).adjustTtl(Duration.ofSeconds(250));
+        verify(hashOperations).delete(KEY, "dead-node");
+    }
+
+    @Test
+    void recompute_ShouldKeepTtl_WhenRedisFails() {
+        when(hashOperations.entries(KEY)).thenThrow(new QueryTimeoutException("redis down"));
+
+        recomputeAfter(5, 0);
+
+        verify(presenceService, never()).adjustTtl(any());
+    }
+
+    @Test
+    void nextIntervalSeconds_ShouldJitterAroundInterval() {
+        for (int i = 0; i < 100; i++) {
+            int next = advisor.nextIntervalSeconds();
+            assertTrue(next >= 18 && next <= 22, "out of range: " + next);
+        }
+    }
+
+    // Helper methods
+    private void recomputeAfter(int seconds, int beats) {
+        ReflectionTestUtils.setField(advisor, "lastRecomputeNanos", System.nanoTime() - seconds * 1_000_000_000L);
+        advisor.recordBeats(beats);
+        advisor.recompute();
+    }
+
+    private int interval() {
+        return (int) Math.round((double) ReflectionTestUtils.getField(advisor, "intervalSeconds"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.almousleck.service;
+
+import com.almousleck.dto.device.HeartbeatSample;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class HeartbeatSignificanceFilterTest {
+
+    private final StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+    private final RedisMessageListenerContainer listenerContainer = mock(RedisMessageListenerContainer.class);
+    private SimpleMeterRegistry meterRegistry;
+    private HeartbeatSignificanceFilter filter;
+    private Instant now;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new HeartbeatSignificanceFilter(meterRegistry, stringRedisTemplate, listenerContainer);
+        ReflectionTestUtils.setField(filter, "batteryDelta", 5);
+        ReflectionTestUtils.setField(filter, "maxStalenessSeconds", 300L);
+        ReflectionTestUtils.setField(filter, "maxTracked", 100);
+        filter.init();
+        now = Instant.now();
+    }
+
+    @Test
+    void shouldPersist_FirstBeatOfDevice() {
+        assertTrue(filter.shouldPersist(sample(80, "10.0.0.1", now)));
+    }
+
+    @Test
+    void shouldSuppress_SmallBatteryChangeOnSameIp() {
+        filter.shouldPersist(sample(80, "10.0.0.1", now));
+
+        assertFalse(filter.shouldPersist(sample(78, "10.0.0.1", now.plusSeconds(30))));
+        assertFalse(filter.shouldPersist(sample(null, null, now.plusSeconds(60))));
+        assertEquals(1.0, counter("persisted"));
+        assertEquals(2.0, counter("suppressed"));
+    }
+
+    @Test
+    void shouldPersist_WhenBatteryDriftAddsUpToDelta() {
+        filter.shouldPersist(sample(80, "10.0.0.1", now));
+        filter.shouldPersist(sample(77, "10.0.0.1", now.plusSeconds(30)));
+
+        // compared against the last persisted value (80), not the last seen one (77)
+        assertTrue(filter.shouldPersist(sample(75, "10.0.0.1", now.plusSeconds(60))));
+    }
+
+    @Test
+    void shouldPersist_WhenIpChanges() {
+        filter.shouldPersist(sample(80, "10.0.0.1", now));
+
+        assertTrue(filter.shouldPersist(sample(80, "10.0.0.2", now.plusSeconds(30))));
+    }
+
+    @Test
+    void shouldPersist_WhenSnapshotIsStale() {
+        filter.shouldPersist(sample(80, "10.0.0.1", now));
+
+        assertFalse(filter.shouldPersist(sample(80, "10.0.0.1", now.plusSeconds(299))));
+        assertTrue(filter.shouldPersist(sample(80, "10.0.0.1", now.plusSeconds(300))));
+    }
+
+    @Test
+    void shouldPersist_AfterEvict() {
+        filter.shouldPersist(sample(80, "10.0.0.1", now));
+        filter.evict("GLASS-001");
+
+        assertTrue(filter.shouldPersist(sample(80, "10.0.0.1", now.plusSeconds(30))));
+    }
+
+    @Test
+    void evict_ShouldTellEveryNode() {
+        filter.evict(List.of("GLASS-001", "GLASS-002"));
+
+        verify(listenerContainer).addMessageListener(filter, new ChannelTopic("device:heartbeat:evict"));
+        verify(stringRedisTemplate).convertAndSend("device:heartbeat:evict", "GLASS-001\nGLASS-002");
+    }
+
+    @Test
+    void shouldPersist_AfterAnotherNodeEvicted() {
+        // The sweeper on another node moved the device OFFLINE, it comes back through this one
+        filter.shouldPersist(sample(80, "10.0.0.1", now));
+        filter.onMessage(new DefaultMessage("device:heartbeat:evict".getBytes(StandardCharsets.UTF_8),
+                "GLASS-000\nGLASS-001".getBytes(StandardCharsets.UTF_8)), null);
+
+        assertTrue(filter.shouldPersist(sample(80, "10.0.0.1", now.plusSeconds(30))));
+    }
+
+    @Test
+    void evict_ShouldStillForgetLocally_WhenPublishFails() {
+        filter.shouldPersist(sample(80, "10.0.0.1", now));
+        when(stringRedisTemplate.convertAndSend(anyString(), anyString()))
+                .thenThrow(new RedisConnectionFailureException("Redis down"));
+
+        filter.evict("GLASS-001");
+
+        assertTrue(filter.shouldPersist(sample(80, "10.0.0.1", now.plusSeconds(30))));
+    }
+
+    private double counter(String outcome) {
+        return meterRegistry.counter("device.heartbeat.writes", "outcome", outcome).count();
+    }
+
+    private HeartbeatSample sample(Integer battery, String ip, Instant at) {
+        return HeartbeatSample.builder()
+                .serialNumber("GLASS-001")
+                .batteryLevel(battery)
+                .ipAddress(ip)
+                .heartbeatAt(at)
+                .build();
+    }
+}
@@ -0,0 +1,134 @@
+package com.almousleck.service;
+
+import com.almousleck.dto.device.HeartbeatSample;
+import com.almousleck.repository.device.DeviceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HeartbeatWriteBufferTest {
+
+    @Mock
+    private DeviceRepository deviceRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private HeartbeatWriteBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        buffer = new HeartbeatWriteBuffer(deviceRepository, meterRegistry);
+        ReflectionTestUtils.setField(buffer, "enabled", true);
+        ReflectionTestUtils.setField(buffer, "maxPending", 2);
+        buffer.registerMetrics();
+    }
+
+    @Test
+    void offer_ShouldCoalesceBeatsForSameSerial() {
+        Instant first = Instant.now();
+        buffer.offer(sample("GLASS-001", 80, "10.0.0.1", first));
+        buffer.offer(sample("GLASS-001", null, "10.0.0.2", first.plusSeconds(30)));
+
+        assertEquals(1, buffer.pendingCount());
+
+        when(deviceRepository.batchUpdateHeartbeats(anyCollection())).thenReturn(new int[]{1});
+        buffer.flush();
+
+        ArgumentCaptor<Collection<HeartbeatSample>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(deviceRepository).batchUpdateHeartbeats(captor.capture());
+        HeartbeatSample written = captor.getValue().iterator().next();
+        assertEquals(80, written.getBatteryLevel()); // kept from the earlier beat
+        assertEquals("10.0.0.2", written.getIpAddress());
+        assertEquals(first.plusSeconds(30), written.getHeartbeatAt());
+        assertEquals(0, buffer.pendingCount());
+    }
+
+    @Test
+    void offer_ShouldReject_WhenBufferIsFull() {
+        assertTrue(buffer.offer(sample("GLASS-001", 80, null, Instant.now())));
+        assertTrue(buffer.offer(sample("GLASS-002", 80, null, Instant.now())));
+
+        assertFalse(buffer.offer(sample("GLASS-003", 80, null, Instant.now())));
+        assertTrue(buffer.offer(sample("GLASS-001", 70, null, Instant.now()))); // already buffered, still coalesces
+        assertEquals(1.0, meterRegistry.counter("device.heartbeat.buffer.overflow").count());
+    }
+
+    @Test
+    void offer_ShouldReject_WhenDisabled() {
+        ReflectionTestUtils.setField(buffer, "enabled", false);
+
+        assertFalse(buffer.offer(sample("GLASS-001", 80, null, Instant.now())));
+        assertEquals(0, buffer.pendingCount());
+    }
+
+    @Test
+    void flush_ShouldResetFlushLag_OnceNothingIsPending() throws InterruptedException {
+        when(deviceRepository.batchUpdateHeartbeats(anyCollection())).thenReturn(new int[]{1});
+        buffer.offer(sample("GLASS-001", 80, null, Instant.now()));
+        Thread.sleep(20);
+        buffer.flush();
+        assertTrue(buffer.lastFlushLagMillis() >= 20);
+
+        buffer.flush(); // Idle tick
+
+        assertEquals(0, buffer.lastFlushLagMillis());
+    }
+
+    @Test
+    void flush_ShouldCountUnknownSerials() {
+        buffer.offer(sample("GLASS-001", 80, null, Instant.now()));
+        buffer.offer(sample("GHOST-404", 80, null, Instant.now()));
+        when(deviceRepository.batchUpdateHeartbeats(anyCollection())).thenAnswer(invocation -> {
+            List<HeartbeatSample> samples = List.copyOf(invocation.getArgument(0));
+            return samples.stream().mapToInt(s -> s.getSerialNumber().startsWith("GHOST") ? 0 : 1).toArray();
+        });
+
+        buffer.flush();
+
+        assertEquals(1.0, meterRegistry.counter("device.heartbeat.flushed").count());
+        assertEquals(1.0, meterRegistry.counter("device.heartbeat.flush.unknown").count());
+        assertEquals(1, meterRegistry.timer("device.heartbeat.flush.lag").count());
+    }
+
+    @Test
+    void flush_ShouldKeepBatchForRetry_WhenDatabaseFails() {
+        buffer.offer(sample("GLASS-001", 80, null, Instant.now()));
+        when(deviceRepository.batchUpdateHeartbeats(anyCollection()))
+                .thenThrow(new QueryTimeoutException("db down"));
+
+        buffer.flush();
+
+        assertEquals(1, buffer.pendingCount());
+    }
+
+    @Test
+    void flush_ShouldNotHitDb_WhenNothingPending() {
+        buffer.flush();
+
+        verifyNoInteractions(deviceRepository);
+    }
+
+    private HeartbeatSample sample(String serial, Integer battery, String ip, Instant at) {
+        return HeartbeatSample.builder()
+                .serialNumber(serial)
+                .batteryLevel(battery)
+                .ipAddress(ip)
+                .heartbeatAt(at)
+                .build();
+    }
+}
@@ -0,0 +1,78 @@
+package com.almousleck.service;
+
+import com.almousleck.dto.telemetry.TelemetrySample;
+import com.almousleck.repository.telemetry.TelemetryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TelemetryIngestBufferTest {
+
+    @Mock
+    private TelemetryRepository telemetryRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TelemetryIngestBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        buffer = new TelemetryIngestBuffer(telemetryRepository, meterRegistry);
+        ReflectionTestUtils.setField(buffer, "enabled", true);
+        ReflectionTestUtils.setField(buffer, "maxPending", 3);
+        ReflectionTestUtils.setField(buffer, "batchSize", 2);
+        buffer.init();
+    }
+
+    @Test
+    void flush_ShouldInsertInBatchesOfConfiguredSize() {
+        buffer.offer(sample(1L));
+        buffer.offer(sample(2L));
+        buffer.offer(sample(3L));
+
+        buffer.flush();
+
+        verify(telemetryRepository).batchInsert(argThat((Collection<TelemetrySample> batch) -> batch.size() == 2));
+        verify(telemetryRepository).batchInsert(argThat((Collection<TelemetrySample> batch) -> batch.size() == 1));
+        assertEquals(0, buffer.pendingCount());
+        assertEquals(3.0, meterRegistry.get("telemetry.ingest.written").counter().count());
+    }
+
+    @Test
+    void offer_ShouldDropAndCount_WhenQueueFull() {
+        for (long id = 1; id <= 4; id++) buffer.offer(sample(id));
+
+        assertEquals(3, buffer.pendingCount());
+        assertEquals(1.0, meterRegistry.get("telemetry.ingest.dropped").counter().count());
+    }
+
+    @Test
+    void flush_ShouldRequeueBatch_WhenInsertFails() {
+        buffer.offer(sample(1L));
+        buffer.offer(sample(2L));
+        when(telemetryRepository.batchInsert(anyCollection())).thenThrow(new QueryTimeoutException("db down"));
+
+        buffer.flush();
+
+        assertEquals(2, buffer.pendingCount());
+        verify(telemetryRepository, times(1)).batchInsert(anyCollection());
+    }
+
+    private TelemetrySample sample(Long deviceId) {
+        return TelemetrySample.builder().deviceId(deviceId).recordedAt(Instant.now()).batteryLevel(50).build();
+    }
+}
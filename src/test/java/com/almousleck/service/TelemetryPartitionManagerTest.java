@@ -0,0 +1,73 @@
+package com.almousleck.service;
+
+import com.almousleck.repository.telemetry.TelemetryRepository;
+import com.almousleck.repository.telemetry.TelemetryRepository.TelemetryPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TelemetryPartitionManagerTest {
+
+    // MySQL TO_DAYS of the dates used below
+    private static final long DAYS_2026_01_01 = 739982;
+    private static final long DAYS_2026_10_17 = 740271;
+
+    @Mock
+    private TelemetryRepository telemetryRepository;
+
+    @InjectMocks
+    private TelemetryPartitionManager partitionManager;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(partitionManager, "retentionDays", 7L);
+        ReflectionTestUtils.setField(partitionManager, "partitionsAheadDays", 2L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void maintain_ShouldSplitFuturePartitionIntoDays_OnFreshTable() {
+        when(telemetryRepository.findPartitions()).thenReturn(List.of(
+                new TelemetryPartition("p_start", DAYS_2026_01_01),
+                new TelemetryPartition("p_future", null)));
+
+        partitionManager.maintain(LocalDate.of(2026, 10, 17));
+
+        ArgumentCaptor<SortedMap<Long, String>> added = ArgumentCaptor.forClass(SortedMap.class);
+        verify(telemetryRepository).addPartitions(added.capture());
+        assertEquals(List.of("p20261017", "p20261018", "p20261019"), List.copyOf(added.getValue().values()));
+        assertEquals(DAYS_2026_10_17 + 1, added.getValue().firstKey());
+        verify(telemetryRepository).dropPartitions(List.of());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void maintain_ShouldOnlyAddMissingDaysAndDropExpiredOnes() {
+        when(telemetryRepository.findPartitions()).thenReturn(List.of(
+                new TelemetryPartition("p_start", DAYS_2026_01_01),
+                new TelemetryPartition("p20261009", DAYS_2026_10_17 - 7),
+                new TelemetryPartition("p20261010", DAYS_2026_10_17 - 6),
+                new TelemetryPartition("p20261018", DAYS_2026_10_17 + 2),
+                new TelemetryPartition("p_future", null)));
+
+        partitionManager.maintain(LocalDate.of(2026, 10, 18));
+
+        ArgumentCaptor<SortedMap<Long, String>> added = ArgumentCaptor.forClass(SortedMap.class);
+        verify(telemetryRepository).addPartitions(added.capture());
+        assertEquals(List.of("p20261019", "p20261020"), List.copyOf(added.getValue().values()));
+        verify(telemetryRepository).dropPartitions(List.of("p20261009", "p20261010"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.almousleck.service;
+
+import com.almousleck.enums.TelemetryResolution;
+import com.almousleck.repository.telemetry.TelemetryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TelemetryRollupJobTest {
+
+    @Mock
+    private TelemetryRepository telemetryRepository;
+
+    @InjectMocks
+    private TelemetryRollupJob rollupJob;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(rollupJob, "latenessSeconds", 30L);
+        ReflectionTestUtils.setField(rollupJob, "maxWindowMinutes", 60L);
+        ReflectionTestUtils.setField(rollupJob, "purgeBatchSize", 2);
+    }
+
+    @Test
+    void rollupMinutes_ShouldAggregateClosedMinutesSinceLastRun() {
+        when(telemetryRepository.findRolledUpTo(TelemetryResolution.MINUTE))
+                .thenReturn(Optional.of(Instant.parse("2026-10-17T10:00:00Z")));
+
+        Instant done = rollupJob.rollupMinutes(Instant.parse("2026-10-17T10:05:20Z"));
+
+        // 10:04:50 after lateness, truncated to the last closed minute
+        assertEquals(Instant.parse("2026-10-17T10:04:00Z"), done);
+        verify(telemetryRepository).rollupMinutes(Instant.parse("2026-10-17T10:00:00Z"), Instant.parse("2026-10-17T10:04:00Z"));
+    }
+
+    @Test
+    void rollupMinutes_ShouldCapWindowWhenCatchingUp() {
+        when(telemetryRepository.findRolledUpTo(TelemetryResolution.MINUTE))
+                .thenReturn(Optional.of(Instant.parse("2026-10-17T06:00:00Z")));
+
+        Instant done = rollupJob.rollupMinutes(Instant.parse("2026-10-17T10:05:20Z"));
+
+        assertEquals(Instant.parse("2026-10-17T07:00:00Z"), done);
+    }
+
+    @Test
+    void rollupMinutes_ShouldDoNothing_WhenUpToDate() {
+        when(telemetryRepository.findRolledUpTo(TelemetryResolution.MINUTE))
+                .thenReturn(Optional.of(Instant.parse("2026-10-17T10:04:00Z")));
+
+        rollupJob.rollupMinutes(Instant.parse("2026-10-17T10:04:50Z"));
+
+        verify(telemetryRepository, never()).rollupMinutes(any(), any());
+    }
+
+    @Test
+    void rollupHours_ShouldOnlyRollCompleteHours() {
+        when(telemetryRepository.findRolledUpTo(TelemetryResolution.HOUR))
+                .thenReturn(Optional.of(Instant.parse("2026-10-17T08:00:00Z")));
+
+        rollupJob.rollupHours(Instant.parse("2026-10-17T10:04:00Z"));
+
+        verify(telemetryRepository).rollupHours(Instant.parse("2026-10-17T08:00:00Z"), Instant.parse("2026-10-17T10:00:00Z"));
+    }
+
+    @Test
+    void purgeExpiredBuckets_ShouldDeleteInChunksUntilDone() {
+        ReflectionTestUtils.setField(rollupJob, "minuteRetentionDays", 30L);
+        ReflectionTestUtils.setField(rollupJob, "hourRetentionDays", 365L);
+        when(telemetryRepository.deleteBucketsBefore(eq(TelemetryResolution.MINUTE), any(), eq(2))).thenReturn(2, 2, 1);
+
+        rollupJob.purgeExpiredBuckets();
+
+        verify(telemetryRepository, times(3)).deleteBucketsBefore(eq(TelemetryResolution.MINUTE), any(), eq(2));
+        verify(telemetryRepository, times(1)).deleteBucketsBefore(eq(TelemetryResolution.HOUR), any(), eq(2));
+    }
+}
@@ -0,0 +1,169 @@
+package com.almousleck.service.impl;
+
+import com.almousleck.dto.device.NearbyDeviceResponse;
+import com.almousleck.event.DeviceDisconnectedEvent;
+import com.almousleck.service.PresenceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.core.GeoOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeviceLocationServiceImplTest {
+
+    private static final String KEY = "device:geo";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private GeoOperations<String, String> geoOperations;
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+    @Mock
+    private PresenceService presenceService;
+
+    @InjectMocks
+    private DeviceLocationServiceImpl locationService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(locationService, "maxRadiusMeters", 50_000d);
+        ReflectionTestUtils.setField(locationService, "maxResults", 500);
+        ReflectionTestUtils.setField(locationService, "maxScanned", 5000);
+        ReflectionTestUtils.setField(locationService, "purgePageSize", 2);
+        lenient().when(redisTemplate.opsForGeo()).thenReturn(geoOperations);
+        lenient().when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+    }
+
+    @Test
+    void updateLocation_ShouldStoreLongitudeAsX() {
+        locationService.updateLocation("GLASS-001", 31.2304, 121.4737);
+
+        verify(geoOperations).add(KEY, new Point(121.4737, 31.2304), "GLASS-001");
+    }
+
+    @Test
+    void findNearby_ShouldSkipDevicesNoLongerOnline() {
+        when(geoOperations.search(eq(KEY), any(), any(Distance.class), any(RedisGeoCommands.GeoSearchCommandArgs.class)))
+                .thenReturn(new GeoResults<>(List.of(hit("GLASS-001", 12.5), hit("GLASS-002", 80.0))));
+        when(presenceService.isOnline(List.of("GLASS-001", "GLASS-002")))
+                .thenReturn(Map.of("GLASS-001", true, "GLASS-002", false));
+
+        List<NearbyDeviceResponse> nearby = locationService.findNearby(31.23, 121.47, 100, 10);
+
+        assertEquals(1, nearby.size());
+        assertEquals("GLASS-001", nearby.get(0).getSerialNumber());
+        assertEquals(12.5, nearby.get(0).getDistanceMeters());
+    }
+
+    @Test
+    void findNearby_ShouldClampRadiusAndLimit() {
+        when(geoOperations.search(eq(KEY), any(), any(Distance.class), any(RedisGeoCommands.GeoSearchCommandArgs.class)))
+                .thenReturn(new GeoResults<>(List.of()));
+
+        locationService.findNearby(31.23, 121.47, 1_000_000, 10_000);
+
+        ArgumentCaptor<Distance> radius = ArgumentCaptor.forClass(Distance.class);
+        ArgumentCaptor<RedisGeoCommands.GeoSearchCommandArgs> args =
+                ArgumentCaptor.forClass(RedisGeoCommands.GeoSearchCommandArgs.class);
+        verify(geoOperations).search(eq(KEY), any(), radius.capture(), args.capture());
+        assertEquals(50_000d, radius.getValue().getValue());
+        assertEquals(1000, args.getValue().getLimit()); // 500 wanted, over-fetched
+        verifyNoInteractions(presenceService);
+    }
+
+    @Test
+    void findNearby_ShouldWidenTheSearch_WhenOfflineHitsLeaveItShort() {
+        // Two wanted, the four nearest include three stale positions
+        when(geoOperations.search(eq(KEY), any(), any(Distance.class), any(RedisGeoCommands.GeoSearchCommandArgs.class)))
+                .thenReturn(new GeoResults<>(List.of(hit("GLASS-001", 1), hit("GLASS-002", 2),
+                                hit("GLASS-003", 3), hit("GLASS-004", 4))),
+                        new GeoResults<>(List.of(hit("GLASS-001", 1), hit("GLASS-002", 2),
+                                hit("GLASS-003", 3), hit("GLASS-004", 4), hit("GLASS-005", 5))));
+        when(presenceService.isOnline(List.of("GLASS-001", "GLASS-002", "GLASS-003", "GLASS-004")))
+                .thenReturn(Map.of("GLASS-001", false, "GLASS-002", true, "GLASS-003", false, "GLASS-004", false));
+        when(presenceService.isOnline(List.of("GLASS-005"))).thenReturn(Map.of("GLASS-005", true));
+
+        List<NearbyDeviceResponse> nearby = locationService.findNearby(31.23, 121.47, 100, 2);
+
+        assertEquals(List.of("GLASS-002", "GLASS-005"), nearby.stream().map(NearbyDeviceResponse::getSerialNumber).toList());
+        ArgumentCaptor<RedisGeoCommands.GeoSearchCommandArgs> args =
+                ArgumentCaptor.forClass(RedisGeoCommands.GeoSearchCommandArgs.class);
+        verify(geoOperations, times(2)).search(eq(KEY), any(), any(Distance.class), args.capture());
+        assertEquals(List.of(4L, 16L), args.getAllValues().stream().map(RedisGeoCommands.GeoSearchCommandArgs::getLimit).toList());
+    }
+
+    @Test
+    void findNearby_ShouldStop_WhenTheRadiusHoldsNoMore() {
+        when(geoOperations.search(eq(KEY), any(), any(Distance.class), any(RedisGeoCommands.GeoSearchCommandArgs.class)))
+                .thenReturn(new GeoResults<>(List.of(hit("GLASS-001", 1), hit("GLASS-002", 2))));
+        when(presenceService.isOnline(List.of("GLASS-001", "GLASS-002")))
+                .thenReturn(Map.of("GLASS-001", true, "GLASS-002", false));
+
+        List<NearbyDeviceResponse> nearby = locationService.findNearby(31.23, 121.47, 100, 2);
+
+        assertEquals(1, nearby.size());
+        verify(geoOperations, times(1)).search(eq(KEY), any(), any(Distance.class), any(RedisGeoCommands.GeoSearchCommandArgs.class));
+    }
+
+    @Test
+    void findNearby_ShouldNotQueryRedis_WhenCentreNotIndexable() {
+        assertTrue(locationService.findNearby(89.9, 0, 100, 10).isEmpty());
+        verifyNoInteractions(geoOperations);
+    }
+
+    @Test
+    void onDeviceDisconnected_ShouldDropPosition() {
+        locationService.onDeviceDisconnected(new DeviceDisconnectedEvent(
+                "GLASS-001", Instant.now(), DeviceDisconnectedEvent.Reason.EXPIRED));
+
+        verify(geoOperations).remove(KEY, "GLASS-001");
+    }
+
+    @Test
+    void purgeStale_ShouldRemoveOfflineMembersAndKeepPaging() {
+        // Page 1: one of two is offline, so the next page starts one rank later, not two
+        when(zSetOperations.range(KEY, 0, 1)).thenReturn(new LinkedHashSet<>(List.of("GLASS-001", "GLASS-002")));
+        when(zSetOperations.range(KEY, 1, 2)).thenReturn(new LinkedHashSet<>(List.of("GLASS-003")));
+        when(presenceService.isOnline(anyCollection())).thenAnswer(invocation -> {
+            Iterable<String> serials = invocation.getArgument(0);
+            Map<String, Boolean> online = new HashMap<>();
+            serials.forEach(serial -> online.put(serial, serial.equals("GLASS-002")));
+            return online;
+        });
+
+        locationService.purgeStale();
+
+        verify(geoOperations).remove(KEY, "GLASS-001");
+        verify(geoOperations).remove(KEY, "GLASS-003");
+        verify(zSetOperations, times(2)).range(eq(KEY), anyLong(), anyLong());
+    }
+
+    // Helper methods
+    private static GeoResult<RedisGeoCommands.GeoLocation<String>> hit(String serial, double meters) {
+        return new GeoResult<>(new RedisGeoCommands.GeoLocation<>(serial, new Point(121.47, 31.23)),
+                new Distance(meters, RedisGeoCommands.DistanceUnit.METERS));
+    }
+}
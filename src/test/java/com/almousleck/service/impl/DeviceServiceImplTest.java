@@ -1,30 +1,62 @@
 package com.almousleck.service.impl;
 
+import com.almousleck.dto.device.BatchHeartbeatRequest;
+import com.almousleck.dto.device.BatchHeartbeatResponse;
+import com.almousleck.dto.device.DeviceHeartbeatEntry;
 import com.almousleck.dto.device.DevicePairRequest;
+import com.almousleck.dto.device.DeviceSliceResponse;
+import com.almousleck.dto.device.HeartbeatResponse;
 import com.almousleck.dto.device.DeviceResponse;
+import com.almousleck.dto.device.DeviceTokenResponse;
 import com.almousleck.enums.DeviceStatus;
+import com.almousleck.event.DeviceDisconnectedEvent;
 import com.almousleck.enums.UserRole;
 import com.almousleck.exceptions.DuplicationException;
+import com.almousleck.exceptions.ResourceNotFoundException;
 import com.almousleck.exceptions.UnauthorizedDeviceAccessException;
+import com.almousleck.jwt.DeviceTokenUtils;
 import com.almousleck.model.Device;
 import com.almousleck.model.User;
 import com.almousleck.repository.UserRepository;
+import com.almousleck.repository.device.DeviceLookup;
 import com.almousleck.repository.device.DeviceRepository;
+import com.almousleck.repository.device.DeviceSummary;
+import com.almousleck.service.DeviceLocationService;
+import com.almousleck.service.DeviceLookupCache;
+import com.almousleck.service.FleetStatsService;
+import com.almousleck.service.HeartbeatIntervalAdvisor;
+import com.almousleck.service.HeartbeatSignificanceFilter;
+import com.almousleck.service.HeartbeatWriteBuffer;
+import com.almousleck.service.PresenceService;
+import com.almousleck.service.TelemetryIngestBuffer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
-
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.geo.Point;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,9 +67,25 @@ class DeviceServiceImplTest {
     @Mock
     private UserRepository userRepository;
     @Mock
-    private StringRedisTemplate redisTemplate;
+    private PresenceService presenceService;
+    @Mock
+    private HeartbeatWriteBuffer heartbeatWriteBuffer;
+    @Mock
+    private HeartbeatSignificanceFilter heartbeatSignificanceFilter;
+    @Mock
+    private DeviceLookupCache deviceLookupCache;
+    @Mock
+    private DeviceTokenUtils deviceTokenUtils;
+    @Mock
+    private TelemetryIngestBuffer telemetryIngestBuffer;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
     @Mock
-    private ValueOperations<String, String> valueOperations;
+    private DeviceLocationService deviceLocationService;
+    @Mock
+    private FleetStatsService fleetStatsService;
+    @Mock
+    private HeartbeatIntervalAdvisor heartbeatIntervalAdvisor;
 
     @InjectMocks
     private DeviceServiceImpl deviceService;
@@ -69,8 +117,45 @@ class DeviceServiceImplTest {
         pairRequest.setSerialNumber("GLASS-001");
         pairRequest.setDeviceName("My Smart Glass");
 
-        // 4. Mock Redis
-        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        // 4. Mock Redis presence
+        lenient().when(presenceService.presenceTtl()).thenReturn(Duration.ofSeconds(60));
+
+        // 5. Every heartbeat is significant unless a test says otherwise
+        lenient().when(heartbeatSignificanceFilter.shouldPersist(any())).thenReturn(true);
+
+        // 6. Device tokens
+        lenient().when(deviceTokenUtils.getValidity()).thenReturn(Duration.ofDays(365));
+        lenient().when(deviceTokenUtils.generateToken(any(), anyInt(), any())).thenReturn("signed-device-token");
+
+        // 7. Every GLASS-* serial is a known device
+        lenient().when(deviceLookupCache.find(startsWith("GLASS-"))).thenAnswer(invocation ->
+                Optional.of(lookup(invocation.getArgument(0))));
+        lenient().when(deviceLookupCache.findAll(any())).thenAnswer(invocation -> {
+            Collection<String> serials = invocation.getArgument(0);
+            return serials.stream().filter(serial -> serial.startsWith("GLASS-"))
+                    .collect(Collectors.toMap(Function.identity(), DeviceServiceImplTest::lookup));
+        });
+    }
+
+    private static DeviceSummary summary(Long id, String serialNumber) {
+        return new DeviceSummary(id, "Glass " + id, serialNumber, 80, "1.0.0", null, null, null);
+    }
+
+    // Real signing and verification, with the lookup cache reading the device row as it is now
+    private DeviceTokenUtils signingDeviceTokens() {
+        DeviceTokenUtils tokens = new DeviceTokenUtils(deviceLookupCache);
+        ReflectionTestUtils.setField(tokens, "secret", "xNDPXxe_MPZ7ffPo2vdFBAf2Gizewxps3HWpwtUzhhM");
+        ReflectionTestUtils.setField(tokens, "expirationDays", 365L);
+        ReflectionTestUtils.invokeMethod(tokens, "init");
+        when(deviceLookupCache.find("GLASS-001")).thenAnswer(invocation -> Optional.of(
+                new DeviceLookup("GLASS-001", 1L, 1L, device.getStatus(), device.getTokenVersion())));
+        lenient().when(deviceTokenUtils.generateToken(any(), anyInt(), any())).thenAnswer(invocation -> tokens.generateToken(
+                invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+        return tokens;
+    }
+
+    private static DeviceLookup lookup(String serialNumber) {
+        return new DeviceLookup(serialNumber, 1L, 1L, DeviceStatus.OFFLINE, 0);
     }
 
     @Test
@@ -86,7 +171,120 @@ class DeviceServiceImplTest {
         // Assert
         assertNotNull(response);
         assertEquals("GLASS-001", response.getSerialNumber());
+        assertEquals("signed-device-token", response.getDeviceToken());
+        assertNotNull(response.getDeviceTokenExpiresAt());
         verify(deviceRepository).save(any(Device.class));
+        verify(deviceLookupCache).invalidate("GLASS-001");
+        verify(fleetStatsService).onPaired("GLASS-001", 20, "1.0.0", null);
+    }
+
+    @Test
+    void updateHeartbeat_ShouldIndexLocation_WhenFixReported() {
+        // Arrange
+        when(heartbeatWriteBuffer.offer(any())).thenReturn(true);
+
+        // Act
+        deviceService.updateHeartbeat("GLASS-001", 80, "127.0.0.1", 31.2304, 121.4737);
+
+        // Assert
+        verify(deviceLocationService).updateLocation("GLASS-001", 31.2304, 121.4737);
+        verify(heartbeatWriteBuffer).offer(argThat(sample ->
+                sample.getLatitude() == 31.2304 && sample.getLongitude() == 121.4737));
+        verify(telemetryIngestBuffer).offer(argThat(sample ->
+                sample.getLocationLat() == 31.2304 && sample.getLocationLng() == 121.4737));
+    }
+
+    @Test
+    void updateHeartbeat_ShouldDropLocation_WhenNotIndexable() {
+        // Arrange
+        when(heartbeatWriteBuffer.offer(any())).thenReturn(true);
+
+        // Act: half a fix, and a polar one Redis GEO cannot store
+        deviceService.updateHeartbeat("GLASS-001", 80, "127.0.0.1", 31.2304, null);
+        deviceService.updateHeartbeat("GLASS-001", 80, "127.0.0.1", 89.9, 10.0);
+
+        // Assert
+        verifyNoInteractions(deviceLocationService);
+        verify(heartbeatWriteBuffer, times(2)).offer(argThat(sample -> !sample.hasLocation()));
+    }
+
+    @Test
+    void updateHeartbeats_ShouldIndexFreshLocationsInOneCall() {
+        // Arrange
+        Instant now = Instant.now();
+        BatchHeartbeatRequest request = new BatchHeartbeatRequest();
+        request.setHeartbeats(List.of(
+                new DeviceHeartbeatEntry("GLASS-001", "device-token", 60, 31.2, 121.4, now.minusSeconds(5)),
+                new DeviceHeartbeatEntry("GLASS-002", "device-token", 70, 39.9, 116.4, now.minusSeconds(600)), // too old
+                new DeviceHeartbeatEntry("GLASS-003", "device-token", 70, null, null, now.minusSeconds(5))
+        ));
+        when(heartbeatWriteBuffer.offer(any())).thenReturn(true);
+
+        // Act
+        deviceService.updateHeartbeats(request);
+
+        // Assert
+        verify(deviceLocationService).updateLocations(Map.of("GLASS-001", new Point(121.4, 31.2)));
+    }
+
+    @Test
+    void reportLocation_ShouldIndex_WhenCallerOwnsDevice() {
+        // Act
+        deviceService.reportLocation("GLASS-001", 31.2304, 121.4737, 1L);
+
+        // Assert
+        verify(deviceLocationService).updateLocation("GLASS-001", 31.2304, 121.4737);
+        verify(telemetryIngestBuffer).offer(argThat(sample -> sample.getBatteryLevel() == null));
+    }
+
+    @Test
+    void reportLocation_ShouldThrow_WhenCallerDoesNotOwnDevice() {
+        // Act & Assert
+        assertThrows(UnauthorizedDeviceAccessException.class,
+                () -> deviceService.reportLocation("GLASS-001", 31.2304, 121.4737, 2L));
+        verifyNoInteractions(deviceLocationService);
+    }
+
+    @Test
+    void reissueDeviceToken_ShouldSignForOwner() {
+        // Arrange
+        when(deviceRepository.findBySerialNumber("GLASS-001")).thenReturn(Optional.of(device));
+
+        // Act
+        DeviceTokenResponse response = deviceService.reissueDeviceToken("GLASS-001", 1L);
+
+        // Assert
+        assertEquals("signed-device-token", response.getDeviceToken());
+        verify(deviceTokenUtils).generateToken(eq("GLASS-001"), eq(1), eq(response.getExpiresAt()));
+        verify(deviceRepository).save(device);
+        verify(deviceLookupCache).invalidate("GLASS-001");
+    }
+
+    @Test
+    void reissueDeviceToken_ShouldRevokeThePreviousToken() {
+        // Arrange
+        DeviceTokenUtils tokens = signingDeviceTokens();
+        String previous = tokens.generateToken("GLASS-001", device.getTokenVersion(), Instant.now().plusSeconds(3600));
+        assertTrue(tokens.isValidFor(previous, "GLASS-001"));
+        when(deviceRepository.findBySerialNumber("GLASS-001")).thenReturn(Optional.of(device));
+
+        // Act
+        DeviceTokenResponse response = deviceService.reissueDeviceToken("GLASS-001", 1L);
+
+        // Assert
+        assertFalse(tokens.isValidFor(previous, "GLASS-001"));
+        assertTrue(tokens.isValidFor(response.getDeviceToken(), "GLASS-001"));
+    }
+
+    @Test
+    void reissueDeviceToken_ShouldThrow_WhenUserIsNotOwner() {
+        // Arrange
+        when(deviceRepository.findBySerialNumber("GLASS-001")).thenReturn(Optional.of(device));
+
+        // Act & Assert
+        assertThrows(UnauthorizedDeviceAccessException.class,
+                () -> deviceService.reissueDeviceToken("GLASS-001", 2L));
+        verify(deviceTokenUtils, never()).generateToken(any(), anyInt(), any());
     }
 
     @Test
@@ -109,19 +307,122 @@ class DeviceServiceImplTest {
     @Test
     void updateHeartbeat_ShouldUpdateRedis() {
         // Arrange
-        Device mockDevice = new Device();
-        mockDevice.setSerialNumber("GLASS-001");
-        mockDevice.setBatteryLevel(80);
-        
-        when(deviceRepository.findBySerialNumber("GLASS-001")).thenReturn(Optional.of(mockDevice));
+        when(heartbeatWriteBuffer.offer(any())).thenReturn(true);
+        when(heartbeatIntervalAdvisor.nextIntervalSeconds()).thenReturn(45);
+
+        // Act
+        HeartbeatResponse response = deviceService.updateHeartbeat("GLASS-001", 95, "127.0.0.1", null, null);
+
+        // Assert
+        assertEquals(45, response.getNextIntervalSeconds());
+        verify(heartbeatIntervalAdvisor).recordBeats(1);
+        verify(presenceService).markOnline("GLASS-001");
+        verify(heartbeatWriteBuffer).offer(argThat(sample ->
+                sample.getSerialNumber().equals("GLASS-001") && sample.getBatteryLevel() == 95));
+    }
+
+    @Test
+    void updateHeartbeats_ShouldKeepLatestBeatPerDevice() {
+        // Arrange
+        Instant now = Instant.now();
+        BatchHeartbeatRequest request = new BatchHeartbeatRequest();
+        request.setHeartbeats(List.of(
+                new DeviceHeartbeatEntry("GLASS-001", "device-token", 60, null, null, now.minusSeconds(10)),
+                new DeviceHeartbeatEntry("GLASS-001", "device-token", 55, null, null, now.minusSeconds(20)), // relayed out of order
+                new DeviceHeartbeatEntry("GLASS-002", "device-token", 90, null, null, now.minusSeconds(600)) // too old for presence
+        ));
+        when(heartbeatWriteBuffer.offer(any())).thenReturn(true);
 
         // Act
-        deviceService.updateHeartbeat("GLASS-001", 95, "127.0.0.1");
+        BatchHeartbeatResponse response = deviceService.updateHeartbeats(request);
 
         // Assert
-        // Should set key "device:online:GLASS-001"
-        verify(valueOperations).set(eq("device:online:GLASS-001"), eq("1"), anyLong(), any());
-        verify(deviceRepository).save(any(Device.class)); // Should save because battery changed 80->95
+        assertEquals(2, response.getAccepted());
+        assertEquals(1, response.getStale());
+        verify(heartbeatIntervalAdvisor).recordBeats(2);
+        verify(presenceService).markOnline(Map.of("GLASS-001", now.minusSeconds(10))); // As of the latest beat
+        verify(heartbeatWriteBuffer).offer(argThat(sample ->
+                sample.getSerialNumber().equals("GLASS-001") && sample.getBatteryLevel() == 60));
+        verify(heartbeatWriteBuffer, times(1)).offer(any()); // The stale beat is not persisted
+        verify(deviceRepository, never()).batchUpdateHeartbeats(any());
+    }
+
+    @Test
+    void updateHeartbeats_ShouldNotPersistStaleBeats_SoAnOfflineRowStaysOffline() {
+        // Arrange: a gateway replays a beat from before the device's presence expired
+        Instant now = Instant.now();
+        BatchHeartbeatRequest request = new BatchHeartbeatRequest();
+        request.setHeartbeats(List.of(
+                new DeviceHeartbeatEntry("GLASS-001", "device-token", 60, null, null, now.minusSeconds(600))
+        ));
+
+        // Act
+        BatchHeartbeatResponse response = deviceService.updateHeartbeats(request);
+
+        // Assert: neither the buffer nor the batch UPDATE (which sets status back to ONLINE) sees it
+        assertEquals(1, response.getStale());
+        verify(presenceService).markOnline(Map.of());
+        verify(heartbeatSignificanceFilter, never()).shouldPersist(any());
+        verify(heartbeatWriteBuffer, never()).offer(any());
+        verify(deviceRepository, never()).batchUpdateHeartbeats(any());
+    }
+
+    @Test
+    void updateHeartbeats_ShouldWriteOverflowInOneBatch() {
+        // Arrange
+        BatchHeartbeatRequest request = new BatchHeartbeatRequest();
+        request.setHeartbeats(List.of(
+                new DeviceHeartbeatEntry("GLASS-001", "device-token", 60, null, null, null),
+                new DeviceHeartbeatEntry("GLASS-002", "device-token", 70, null, null, null)
+        ));
+        when(heartbeatWriteBuffer.offer(any())).thenReturn(false);
+
+        // Act
+        deviceService.updateHeartbeats(request);
+
+        // Assert
+        verify(deviceRepository).batchUpdateHeartbeats(argThat((Collection<com.almousleck.dto.device.HeartbeatSample> samples) ->
+                samples.size() == 2));
+    }
+
+    @Test
+    void getMyDevices_ShouldResolvePresenceForWholePageAtOnce() {
+        // Arrange
+        when(deviceRepository.findSummariesByOwnerId(eq(1L), eq(0L), any(Limit.class)))
+                .thenReturn(List.of(summary(1L, "GLASS-001"), summary(2L, "GLASS-002")));
+        when(presenceService.isOnline(List.of("GLASS-001", "GLASS-002")))
+                .thenReturn(Map.of("GLASS-001", true, "GLASS-002", false));
+
+        // Act
+        DeviceSliceResponse slice = deviceService.getMyDevices(1L, null, 20, false);
+
+        // Assert
+        assertEquals(DeviceStatus.ONLINE, slice.getContent().get(0).getStatus());
+        assertEquals(DeviceStatus.OFFLINE, slice.getContent().get(1).getStatus());
+        assertFalse(slice.isHasNext());
+        assertNull(slice.getNextAfterId());
+        assertNull(slice.getTotalElements());
+        verify(presenceService, never()).isOnline(anyString());
+        verify(deviceRepository, never()).countByOwnerId(any());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void getMyDevices_ShouldSeekPastAfterId_AndReportNextCursor() {
+        // Arrange: one row more than the slice size means another slice follows
+        when(deviceRepository.findSummariesByOwnerId(1L, 7L, Limit.of(3)))
+                .thenReturn(List.of(summary(8L, "GLASS-008"), summary(9L, "GLASS-009"), summary(12L, "GLASS-012")));
+        when(deviceRepository.countByOwnerId(1L)).thenReturn(12L);
+        when(presenceService.isOnline(List.of("GLASS-008", "GLASS-009"))).thenReturn(Map.of());
+
+        // Act
+        DeviceSliceResponse slice = deviceService.getMyDevices(1L, 7L, 2, true);
+
+        // Assert
+        assertEquals(2, slice.getContent().size());
+        assertTrue(slice.isHasNext());
+        assertEquals(9L, slice.getNextAfterId());
+        assertEquals(12L, slice.getTotalElements());
     }
 
     @Test
@@ -139,35 +440,128 @@ class DeviceServiceImplTest {
     }
 
     @Test
-    void updateHeartbeat_ShouldNotSaveToDb_WhenNotFieldsChanged() {
+    void unpairDevice_ShouldRevokeTheTokenIssuedAtPairing() {
         // Arrange
-        device.setBatteryLevel(80);
-        device.setIpAddress("192.168.1.1");
-        when(deviceRepository.findBySerialNumber("GLASS-001"))
-                .thenReturn(Optional.of(device));
+        DeviceTokenUtils tokens = signingDeviceTokens();
+        String issued = tokens.generateToken("GLASS-001", device.getTokenVersion(), Instant.now().plusSeconds(3600));
+        assertTrue(tokens.isValidFor(issued, "GLASS-001"));
+        when(deviceRepository.findBySerialNumber("GLASS-001")).thenReturn(Optional.of(device));
 
         // Act
-        deviceService.updateHeartbeat("GLASS-001", 80, "192.168.1.1");
+        deviceService.unpairDevice("GLASS-001", 1L);
 
         // Assert
-        verify(valueOperations).set(anyString(), anyString(), anyLong(), any());
-        verify(deviceRepository).save(any(Device.class));
+        assertFalse(tokens.isValidFor(issued, "GLASS-001"));
     }
 
     @Test
-    void markDeviceOnline_ShouldUpdateStatusAndRedis() {
+    void updateHeartbeat_ShouldNotTouchDb_WhenBuffered() {
         // Arrange
-        when(deviceRepository.findBySerialNumber("GLASS-001"))
-                .thenReturn(Optional.of(device));
+        when(heartbeatWriteBuffer.offer(any())).thenReturn(true);
+
+        // Act
+        deviceService.updateHeartbeat("GLASS-001", 80, "192.168.1.1", null, null);
+
+        // Assert
+        verify(presenceService).markOnline("GLASS-001");
+        verify(deviceRepository, never()).findBySerialNumber(any());
+        verify(deviceRepository, never()).save(any(Device.class));
+    }
+
+    @Test
+    void updateHeartbeat_ShouldOnlyRefreshPresence_WhenNotSignificant() {
+        // Arrange
+        when(heartbeatSignificanceFilter.shouldPersist(any())).thenReturn(false);
+
+        // Act
+        deviceService.updateHeartbeat("GLASS-001", 80, "192.168.1.1", null, null);
+
+        // Assert
+        verify(presenceService).markOnline("GLASS-001");
+        verifyNoInteractions(heartbeatWriteBuffer);
+        verifyNoInteractions(deviceRepository);
+    }
+
+    @Test
+    void updateHeartbeat_ShouldUpdateSynchronously_WhenBufferRejects() {
+        // Arrange
+        when(heartbeatWriteBuffer.offer(any())).thenReturn(false);
+        when(deviceRepository.updateHeartbeat(eq("GLASS-001"), eq(95), eq("192.168.1.1"), isNull(), isNull(), any()))
+                .thenReturn(1);
+
+        // Act
+        deviceService.updateHeartbeat("GLASS-001", 95, "192.168.1.1", null, null);
+
+        // Assert: single UPDATE, the entity is never loaded
+        verify(deviceRepository).updateHeartbeat(eq("GLASS-001"), eq(95), eq("192.168.1.1"), isNull(), isNull(), any());
+        verify(deviceRepository, never()).findBySerialNumber(any());
+        verify(deviceRepository, never()).save(any(Device.class));
+    }
+
+    @Test
+    void updateHeartbeat_ShouldThrow_WhenNoRowUpdated() {
+        // Arrange: still in the near-cache, but the row is gone
+        when(deviceLookupCache.find("GHOST-404")).thenReturn(Optional.of(lookup("GHOST-404")));
+        when(heartbeatWriteBuffer.offer(any())).thenReturn(false);
+        when(deviceRepository.updateHeartbeat(eq("GHOST-404"), any(), any(), any(), any(), any())).thenReturn(0);
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class,
+                () -> deviceService.updateHeartbeat("GHOST-404", 50, "192.168.1.1", null, null));
+        verify(deviceLookupCache).invalidate("GHOST-404");
+    }
 
+    @Test
+    void markDeviceOnline_ShouldUpdateStatusAndRedis() {
         // Act
         deviceService.markDeviceOnline("GLASS-001");
 
         // Assert
-        assertEquals(DeviceStatus.ONLINE, device.getStatus());
-        assertNotNull(device.getConnectTime());
-        verify(valueOperations).set(eq("device:online:GLASS-001"), eq("1"), anyLong(), eq(TimeUnit.SECONDS));
-        verify(deviceRepository).save(device);
+        verify(presenceService).markOnline("GLASS-001");
+        verify(deviceRepository).markOnline(eq("GLASS-001"), any());
+        verify(deviceLookupCache).updateStatus("GLASS-001", DeviceStatus.ONLINE);
+        verify(deviceRepository, never()).findBySerialNumber(any());
+    }
+
+    @Test
+    void updateHeartbeat_ShouldRecordTelemetry_EvenWhenNotSignificant() {
+        // Arrange
+        when(heartbeatSignificanceFilter.shouldPersist(any())).thenReturn(false);
+
+        // Act
+        deviceService.updateHeartbeat("GLASS-001", 77, "127.0.0.1", null, null);
+
+        // Assert
+        verify(telemetryIngestBuffer).offer(argThat(sample ->
+                sample.getDeviceId() == 1L && sample.getBatteryLevel() == 77 && sample.getRecordedAt() != null));
+        verifyNoInteractions(heartbeatWriteBuffer);
+    }
+
+    @Test
+    void updateHeartbeat_ShouldThrow_WhenSerialUnknown() {
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class,
+                () -> deviceService.updateHeartbeat("UNKNOWN-001", 80, "127.0.0.1", null, null));
+        verifyNoInteractions(presenceService, heartbeatWriteBuffer);
+    }
+
+    @Test
+    void updateHeartbeats_ShouldIgnoreUnknownSerials() {
+        // Arrange
+        BatchHeartbeatRequest request = new BatchHeartbeatRequest();
+        request.setHeartbeats(List.of(
+                new DeviceHeartbeatEntry("GLASS-001", "device-token", 60, null, null, null),
+                new DeviceHeartbeatEntry("UNKNOWN-001", "device-token", 70, null, null, null)
+        ));
+        when(heartbeatWriteBuffer.offer(any())).thenReturn(true);
+
+        // Act
+        BatchHeartbeatResponse response = deviceService.updateHeartbeats(request);
+
+        // Assert
+        assertEquals(1, response.getAccepted());
+        assertEquals(1, response.getUnknown());
+        verify(presenceService).markOnline(argThat((Map<String, Instant> lastSeen) -> lastSeen.keySet().equals(Set.of("GLASS-001"))));
     }
 
     @Test
@@ -181,26 +575,62 @@ class DeviceServiceImplTest {
         // Assert
         assertNull(device.getOwner());
         assertEquals(DeviceStatus.OFFLINE, device.getStatus());
-        verify(redisTemplate).delete("device:online:GLASS-001");
+        verify(presenceService).markOffline("GLASS-001");
         verify(deviceRepository).save(device);
+        verify(deviceLookupCache).invalidate("GLASS-001");
+        verify(deviceLocationService).remove("GLASS-001");
+        verify(fleetStatsService).onUnpaired("GLASS-001");
     }
 
     @Test
     void updateHeartbeat_ShouldAlwaysUpdateLastHeartbeat() {
         // Arrange
-        Device mockDevice = new Device();
-        mockDevice.setSerialNumber("GLASS-001");
-        mockDevice.setBatteryLevel(80);
-        when(deviceRepository.findBySerialNumber("GLASS-001"))
-                .thenReturn(Optional.of(mockDevice));
+        when(heartbeatWriteBuffer.offer(any())).thenReturn(true);
 
         // Act
-        deviceService.updateHeartbeat("GLASS-001", 80, "127.0.0.1");
+        deviceService.updateHeartbeat("GLASS-001", 80, "127.0.0.1", null, null);
 
         // Assert
-        verify(deviceRepository).save(argThat(device ->
-                device.getLastHeartbeat() != null && device.getBatteryLevel() == 80
+        verify(heartbeatWriteBuffer).offer(argThat(sample ->
+                sample.getHeartbeatAt() != null && sample.getBatteryLevel() == 80
         ));
     }
 
+    @Test
+    void markDeviceOffline_ShouldPublishDisconnectedEvent() {
+        // Act
+        deviceService.markDeviceOffline("GLASS-001");
+
+        // Assert
+        verify(presenceService).markOffline("GLASS-001");
+        verify(deviceRepository).markOffline(eq("GLASS-001"), any());
+        verify(deviceLookupCache).updateStatus("GLASS-001", DeviceStatus.OFFLINE);
+        verify(eventPublisher).publishEvent(argThat((DeviceDisconnectedEvent event) ->
+                event.serialNumber().equals("GLASS-001") && event.reason() == DeviceDisconnectedEvent.Reason.DISCONNECTED));
+    }
+
+    @Test
+    void markDevicesOnline_ShouldWriteKnownDevicesInOneBatch() {
+        // Act
+        deviceService.markDevicesOnline(List.of("GLASS-001", "GLASS-002", "GHOST-404"));
+
+        // Assert
+        verify(presenceService).markOnline(argThat((Collection<String> serials) ->
+                serials.size() == 2 && serials.containsAll(List.of("GLASS-001", "GLASS-002"))));
+        verify(deviceRepository).markOnline(argThat((Collection<String> serials) -> serials.size() == 2), any());
+        verify(deviceLookupCache).updateStatus("GLASS-002", DeviceStatus.ONLINE);
+        verify(deviceRepository, never()).markOnline(anyString(), any());
+    }
+
+    @Test
+    void markDevicesOffline_ShouldPublishEventPerDevice() {
+        // Act
+        deviceService.markDevicesOffline(List.of("GLASS-001", "GLASS-002"));
+
+        // Assert
+        verify(presenceService).markOffline(argThat((Collection<String> serials) -> serials.size() == 2));
+        verify(deviceRepository).markOfflineIfOnline(argThat(serials -> serials.size() == 2), any());
+        verify(heartbeatSignificanceFilter).evict(argThat((Collection<String> serials) -> serials.size() == 2));
+        verify(eventPublisher, times(2)).publishEvent(any(DeviceDisconnectedEvent.class));
+    }
 }
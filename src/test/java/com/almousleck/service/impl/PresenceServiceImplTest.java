@@ -0,0 +1,163 @@
+package com.almousleck.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.RedisZSetCommands.ZAddArgs;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PresenceServiceImplTest {
+
+    private static final String KEY = "device:presence";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @InjectMocks
+    private PresenceServiceImpl presenceService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(presenceService, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(presenceService, "retentionSeconds", 900L);
+        lenient().when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+    }
+
+    @Test
+    void markOnline_ShouldScoreMemberWithCurrentTime() {
+        long before = System.currentTimeMillis();
+        presenceService.markOnline("GLASS-001");
+
+        ArgumentCaptor<Double> score = ArgumentCaptor.forClass(Double.class);
+        verify(zSetOperations).add(eq(KEY), eq("GLASS-001"), score.capture());
+        assertTrue(score.getValue() >= before);
+    }
+
+    @Test
+    void adjustTtl_ShouldNeverGoBelowConfiguredTtl() {
+        presenceService.adjustTtl(Duration.ofSeconds(150));
+        assertEquals(150, presenceService.presenceTtl().toSeconds());
+
+        presenceService.adjustTtl(Duration.ofSeconds(10));
+        assertEquals(60, presenceService.presenceTtl().toSeconds());
+    }
+
+    @Test
+    void markOffline_ShouldBackdateScoreByOneTtl() {
+        long before = System.currentTimeMillis();
+        presenceService.markOffline("GLASS-001");
+
+        ArgumentCaptor<Double> score = ArgumentCaptor.forClass(Double.class);
+        verify(zSetOperations).add(eq(KEY), eq("GLASS-001"), score.capture());
+        assertTrue(score.getValue() <= System.currentTimeMillis() - 60_000);
+        assertTrue(score.getValue() >= before - 60_000);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void markOnline_ShouldAddWholeBatchWithOneZadd() {
+        presenceService.markOnline(List.of("GLASS-001", "GLASS-002"));
+
+        ArgumentCaptor<Set<ZSetOperations.TypedTuple<String>>> members = ArgumentCaptor.forClass(Set.class);
+        verify(zSetOperations).add(eq(KEY), members.capture());
+        assertEquals(2, members.getValue().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void markOnlineAsOf_ShouldScoreEachBeatTime_WithoutLoweringNewerScores() {
+        RedisConnection connection = mock(RedisConnection.class);
+        RedisZSetCommands zSetCommands = mock(RedisZSetCommands.class);
+        when(connection.zSetCommands()).thenReturn(zSetCommands);
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection));
+        Instant beatAt = Instant.parse("2025-12-26T10:00:00Z");
+
+        presenceService.markOnline(Map.of("GLASS-001", beatAt));
+
+        ArgumentCaptor<Set<Tuple>> members = ArgumentCaptor.forClass(Set.class);
+        ArgumentCaptor<ZAddArgs> args = ArgumentCaptor.forClass(ZAddArgs.class);
+        verify(zSetCommands).zAdd(eq(KEY.getBytes(StandardCharsets.UTF_8)), members.capture(), args.capture());
+        Tuple member = members.getValue().iterator().next();
+        assertEquals("GLASS-001", new String(member.getValue(), StandardCharsets.UTF_8));
+        assertEquals(beatAt.toEpochMilli(), member.getScore());
+        assertTrue(args.getValue().contains(ZAddArgs.Flag.GT)); // A late beat never moves presence back
+    }
+
+    @Test
+    void isOnline_ShouldResolveAllSerialsWithOneZmscore() {
+        double now = System.currentTimeMillis();
+        when(zSetOperations.score(KEY, "GLASS-001", "GLASS-002", "GLASS-003"))
+                .thenReturn(Arrays.asList(now, now - 120_000, null));
+
+        Map<String, Boolean> online = presenceService.isOnline(List.of("GLASS-001", "GLASS-002", "GLASS-003", "GLASS-001"));
+
+        assertEquals(Map.of("GLASS-001", true, "GLASS-002", false, "GLASS-003", false), online);
+        verify(zSetOperations, never()).score(anyString(), anyString());
+    }
+
+    @Test
+    void isOnline_ShouldSkipRedis_WhenNothingToResolve() {
+        assertTrue(presenceService.isOnline(List.of()).isEmpty());
+
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void countOnline_ShouldCountScoresWithinTtl() {
+        long before = System.currentTimeMillis();
+        when(zSetOperations.count(eq(KEY), anyDouble(), eq(Double.POSITIVE_INFINITY))).thenReturn(42L);
+
+        assertEquals(42L, presenceService.countOnline());
+
+        ArgumentCaptor<Double> min = ArgumentCaptor.forClass(Double.class);
+        verify(zSetOperations).count(eq(KEY), min.capture(), eq(Double.POSITIVE_INFINITY));
+        assertTrue(min.getValue() > before - 60_000);
+    }
+
+    @Test
+    void findWentOfflineBetween_ShouldShiftWindowByTtl() {
+        Instant from = Instant.now().minusSeconds(300);
+        Instant to = from.plusSeconds(120);
+        when(zSetOperations.rangeByScore(KEY, from.toEpochMilli() - 60_000d, to.toEpochMilli() - 60_000d))
+                .thenReturn(Set.of("GLASS-001"));
+
+        assertEquals(List.of("GLASS-001"), presenceService.findWentOfflineBetween(from, to));
+    }
+
+    @Test
+    void trimExpired_ShouldRemoveMembersPastRetention() {
+        long before = System.currentTimeMillis();
+        presenceService.trimExpired();
+
+        ArgumentCaptor<Double> max = ArgumentCaptor.forClass(Double.class);
+        verify(zSetOperations).removeRangeByScore(eq(KEY), eq(Double.NEGATIVE_INFINITY), max.capture());
+        assertTrue(max.getValue() <= System.currentTimeMillis() - 960_000);
+        assertTrue(max.getValue() >= before - 960_000);
+    }
+}
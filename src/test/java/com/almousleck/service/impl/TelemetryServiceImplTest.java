@@ -0,0 +1,120 @@
+package com.almousleck.service.impl;
+
+import com.almousleck.dto.telemetry.TelemetryResponse;
+import com.almousleck.enums.DeviceStatus;
+import com.almousleck.enums.TelemetryResolution;
+import com.almousleck.exceptions.ResourceNotFoundException;
+import com.almousleck.exceptions.UnauthorizedDeviceAccessException;
+import com.almousleck.repository.device.DeviceLookup;
+import com.almousleck.repository.telemetry.TelemetryRepository;
+import com.almousleck.service.DeviceLookupCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TelemetryServiceImplTest {
+
+    @Mock
+    private DeviceLookupCache deviceLookupCache;
+    @Mock
+    private TelemetryRepository telemetryRepository;
+
+    @InjectMocks
+    private TelemetryServiceImpl telemetryService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(telemetryService, "rawMaxRangeMinutes", 120L);
+        ReflectionTestUtils.setField(telemetryService, "minuteMaxRangeHours", 48L);
+        ReflectionTestUtils.setField(telemetryService, "maxRangeDays", 366L);
+        ReflectionTestUtils.setField(telemetryService, "rawMaxPoints", 10000);
+        ReflectionTestUtils.setField(telemetryService, "rawRetentionDays", 7L);
+        ReflectionTestUtils.setField(telemetryService, "minuteRetentionDays", 30L);
+        lenient().when(deviceLookupCache.find("GLASS-001"))
+                .thenReturn(Optional.of(new DeviceLookup("GLASS-001", 5L, 1L, DeviceStatus.ONLINE, 0)));
+    }
+
+    @Test
+    void getTelemetry_ShouldReadRawSamples_ForShortRecentRange() {
+        Instant to = Instant.now().minusSeconds(60);
+        Instant from = to.minus(Duration.ofMinutes(30));
+        when(telemetryRepository.findRaw(5L, from, to, 10000)).thenReturn(List.of());
+
+        TelemetryResponse response = telemetryService.getTelemetry("GLASS-001", from, to, 1L);
+
+        assertEquals(TelemetryResolution.RAW, response.getResolution());
+        verify(telemetryRepository, never()).findBuckets(any(), any(), any(), any());
+    }
+
+    @Test
+    void getTelemetry_ShouldReadMinuteBuckets_ForDayRange() {
+        Instant to = Instant.now();
+        Instant from = to.minus(Duration.ofDays(1));
+
+        TelemetryResponse response = telemetryService.getTelemetry("GLASS-001", from, to, 1L);
+
+        assertEquals(TelemetryResolution.MINUTE, response.getResolution());
+        verify(telemetryRepository).findBuckets(eq(TelemetryResolution.MINUTE), eq(5L), eq(from), any());
+        verify(telemetryRepository, never()).findRaw(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getTelemetry_ShouldReadHourBuckets_ForLongRange() {
+        Instant to = Instant.now();
+        Instant from = to.minus(Duration.ofDays(90));
+
+        TelemetryResponse response = telemetryService.getTelemetry("GLASS-001", from, to, 1L);
+
+        assertEquals(TelemetryResolution.HOUR, response.getResolution());
+        verify(telemetryRepository).findBuckets(eq(TelemetryResolution.HOUR), eq(5L), eq(from), any());
+    }
+
+    @Test
+    void getTelemetry_ShouldSkipTiersWhoseRetentionEnded() {
+        // Short range, but raw rows of 10 days ago are already dropped
+        Instant to = Instant.now().minus(Duration.ofDays(10));
+        Instant from = to.minus(Duration.ofMinutes(30));
+
+        TelemetryResponse response = telemetryService.getTelemetry("GLASS-001", from, to, 1L);
+
+        assertEquals(TelemetryResolution.MINUTE, response.getResolution());
+    }
+
+    @Test
+    void getTelemetry_ShouldClampRangeToMaximum() {
+        Instant to = Instant.now();
+
+        TelemetryResponse response = telemetryService.getTelemetry("GLASS-001", to.minus(Duration.ofDays(1000)), to, 1L);
+
+        assertEquals(Duration.ofDays(366), Duration.between(response.getFrom(), response.getTo()));
+    }
+
+    @Test
+    void getTelemetry_ShouldThrow_WhenUserIsNotOwner() {
+        assertThrows(UnauthorizedDeviceAccessException.class,
+                () -> telemetryService.getTelemetry("GLASS-001", null, null, 2L));
+        verifyNoInteractions(telemetryRepository);
+    }
+
+    @Test
+    void getTelemetry_ShouldThrow_WhenDeviceUnknown() {
+        when(deviceLookupCache.find("GLASS-404")).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> telemetryService.getTelemetry("GLASS-404", null, null, 1L));
+    }
+}
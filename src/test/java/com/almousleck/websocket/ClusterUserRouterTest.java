@@ -0,0 +1,411 @@
+package com.almousleck.websocket;
+
+import com.almousleck.dto.signal.SignalMessage;
+import com.almousleck.service.DeviceService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.DefaultSimpUserRegistry;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Two routers in one JVM, each with its own session registry and broker, sharing an in-memory
+ * stand-in for the Redis sets, sorted set and pub/sub channels they use.
+ */
+class ClusterUserRouterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private RedisStandIn redis;
+    private Node nodeA;
+    private Node nodeB;
+
+    @BeforeEach
+    void setUp() {
+        redis = new RedisStandIn();
+        nodeA = new Node();
+        nodeB = new Node();
+    }
+
+    @Test
+    void convertAndSendToUser_ShouldReachUserConnectedToOtherNode() {
+        nodeB.connect("s1", "alice");
+
+        nodeA.router.convertAndSendToUser("alice", "/queue/notifications", signal("TURN_LEFT"));
+
+        JsonNode delivered = nodeB.deliveredTo("alice");
+        assertEquals("TURN_LEFT", delivered.get("action").asText());
+        assertEquals("2025-12-26T10:00:00Z", delivered.get("timestamp").asText());
+        verify(nodeA.broker, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+        assertEquals(List.of(nodeB.router.getNodeId()), redis.published);
+    }
+
+    @Test
+    void convertAndSendToUser_ShouldDeliverLocally_WithoutPublishing() {
+        nodeA.connect("s1", "alice");
+
+        nodeA.router.convertAndSendToUser("alice", "/queue/notifications", signal("WARN"));
+
+        assertEquals("WARN", nodeA.deliveredTo("alice").get("action").asText());
+        assertTrue(redis.published.isEmpty());
+    }
+
+    @Test
+    void convertAndSendToUser_ShouldQueueMessage_WhenLocalUserHasNotSubscribedYet() {
+        nodeA.open("s1", "alice");
+
+        nodeA.router.convertAndSendToUser("alice", "/queue/notifications", signal("TURN_LEFT"));
+
+        verify(nodeA.offlineQueue).enqueue(eq("alice"), eq("/queue/notifications"),
+                argThat((JsonNode payload) -> "TURN_LEFT".equals(payload.get("action").asText())));
+        verify(nodeA.broker, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+
+        nodeA.subscribe("s1", "alice", "/user/queue/notifications");
+        nodeA.router.convertAndSendToUser("alice", "/queue/notifications", signal("WARN"));
+
+        assertEquals("WARN", nodeA.deliveredTo("alice").get("action").asText());
+        verify(nodeA.offlineQueue, times(1)).enqueue(anyString(), anyString(), any(JsonNode.class));
+    }
+
+    @Test
+    void convertAndSendToUser_ShouldQueueMessage_WhenSubscribedToAnotherDestinationOnly() {
+        nodeA.open("s1", "alice");
+        nodeA.subscribe("s1", "alice", "/user/queue/alerts");
+
+        nodeA.router.convertAndSendToUser("alice", "/queue/notifications", signal("WARN"));
+
+        verify(nodeA.offlineQueue).enqueue(eq("alice"), eq("/queue/notifications"), any(JsonNode.class));
+        verify(nodeA.broker, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+    }
+
+    @Test
+    void onMessage_ShouldQueueMessage_WhenRemoteUserHasNotSubscribedYet() {
+        nodeB.open("s1", "alice");
+
+        nodeA.router.convertAndSendToUser("alice", "/queue/notifications", signal("WARN"));
+
+        verify(nodeB.offlineQueue).enqueue(eq("alice"), eq("/queue/notifications"), any(JsonNode.class));
+        verify(nodeB.broker, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+        verify(nodeA.offlineQueue, never()).enqueue(anyString(), anyString(), any(JsonNode.class));
+    }
+
+    @Test
+    void convertAndSendToUser_ShouldReachEveryNodeOfUser_AndOnlyThose() {
+        Node nodeC = new Node();
+        nodeA.connect("s1", "alice");
+        nodeB.connect("s2", "alice");
+
+        nodeC.router.convertAndSendToUser("alice", "/queue/notifications", signal("WARN"));
+
+        nodeA.deliveredTo("alice");
+        nodeB.deliveredTo("alice");
+        assertEquals(2, redis.published.size());
+        verify(nodeC.broker, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+    }
+
+    @Test
+    void flushRoutes_ShouldReleaseClaim_WhenLastSessionCloses() {
+        nodeB.connect("s1", "alice");
+        nodeB.disconnect("s1", "alice");
+
+        nodeA.router.convertAndSendToUser("alice", "/queue/notifications", signal("WARN"));
+
+        assertTrue(redis.published.isEmpty());
+        assertTrue(redis.sets.getOrDefault("ws:route:alice", Set.of()).isEmpty());
+    }
+
+    @Test
+    void convertAndSendToUser_ShouldDropClaimOfDeadNode() {
+        nodeB.connect("s1", "alice");
+        redis.zsets.get("ws:nodes").put(nodeB.router.getNodeId(), (double) System.currentTimeMillis() - 60_000);
+        nodeA.router.beat();
+
+        nodeA.router.convertAndSendToUser("alice", "/queue/notifications", signal("WARN"));
+
+        assertTrue(redis.published.isEmpty());
+        assertFalse(redis.sets.get("ws:route:alice").contains(nodeB.router.getNodeId()));
+    }
+
+    @Test
+    void convertAndSendToUser_ShouldQueueMessage_WhenUserHasNoSessionAnywhere() {
+        nodeA.router.convertAndSendToUser("alice", "/queue/notifications", signal("TURN_LEFT"));
+
+        verify(nodeA.offlineQueue).enqueue(eq("alice"), eq("/queue/notifications"),
+                argThat((JsonNode payload) -> "TURN_LEFT".equals(payload.get("action").asText())));
+        verify(nodeA.broker, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+    }
+
+    @Test
+    void onMessage_ShouldQueueMessage_WhenUserLeftBeforeItArrived() {
+        nodeB.connect("s1", "alice");
+        nodeB.registry.onDisconnect(disconnectEvent("s1", "alice")); // Claim not released yet
+
+        nodeA.router.convertAndSendToUser("alice", "/queue/notifications", signal("WARN"));
+
+        verify(nodeB.offlineQueue).enqueue(eq("alice"), eq("/queue/notifications"), any(JsonNode.class));
+        verify(nodeA.offlineQueue, never()).enqueue(anyString(), anyString(), any(JsonNode.class));
+    }
+
+    @Test
+    void convertAndSendToUser_ShouldDropClaimAndQueue_WhenNoOneListensOnTheNodesChannel() {
+        nodeB.connect("s1", "alice");
+        redis.channels.remove("ws:node:" + nodeB.router.getNodeId()); // Node B restarted, its claim survived
+
+        nodeA.router.convertAndSendToUser("alice", "/queue/notifications", signal("WARN"));
+
+        verify(nodeA.offlineQueue).enqueue(eq("alice"), eq("/queue/notifications"), any(JsonNode.class));
+        assertFalse(redis.sets.get("ws:route:alice").contains(nodeB.router.getNodeId()));
+    }
+
+    @Test
+    void convertAndSendToUser_ShouldQueueMessage_WhenRouteLookupFailsAndUserIsNotLocal() {
+        when(redis.setOps.members("ws:route:alice")).thenThrow(new RedisConnectionFailureException("Redis down"));
+
+        nodeA.router.convertAndSendToUser("alice", "/queue/notifications", signal("WARN"));
+
+        verify(nodeA.offlineQueue).enqueue(eq("alice"), eq("/queue/notifications"), any(JsonNode.class));
+    }
+
+    @Test
+    void convertAndSendToUser_ShouldNotQueue_WhenRouteLookupFailsButUserIsLocal() {
+        nodeA.connect("s1", "alice");
+        when(redis.setOps.members("ws:route:alice")).thenThrow(new RedisConnectionFailureException("Redis down"));
+
+        nodeA.router.convertAndSendToUser("alice", "/queue/notifications", signal("WARN"));
+
+        nodeA.deliveredTo("alice");
+        verify(nodeA.offlineQueue, never()).enqueue(anyString(), anyString(), any(JsonNode.class));
+    }
+
+    @Test
+    void flushRoutes_ShouldGiveTheRouteSetATtl_WhenClaimingUser() {
+        nodeB.connect("s1", "alice");
+
+        verify(redis.template).expire("ws:route:alice", Duration.ofSeconds(3600));
+    }
+
+    @Test
+    void beat_ShouldReclaimLocalUsersAndExtendTheirTtl_EveryHalfTtl() {
+        nodeB.connect("s1", "alice");
+        ReflectionTestUtils.setField(nodeB.router, "lastRouteRefreshMillis", System.currentTimeMillis() - 1_800_000);
+        RedisConnection connection = mock(RedisConnection.class, RETURNS_DEEP_STUBS);
+        when(redis.template.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection);
+            return List.of();
+        });
+
+        nodeB.router.beat();
+        nodeB.router.beat(); // Not due again
+
+        byte[] key = "ws:route:alice".getBytes(StandardCharsets.UTF_8);
+        verify(connection.setCommands()).sAdd(key, nodeB.router.getNodeId().getBytes(StandardCharsets.UTF_8));
+        verify(connection.keyCommands()).expire(key, 3600L);
+        verify(redis.template, times(1)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void flushRoutes_ShouldReplayOfflineMessages_WhenClaimingUser() {
+        nodeB.connect("s1", "alice");
+
+        verify(nodeB.offlineQueue).replay("alice");
+    }
+
+    // Helper methods
+    private static SessionDisconnectEvent disconnectEvent(String sessionId, String username) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        accessor.setSessionId(sessionId);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        return new SessionDisconnectEvent(ClusterUserRouterTest.class, message, sessionId, CloseStatus.NORMAL,
+                new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+
+    private static SignalMessage signal(String action) {
+        return SignalMessage.builder()
+                .type("NAVIGATION")
+                .action(action)
+                .timestamp(Instant.parse("2025-12-26T10:00:00Z"))
+                .build();
+    }
+
+    private final class Node {
+        final WebSocketSessionRegistry registry;
+        final DefaultSimpUserRegistry users = new DefaultSimpUserRegistry();
+        final SimpMessagingTemplate broker = mock(SimpMessagingTemplate.class);
+        final OfflineMessageQueue offlineQueue = mock(OfflineMessageQueue.class);
+        final ClusterUserRouter router;
+
+        Node() {
+            registry = new WebSocketSessionRegistry(mock(DeviceService.class), new SimpleMeterRegistry());
+            ReflectionTestUtils.setField(registry, "presenceBatchSize", 100);
+            registry.init();
+            router = new ClusterUserRouter(registry, users, offlineQueue, broker, redis.template, redis.container, objectMapper,
+                    new SimpleMeterRegistry());
+            ReflectionTestUtils.setField(router, "nodeTimeoutMillis", 15_000L);
+            ReflectionTestUtils.setField(router, "routeTtlSeconds", 3600L);
+            router.init();
+        }
+
+        // Connected and subscribed to /user/queue/notifications
+        void connect(String sessionId, String username) {
+            open(sessionId, username);
+            subscribe(sessionId, username, "/user/queue/notifications");
+        }
+
+        void open(String sessionId, String username) {
+            StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+            accessor.setSessionId(sessionId);
+            accessor.setSessionAttributes(new HashMap<>());
+            Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+            SessionConnectEvent event = new SessionConnectEvent(this, message, user(username));
+            registry.onConnect(event);
+            router.onConnect(event);
+            router.flushRoutes();
+            users.onApplicationEvent(new SessionConnectedEvent(this, headers(SimpMessageType.CONNECT_ACK, sessionId, null),
+                    user(username)));
+        }
+
+        void subscribe(String sessionId, String username, String destination) {
+            users.onApplicationEvent(new SessionSubscribeEvent(this, headers(SimpMessageType.SUBSCRIBE, sessionId, destination),
+                    user(username)));
+        }
+
+        void disconnect(String sessionId, String username) {
+            SessionDisconnectEvent event = disconnectEvent(sessionId, username);
+            registry.onDisconnect(event);
+            router.onDisconnect(event);
+            router.flushRoutes();
+            users.onApplicationEvent(event);
+        }
+
+        JsonNode deliveredTo(String username) {
+            JsonNode[] delivered = new JsonNode[1];
+            verify(broker).convertAndSendToUser(eq(username), eq("/queue/notifications"),
+                    argThat((Object payload) -> (delivered[0] = (JsonNode) payload) != null));
+            return delivered[0];
+        }
+
+        private Principal user(String username) {
+            return new UsernamePasswordAuthenticationToken(username, null, List.of());
+        }
+
+        private Message<byte[]> headers(SimpMessageType type, String sessionId, String destination) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+            accessor.setSessionId(sessionId);
+            if (destination != null) {
+                accessor.setDestination(destination);
+                accessor.setSubscriptionId(destination);
+            }
+            return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        }
+    }
+
+    // Just the Redis commands the router uses, shared by every node of the test
+    @SuppressWarnings("unchecked")
+    private static final class RedisStandIn {
+        final Map<String, Set<String>> sets = new ConcurrentHashMap<>();
+        final Map<String, Map<String, Double>> zsets = new ConcurrentHashMap<>();
+        final Map<String, MessageListener> channels = new ConcurrentHashMap<>();
+        final List<String> published = new ArrayList<>(); // Target node of each publish
+
+        final StringRedisTemplate template = mock(StringRedisTemplate.class);
+        final RedisMessageListenerContainer container = mock(RedisMessageListenerContainer.class);
+        final SetOperations<String, String> setOps = mock(SetOperations.class);
+
+        RedisStandIn() {
+            ZSetOperations<String, String> zSetOps = mock(ZSetOperations.class);
+            when(template.opsForSet()).thenReturn(setOps);
+            when(template.opsForZSet()).thenReturn(zSetOps);
+
+            when(setOps.add(anyString(), any(String[].class))).thenAnswer(invocation -> {
+                set(invocation.getArgument(0)).add(invocation.getArgument(1));
+                return 1L;
+            });
+            when(setOps.remove(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+                set(invocation.getArgument(0)).remove(invocation.<Object>getArgument(1));
+                return 1L;
+            });
+            when(setOps.members(anyString())).thenAnswer(invocation -> Set.copyOf(set(invocation.getArgument(0))));
+
+            when(zSetOps.add(anyString(), anyString(), anyDouble())).thenAnswer(invocation -> {
+                zset(invocation.getArgument(0)).put(invocation.getArgument(1), invocation.getArgument(2));
+                return true;
+            });
+            when(zSetOps.removeRangeByScore(anyString(), anyDouble(), anyDouble())).thenAnswer(invocation -> {
+                double min = invocation.getArgument(1), max = invocation.getArgument(2);
+                zset(invocation.getArgument(0)).values().removeIf(score -> score >= min && score <= max);
+                return 0L;
+            });
+            when(zSetOps.rangeByScore(anyString(), anyDouble(), anyDouble())).thenAnswer(invocation -> {
+                double min = invocation.getArgument(1), max = invocation.getArgument(2);
+                Set<String> result = new HashSet<>();
+                zset(invocation.getArgument(0)).forEach((member, score) -> {
+                    if (score >= min && score <= max) result.add(member);
+                });
+                return result;
+            });
+
+            doAnswer(invocation -> {
+                ChannelTopic topic = invocation.getArgument(1);
+                channels.put(topic.getTopic(), invocation.getArgument(0));
+                return null;
+            }).when(container).addMessageListener(any(MessageListener.class), any(ChannelTopic.class));
+
+            when(template.convertAndSend(anyString(), anyString())).thenAnswer(invocation -> {
+                String channel = invocation.getArgument(0);
+                published.add(channel.substring("ws:node:".length()));
+                MessageListener listener = channels.get(channel);
+                if (listener == null) return 0L;
+                listener.onMessage(new DefaultMessage(channel.getBytes(StandardCharsets.UTF_8),
+                        invocation.<String>getArgument(1).getBytes(StandardCharsets.UTF_8)), null);
+                return 1L;
+            });
+        }
+
+        private Set<String> set(String key) {
+            return sets.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+        }
+
+        private Map<String, Double> zset(String key) {
+            return zsets.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+        }
+    }
+}
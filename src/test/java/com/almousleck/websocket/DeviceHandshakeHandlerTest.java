@@ -0,0 +1,26 @@
+package com.almousleck.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviceHandshakeHandlerTest {
+
+    @Test
+    void withoutExtensions_ShouldHideTheDeflateOffer_AndKeepOtherHeaders() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ws/device");
+        request.addHeader("Upgrade", "websocket");
+        request.addHeader("Sec-WebSocket-Extensions", "permessage-deflate; client_max_window_bits");
+
+        DeviceHandshakeHandler.WithoutExtensions upgrade = new DeviceHandshakeHandler.WithoutExtensions(request);
+
+        assertNull(upgrade.getHeader("sec-websocket-extensions"));
+        assertFalse(upgrade.getHeaders("Sec-WebSocket-Extensions").hasMoreElements());
+        assertEquals(List.of("Upgrade"), Collections.list(upgrade.getHeaderNames()));
+        assertEquals("websocket", upgrade.getHeader("Upgrade"));
+    }
+}
@@ -0,0 +1,143 @@
+package com.almousleck.websocket;
+
+import com.almousleck.exceptions.HandshakeRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HandshakeAdmissionControllerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private HandshakeAdmissionController controller;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        controller = newController(10, 2, 60);
+    }
+
+    @Test
+    void tryAdmit_ShouldOnlyAdmitInitialLimit_DuringWarmup() {
+        assertEquals(2, controller.currentLimit());
+        assertTrue(controller.tryAdmit());
+        assertTrue(controller.tryAdmit());
+
+        assertFalse(controller.tryAdmit());
+        assertEquals(1, meterRegistry.get("websocket.handshake.rejected").tag("reason", "busy").counter().count());
+        assertEquals(2, meterRegistry.get("websocket.handshake.admitted").counter().count());
+        assertEquals(2, meterRegistry.get("websocket.handshake.in-flight").gauge().value());
+    }
+
+    @Test
+    void release_ShouldFreeSlotForNextHandshake() {
+        assertTrue(controller.tryAdmit());
+        assertTrue(controller.tryAdmit());
+
+        controller.release();
+
+        assertTrue(controller.tryAdmit());
+    }
+
+    @Test
+    void rampUp_ShouldReachMaxConcurrent_OnceWarmupElapsed() {
+        ReflectionTestUtils.setField(controller, "startedAtNanos", System.nanoTime() - 30_000_000_000L);
+        controller.rampUp();
+        assertEquals(6, controller.currentLimit());
+
+        ReflectionTestUtils.setField(controller, "startedAtNanos", System.nanoTime() - 120_000_000_000L);
+        controller.rampUp();
+        assertEquals(10, controller.currentLimit());
+        for (int i = 0; i < 10; i++) assertTrue(controller.tryAdmit());
+        assertFalse(controller.tryAdmit());
+    }
+
+    @Test
+    void rampUp_ShouldNotLoseAdmittedSlots() {
+        assertTrue(controller.tryAdmit());
+        ReflectionTestUtils.setField(controller, "startedAtNanos", System.nanoTime() - 120_000_000_000L);
+        controller.rampUp();
+        controller.release();
+
+        assertEquals(10, controller.currentLimit());
+        assertEquals(10.0, meterRegistry.get("websocket.handshake.limit").gauge().value());
+        assertEquals(0.0, meterRegistry.get("websocket.handshake.in-flight").gauge().value());
+    }
+
+    @Test
+    void retryAfterSeconds_ShouldStayWithinBounds() {
+        for (int i = 0; i < 1000; i++) {
+            int seconds = controller.retryAfterSeconds();
+            assertTrue(seconds >= 1 && seconds <= 30, "retry-after " + seconds);
+        }
+    }
+
+    @Test
+    void isSaturated_ShouldBeFalse_WhenSlotsAreFree() {
+        assertFalse(controller.isSaturated());
+    }
+
+    @Test
+    void isSaturated_ShouldBeTrue_WhenEverySlotIsTaken_AndConnectsCannotWait() {
+        assertTrue(controller.tryAdmit());
+        assertTrue(controller.tryAdmit());
+
+        assertTrue(controller.isSaturated());
+    }
+
+    @Test
+    void init_ShouldCapWaitingConnects_ToAQuarterOfTheContainerThreads() {
+        HandshakeAdmissionController waiting = new HandshakeAdmissionController(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(waiting, "maxConcurrent", 10);
+        ReflectionTestUtils.setField(waiting, "initialConcurrent", 10);
+        ReflectionTestUtils.setField(waiting, "maxQueued", 200);
+        ReflectionTestUtils.setField(waiting, "maxWaitMillis", 50L);
+        ReflectionTestUtils.setField(waiting, "containerThreads", 200);
+
+        waiting.init();
+
+        assertEquals(50, ReflectionTestUtils.getField(waiting, "maxQueued"));
+    }
+
+    @Test
+    void errorHandler_ShouldCarryRetryAfter_WhenConnectIsRejected() {
+        HandshakeRejectionErrorHandler handler = new HandshakeRejectionErrorHandler();
+        Message<byte[]> connect = connectMessage();
+
+        Message<byte[]> error = handler.handleClientMessageProcessingError(connect,
+                new MessageDeliveryException(connect, new HandshakeRejectedException("Server busy, retry later", 7)));
+
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(error);
+        assertEquals(StompCommand.ERROR, accessor.getCommand());
+        assertEquals("7", accessor.getFirstNativeHeader("retry-after"));
+        assertEquals("Server busy, retry later", accessor.getMessage());
+    }
+
+    // Helper methods
+    private HandshakeAdmissionController newController(int maxConcurrent, int initialConcurrent, long warmupSeconds) {
+        HandshakeAdmissionController admission = new HandshakeAdmissionController(meterRegistry);
+        ReflectionTestUtils.setField(admission, "maxConcurrent", maxConcurrent);
+        ReflectionTestUtils.setField(admission, "initialConcurrent", initialConcurrent);
+        ReflectionTestUtils.setField(admission, "warmupSeconds", warmupSeconds);
+        ReflectionTestUtils.setField(admission, "maxQueued", 200);
+        ReflectionTestUtils.setField(admission, "maxWaitMillis", 0L);
+        ReflectionTestUtils.setField(admission, "containerThreads", 200);
+        ReflectionTestUtils.setField(admission, "retryAfterBaseSeconds", 2);
+        ReflectionTestUtils.setField(admission, "retryAfterMaxSeconds", 30);
+        admission.init();
+        return admission;
+    }
+
+    private Message<byte[]> connectMessage() {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId("s1");
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,194 @@
+package com.almousleck.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InboundPriorityLanesTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private InboundPriorityLanes lanes;
+    private final CountDownLatch releaseBulk = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        lanes = new InboundPriorityLanes(meterRegistry);
+        ReflectionTestUtils.setField(lanes, "priorityTypes", Set.of("EMERGENCY", "VOICE_COMMAND"));
+        ReflectionTestUtils.setField(lanes, "bulkTypes", Set.of("OBJECT_DETECTION", "TEXT_RECOGNITION"));
+        ReflectionTestUtils.setField(lanes, "priorityThreads", 1);
+        ReflectionTestUtils.setField(lanes, "priorityQueueCapacity", 10);
+        ReflectionTestUtils.setField(lanes, "defaultThreads", 1);
+        ReflectionTestUtils.setField(lanes, "defaultQueueCapacity", 10);
+        ReflectionTestUtils.setField(lanes, "bulkThreads", 1);
+        ReflectionTestUtils.setField(lanes, "bulkQueueCapacity", 5);
+        ReflectionTestUtils.setField(lanes, "bulkMaxWaitMillis", 2000L);
+        lanes.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseBulk.countDown();
+        lanes.shutdown();
+    }
+
+    @Test
+    void classify_ShouldReadTypeFromHeader_OrTopLevelField() {
+        assertEquals(InboundPriorityLanes.Lane.PRIORITY, lanes.classify(send("{}", "EMERGENCY")));
+        assertEquals(InboundPriorityLanes.Lane.PRIORITY,
+                lanes.classify(send("{\"action\":\"HELP\",\"payload\":{\"type\":\"x\"},\"type\":\"VOICE_COMMAND\"}", null)));
+        assertEquals(InboundPriorityLanes.Lane.BULK, lanes.classify(send("{\"type\":\"OBJECT_DETECTION\"}", null)));
+        assertEquals(InboundPriorityLanes.Lane.DEFAULT, lanes.classify(send("{\"type\":\"NAVIGATION\"}", null)));
+        assertEquals(InboundPriorityLanes.Lane.DEFAULT, lanes.classify(send("not json", null)));
+    }
+
+    @Test
+    void classify_ShouldReadTypeFromCborBody() throws Exception {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setDestination("/app/signal");
+        accessor.setContentType(SignalWireFormat.CBOR);
+        byte[] body = new ObjectMapper(new CBORFactory()).writeValueAsBytes(Map.of("type", "EMERGENCY"));
+
+        assertEquals(InboundPriorityLanes.Lane.PRIORITY,
+                lanes.classify(MessageBuilder.createMessage(body, accessor.getMessageHeaders())));
+    }
+
+    @Test
+    void classify_ShouldKeepControlFramesOnDefaultLane() {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setDestination("/app/signal");
+        accessor.setNativeHeader(InboundPriorityLanes.SIGNAL_TYPE_HEADER, "EMERGENCY");
+
+        assertEquals(InboundPriorityLanes.Lane.DEFAULT,
+                lanes.classify(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders())));
+    }
+
+    @Test
+    void execute_ShouldRunEmergency_WhileBulkLaneIsFlooded() throws Exception {
+        // One bulk frame holds the only bulk thread, the rest fill its queue and overflow
+        for (int i = 0; i < 20; i++) lanes.execute(task(send("{\"type\":\"OBJECT_DETECTION\"}", null), this::awaitBulkRelease));
+
+        CountDownLatch emergencyHandled = new CountDownLatch(1);
+        lanes.execute(task(send("{\"type\":\"EMERGENCY\"}", null), emergencyHandled::countDown));
+
+        assertTrue(emergencyHandled.await(1, TimeUnit.SECONDS));
+        assertEquals(14, meterRegistry.get("websocket.inbound.shed").tag("lane", "bulk").counter().count());
+        assertEquals(5, meterRegistry.get("websocket.inbound.queue").tag("lane", "bulk").gauge().value());
+        assertEquals(1, meterRegistry.get("websocket.inbound.wait").tag("lane", "priority").timer().count());
+    }
+
+    @Test
+    void execute_ShouldRunOnCaller_WhenDefaultLaneIsFull() {
+        CountDownLatch releaseDefault = new CountDownLatch(1);
+        Runnable blocked = () -> await(releaseDefault);
+        for (int i = 0; i < 11; i++) lanes.execute(task(send("{\"type\":\"NAVIGATION\"}", null), blocked));
+
+        Thread[] ranOn = new Thread[1];
+        lanes.execute(task(send("{\"type\":\"NAVIGATION\"}", null), () -> ranOn[0] = Thread.currentThread()));
+        releaseDefault.countDown();
+
+        assertSame(Thread.currentThread(), ranOn[0]); // Never dropped
+        assertEquals(1, meterRegistry.get("websocket.inbound.caller-runs").tag("lane", "default").counter().count());
+    }
+
+    @Test
+    void execute_ShouldShedStaleBulkFrames() throws Exception {
+        ReflectionTestUtils.setField(lanes, "bulkMaxWaitMillis", 50L);
+        lanes.shutdown();
+        lanes.init();
+
+        CountDownLatch stale = new CountDownLatch(1);
+        lanes.execute(task(send("{\"type\":\"TEXT_RECOGNITION\"}", null), this::awaitBulkRelease));
+        lanes.execute(task(send("{\"type\":\"TEXT_RECOGNITION\"}", null), stale::countDown));
+        Thread.sleep(100);
+        releaseBulk.countDown();
+
+        assertFalse(stale.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, meterRegistry.get("websocket.inbound.shed").tag("lane", "bulk").counter().count());
+    }
+
+    @Test
+    void execute_ShouldKeepSessionOrder_AndBoundBulk_OnVirtualThreads() throws Exception {
+        ReflectionTestUtils.setField(lanes, "virtualThreads", true);
+        lanes.shutdown();
+        lanes.init();
+
+        for (int i = 0; i < 10; i++) lanes.execute(task(send("{\"type\":\"OBJECT_DETECTION\"}", null), this::awaitBulkRelease));
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            int sequence = i;
+            lanes.execute(task(send("{\"type\":\"NAVIGATION\"}", null), () -> {
+                handled.add(sequence);
+                done.countDown();
+            }));
+        }
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(IntStream.range(0, 20).boxed().toList(), handled);
+        assertEquals(5, meterRegistry.get("websocket.inbound.shed").tag("lane", "bulk").counter().count());
+    }
+
+    // Helper methods
+    private static Message<byte[]> send(String body, String signalType) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setSessionId("session-1");
+        accessor.setDestination("/app/signal");
+        if (signalType != null) accessor.setNativeHeader(InboundPriorityLanes.SIGNAL_TYPE_HEADER, signalType);
+        return MessageBuilder.createMessage(body.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+
+    // What ExecutorSubscribableChannel hands the executor for each subscribed handler
+    private static Runnable task(Message<?> message, Runnable handling) {
+        return new MessageHandlingRunnable() {
+            @Override
+            public Message<?> getMessage() {
+                return message;
+            }
+
+            @Override
+            public MessageHandler getMessageHandler() {
+                return m -> handling.run();
+            }
+
+            @Override
+            public void run() {
+                handling.run();
+            }
+        };
+    }
+
+    private void awaitBulkRelease() {
+        await(releaseBulk);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.almousleck.websocket;
+
+import com.almousleck.config.server.OfflineQueueConfig;
+import com.almousleck.dto.signal.SignalMessage;
+import com.almousleck.service.RedisLock;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.user.*;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs against an in-memory stand-in for the Redis stream commands the queue uses.
+ */
+@SuppressWarnings("unchecked")
+class OfflineMessageQueueTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<MapRecord<String, Object, Object>> stream = new ArrayList<>();
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final SimpUserRegistry userRegistry = mock(SimpUserRegistry.class);
+    private final StringRedisTemplate template = mock(StringRedisTemplate.class);
+    private final ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+
+    private OfflineQueueConfig config;
+    private OfflineMessageQueue queue;
+    private long sequence;
+
+    @BeforeEach
+    void setUp() {
+        StreamOperations<String, Object, Object> streamOps = mock(StreamOperations.class);
+        when(template.opsForStream()).thenReturn(streamOps);
+        when(template.opsForValue()).thenReturn(valueOps);
+        when(valueOps.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+
+        when(streamOps.add(any(MapRecord.class), any())).thenAnswer(invocation -> {
+            MapRecord<String, Object, Object> record = invocation.getArgument(0);
+            RecordId id = RecordId.of(++sequence + "-0");
+            stream.add(record.withId(id));
+            return id;
+        });
+        when(streamOps.range(anyString(), any(), any())).thenAnswer(invocation -> List.copyOf(stream));
+        when(streamOps.delete(anyString(), any(RecordId[].class))).thenAnswer(invocation -> {
+            Set<RecordId> ids = Set.of(Arrays.copyOfRange(invocation.getArguments(), 1, invocation.getArguments().length,
+                    RecordId[].class));
+            stream.removeIf(record -> ids.contains(record.getId()));
+            return (long) ids.size();
+        });
+
+        config = new OfflineQueueConfig();
+        config.setBatchSize(2);
+        config.setTtlSeconds(Map.of("OBJECT_DETECTION", 0L, "NAVIGATION", 120L));
+        queue = new OfflineMessageQueue(config, template, new RedisLock(template), messagingTemplate, userRegistry,
+                mock(AbstractSubscribableChannel.class), objectMapper, new SimpleMeterRegistry());
+        queue.init();
+    }
+
+    @Test
+    void replay_ShouldDeliverInOrderInBatches_ThenDelete() {
+        for (int i = 1; i <= 5; i++) queue.enqueue("alice", "/queue/notifications", signal("NAVIGATION", "STEP_" + i));
+        subscribed("alice", "/user/queue/notifications");
+
+        queue.replay("alice");
+
+        ArgumentCaptor<SignalMessage> frames = ArgumentCaptor.forClass(SignalMessage.class);
+        verify(messagingTemplate, times(3)).convertAndSendToUser(eq("alice"), eq("/queue/notifications"), frames.capture());
+        List<String> actions = new ArrayList<>();
+        for (SignalMessage frame : frames.getAllValues()) {
+            assertEquals("OFFLINE_BATCH", frame.getType());
+            for (JsonNode message : (List<JsonNode>) frame.getPayload().get("messages")) actions.add(message.get("action").asText());
+        }
+        assertEquals(List.of("STEP_1", "STEP_2", "STEP_3", "STEP_4", "STEP_5"), actions);
+        assertTrue(stream.isEmpty());
+    }
+
+    @Test
+    void replay_ShouldKeepMessagesForDestinationsNotSubscribed() {
+        queue.enqueue("alice", "/queue/notifications", signal("NAVIGATION", "TURN_LEFT"));
+        queue.enqueue("alice", "/queue/alerts", signal("EMERGENCY", "FALL_DETECTED"));
+        subscribed("alice", "/user/queue/notifications");
+
+        queue.replay("alice");
+
+        assertEquals(1, stream.size());
+        assertEquals("/queue/alerts", stream.get(0).getValue().get("destination"));
+    }
+
+    @Test
+    void replay_ShouldDropExpiredMessagesUnsent() {
+        queue.enqueue("alice", "/queue/notifications", signal("NAVIGATION", "TURN_LEFT"));
+        // Queued a while ago: expiry already passed
+        Map<Object, Object> fields = new HashMap<>(stream.get(0).getValue());
+        fields.put("expiresAt", String.valueOf(System.currentTimeMillis() - 1));
+        stream.set(0, MapRecord.create("ws:offline:alice", fields).withId(stream.get(0).getId()));
+        subscribed("alice", "/user/queue/notifications");
+
+        queue.replay("alice");
+
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+        assertTrue(stream.isEmpty());
+    }
+
+    @Test
+    void enqueue_ShouldSkipTypesWithoutTtl() {
+        queue.enqueue("alice", "/queue/notifications", signal("OBJECT_DETECTION", "DETECTED"));
+
+        assertTrue(stream.isEmpty());
+    }
+
+    @Test
+    void replay_ShouldSkip_WhenAnotherNodeHoldsTheLock() {
+        queue.enqueue("alice", "/queue/notifications", signal("NAVIGATION", "TURN_LEFT"));
+        subscribed("alice", "/user/queue/notifications");
+        when(valueOps.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+
+        queue.replay("alice");
+
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+        assertEquals(1, stream.size());
+        verify(template, never()).execute(any(RedisScript.class), anyList(), any());
+    }
+
+    @Test
+    void replay_ShouldReleaseTheLockOnlyWithItsOwnToken() {
+        queue.enqueue("alice", "/queue/notifications", signal("NAVIGATION", "TURN_LEFT"));
+        subscribed("alice", "/user/queue/notifications");
+
+        queue.replay("alice");
+
+        // Compare-and-delete: a replay that outlived the timeout cannot remove another node's lock
+        ArgumentCaptor<String> token = ArgumentCaptor.forClass(String.class);
+        verify(valueOps).setIfAbsent(eq("ws:offline:lock:alice"), token.capture(), any(Duration.class));
+        verify(template).execute(any(RedisScript.class), eq(List.of("ws:offline:lock:alice")), eq(token.getValue()));
+        verify(template, never()).delete(anyString());
+    }
+
+    @Test
+    void afterMessageHandled_ShouldReplayTheFramesDestination_BeforeTheRegistryHasSeenTheSubscription() {
+        queue.enqueue("alice", "/queue/notifications", signal("NAVIGATION", "TURN_LEFT"));
+        // The SessionSubscribeEvent that updates the user registry has not been handled yet
+        when(userRegistry.getUser("alice")).thenReturn(null);
+        Message<byte[]> subscribe = subscribeFrame("alice", "/user/queue/notifications");
+
+        queue.afterMessageHandled(subscribe, mock(MessageChannel.class), mock(MessageHandler.class), null);
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+
+        queue.afterMessageHandled(subscribe, mock(MessageChannel.class), mock(UserDestinationMessageHandler.class), null);
+        verify(messagingTemplate).convertAndSendToUser(eq("alice"), eq("/queue/notifications"), any(SignalMessage.class));
+        assertTrue(stream.isEmpty());
+    }
+
+    @Test
+    void afterMessageHandled_ShouldOnlyReplayTheSubscribedDestination() {
+        queue.enqueue("alice", "/queue/notifications", signal("NAVIGATION", "TURN_LEFT"));
+        subscribed("alice", "/user/queue/notifications"); // From an earlier subscription of another session
+
+        queue.afterMessageHandled(subscribeFrame("alice", "/user/queue/alerts"), mock(MessageChannel.class),
+                mock(UserDestinationMessageHandler.class), null);
+
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+        assertEquals(1, stream.size());
+    }
+
+    // Helper methods
+    private JsonNode signal(String type, String action) {
+        return objectMapper.valueToTree(Map.of("type", type, "action", action));
+    }
+
+    private static Message<byte[]> subscribeFrame(String username, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setDestination(destination);
+        accessor.setUser(new UsernamePasswordAuthenticationToken(username, null, List.of()));
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private void subscribed(String username, String destination) {
+        SimpUser user = mock(SimpUser.class);
+        SimpSession session = mock(SimpSession.class);
+        SimpSubscription subscription = mock(SimpSubscription.class);
+        when(subscription.getDestination()).thenReturn(destination);
+        when(session.getSubscriptions()).thenReturn(Set.of(subscription));
+        when(user.getSessions()).thenReturn(Set.of(session));
+        when(userRegistry.getUser(username)).thenReturn(user);
+    }
+}
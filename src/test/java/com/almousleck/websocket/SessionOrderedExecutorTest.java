@@ -0,0 +1,141 @@
+package com.almousleck.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionOrderedExecutorTest {
+
+    private final ExecutorService virtualThreads = Executors.newVirtualThreadPerTaskExecutor();
+    private final SessionOrderedExecutor executor = new SessionOrderedExecutor(virtualThreads);
+
+    @AfterEach
+    void tearDown() {
+        virtualThreads.shutdownNow();
+    }
+
+    @Test
+    void execute_ShouldKeepEachSessionInSubmissionOrder() throws Exception {
+        int sessions = 50, perSession = 200;
+        Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(sessions * perSession);
+
+        for (int i = 0; i < perSession; i++) {
+            for (int s = 0; s < sessions; s++) {
+                String sessionId = "s" + s;
+                int sequence = i;
+                executor.execute(sessionId, () -> {
+                    seen.computeIfAbsent(sessionId, id -> Collections.synchronizedList(new ArrayList<>())).add(sequence);
+                    if (sequence % 50 == 0) Thread.yield();
+                    done.countDown();
+                });
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (List<Integer> sequence : seen.values()) {
+            for (int i = 0; i < perSession; i++) assertEquals(i, sequence.get(i));
+        }
+        awaitIdle();
+        assertEquals(0, executor.activeSessions());
+    }
+
+    @Test
+    void execute_ShouldNotHoldOtherSessions_WhenOneBlocks() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blockedSessionNext = new CountDownLatch(1);
+        CountDownLatch otherSession = new CountDownLatch(1);
+
+        executor.execute("slow", () -> await(release));
+        executor.execute("slow", blockedSessionNext::countDown);
+        executor.execute("fast", otherSession::countDown);
+
+        assertTrue(otherSession.await(1, TimeUnit.SECONDS));
+        assertEquals(1, blockedSessionNext.getCount()); // Still behind its own blocked frame
+        release.countDown();
+        assertTrue(blockedSessionNext.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void execute_ShouldKeyChannelTasksBySessionId_AndSurviveFailingTask() throws Exception {
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+
+        executor.execute(task("s1", () -> {
+            throw new IllegalStateException("handler failed");
+        }));
+        executor.execute(task("s1", () -> handled.add("second")));
+        executor.execute(task("s1", done::countDown));
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(List.of("second"), handled);
+        awaitIdle();
+        assertEquals(0, executor.pending());
+    }
+
+    @Test
+    void close_ShouldFinishQueuedTasks_ThenRejectNewSessions() {
+        SessionOrderedExecutor closing = new SessionOrderedExecutor(virtualThreads, Duration.ofSeconds(5));
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        closing.execute("s1", () -> await(release));
+        for (int i = 0; i < 3; i++) {
+            int frame = i;
+            closing.execute("s1", () -> written.add(frame));
+        }
+
+        Thread.startVirtualThread(release::countDown); // Unblocks the drain while close() waits
+        closing.close();
+
+        assertEquals(List.of(0, 1, 2), written); // Drained before close returned
+        assertThrows(RejectedExecutionException.class, () -> closing.execute("s2", () -> written.add(3)));
+        assertEquals(0, closing.pending());
+        assertEquals(0, closing.activeSessions());
+    }
+
+    // Helper methods
+    private void awaitIdle() throws InterruptedException {
+        for (int i = 0; i < 100 && executor.pending() + executor.activeSessions() > 0; i++) Thread.sleep(10);
+    }
+
+    private static Runnable task(String sessionId, Runnable handling) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setSessionId(sessionId);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        return new MessageHandlingRunnable() {
+            @Override
+            public Message<?> getMessage() {
+                return message;
+            }
+
+            @Override
+            public MessageHandler getMessageHandler() {
+                return m -> handling.run();
+            }
+
+            @Override
+            public void run() {
+                handling.run();
+            }
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
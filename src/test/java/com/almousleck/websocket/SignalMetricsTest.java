@@ -0,0 +1,88 @@
+package com.almousleck.websocket;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class SignalMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SignalMetrics signalMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        signalMetrics = new SignalMetrics(meterRegistry);
+        ReflectionTestUtils.setField(signalMetrics, "skewWindowMillis", 300_000L);
+        ReflectionTestUtils.setField(signalMetrics, "signalTypes", Set.of("NAVIGATION", "EMERGENCY"));
+    }
+
+    @Test
+    void recordReceived_ShouldTakeEachSessionsClockOffsetOff() {
+        Instant now = Instant.now();
+        // Glasses A run 5s behind the server, glasses B 3s ahead; both then see 40ms of extra delay
+        signalMetrics.recordReceived("a", "NAVIGATION", now.minusMillis(5_000));
+        signalMetrics.recordReceived("a", "NAVIGATION", now.minusMillis(5_040));
+        signalMetrics.recordReceived("b", "NAVIGATION", now.plusMillis(3_000));
+        signalMetrics.recordReceived("b", "NAVIGATION", now.plusMillis(2_960));
+
+        Timer timer = meterRegistry.get("websocket.signal.excess.delay").tag("type", "NAVIGATION").timer();
+        assertEquals(4, timer.count());
+        // Clock offsets are gone: 0 + 40 + 0 + 40ms, give or take the milliseconds the test itself takes
+        assertEquals(80, timer.totalTime(TimeUnit.MILLISECONDS), 40);
+        assertTrue(timer.max(TimeUnit.MILLISECONDS) < 1_000);
+    }
+
+    @Test
+    void recordReceived_ShouldTagUnknownTypesAsOther() {
+        signalMetrics.recordReceived("a", "NOT_A_SIGNAL_" + System.nanoTime(), Instant.now());
+        signalMetrics.recordReceived("a", null, Instant.now());
+        signalMetrics.recordReceived("a", "NAVIGATION", null);
+
+        assertEquals(2, meterRegistry.get("websocket.signal.excess.delay").tag("type", "OTHER").timer().count());
+        assertEquals(1, meterRegistry.get("websocket.signal.excess.delay").timers().size());
+    }
+
+    @Test
+    void outboundInterceptor_ShouldRecordQueueTime_ByTypeReadBeforeTranscoding() {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setLeaveMutable(true); // As the broker hands them over
+        Message<byte[]> message = MessageBuilder.createMessage(
+                "{\"type\":\"EMERGENCY\",\"action\":\"FALL_DETECTED\"}".getBytes(StandardCharsets.UTF_8),
+                accessor.getMessageHeaders());
+        MessageChannel channel = mock(MessageChannel.class);
+
+        Message<?> sent = signalMetrics.preSend(message, channel);
+        signalMetrics.beforeHandle(sent, channel, mock(MessageHandler.class));
+
+        assertSame(message, sent);
+        assertEquals(1, meterRegistry.get("signal.outbound.queue").tag("type", "EMERGENCY").timer().count());
+    }
+
+    @Test
+    void outboundInterceptor_ShouldSkipImmutableMessages() {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        MessageChannel channel = mock(MessageChannel.class);
+
+        signalMetrics.beforeHandle(signalMetrics.preSend(message, channel), channel, mock(MessageHandler.class));
+
+        assertNull(meterRegistry.find("signal.outbound.queue").timer());
+    }
+}
@@ -0,0 +1,159 @@
+package com.almousleck.websocket;
+
+import com.almousleck.dto.signal.SignalMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SignalWireFormatTest {
+
+    private final ObjectMapper jsonMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+
+    private SignalWireFormat wireFormat;
+
+    @BeforeEach
+    void setUp() {
+        wireFormat = new SignalWireFormat(new SimpleMeterRegistry());
+        wireFormat.init();
+    }
+
+    @Test
+    void cborMessageConverter_ShouldDecodeCborFrames_AndLeaveOthersToJson() throws Exception {
+        MappingJackson2MessageConverter converter = wireFormat.cborMessageConverter();
+        byte[] cbor = cborMapper.writeValueAsBytes(Map.of(
+                "type", "NAVIGATION",
+                "action", "TURN_LEFT",
+                "payload", Map.of("distance", 25),
+                "timestamp", 1766743200000L));
+
+        SignalMessage signal = (SignalMessage) converter.fromMessage(send(cbor, "application/cbor"), SignalMessage.class);
+
+        assertNotNull(signal);
+        assertEquals("TURN_LEFT", signal.getAction());
+        assertEquals(25, signal.getPayload().get("distance"));
+        assertEquals(Instant.parse("2025-12-26T10:00:00Z"), signal.getTimestamp());
+        assertNull(converter.fromMessage(send("{\"type\":\"NAVIGATION\"}".getBytes(), null), SignalMessage.class));
+    }
+
+    @Test
+    void preSend_ShouldWriteBinaryCborFrame_ForNegotiatedSession() throws Exception {
+        connect("s1", "application/cbor", true);
+        byte[] json = jsonMapper.writeValueAsBytes(signal());
+
+        WebSocketMessage<?> frame = writeToClient("s1", json);
+
+        assertInstanceOf(BinaryMessage.class, frame);
+        Message<byte[]> decoded = decode(((BinaryMessage) frame).getPayload());
+        assertEquals("application/octet-stream;format=cbor",
+                StompHeaderAccessor.wrap(decoded).getFirstNativeHeader("content-type"));
+        assertEquals(jsonMapper.readTree(json), cborMapper.readTree(decoded.getPayload()));
+        assertTrue(decoded.getPayload().length < json.length);
+    }
+
+    @Test
+    void preSend_ShouldKeepJson_WhenTransportIsTextOnly_OrCborNotRequested() throws Exception {
+        connect("sockjs", "application/cbor", false);
+        connect("json", null, true);
+        byte[] json = jsonMapper.writeValueAsBytes(signal());
+
+        for (String sessionId : List.of("sockjs", "json")) {
+            WebSocketMessage<?> frame = writeToClient(sessionId, json);
+            assertInstanceOf(TextMessage.class, frame);
+            JsonNode body = jsonMapper.readTree(decode(ByteBuffer.wrap(((TextMessage) frame).asBytes())).getPayload());
+            assertEquals("TURN_LEFT", body.get("action").asText());
+        }
+    }
+
+    @Test
+    void transcode_ShouldReuseResult_ForSamePayloadFannedOut() throws Exception {
+        byte[] json = jsonMapper.writeValueAsBytes(signal());
+
+        assertSame(wireFormat.transcode(json), wireFormat.transcode(json));
+    }
+
+    // Helper methods
+    private static SignalMessage signal() {
+        return SignalMessage.builder()
+                .type("NAVIGATION")
+                .action("TURN_LEFT")
+                .payload(Map.of("distance", 25, "street", "Main St"))
+                .senderId("GLASS-001")
+                .timestamp(Instant.parse("2025-12-26T10:00:00Z"))
+                .build();
+    }
+
+    private static Message<byte[]> send(byte[] body, String contentType) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setDestination("/app/signal");
+        if (contentType != null) accessor.setContentType(MimeTypeUtils.parseMimeType(contentType));
+        return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+    }
+
+    private void connect(String sessionId, String contentType, boolean binaryFrames) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        if (contentType != null) accessor.setNativeHeader("content-type", contentType);
+        Map<String, Object> attributes = new HashMap<>();
+        if (binaryFrames) attributes.put(SignalWireFormat.BINARY_FRAMES_ATTRIBUTE, true);
+        accessor.setSessionAttributes(attributes);
+        wireFormat.onConnect(new SessionConnectEvent(this,
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders())));
+    }
+
+    // What the broker sends to a subscriber, through the outbound interceptor and Spring's STOMP handler
+    private WebSocketMessage<?> writeToClient(String sessionId, byte[] json) throws Exception {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-1");
+        accessor.setDestination("/user/queue/ar-updates");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        Message<?> message = wireFormat.preSend(MessageBuilder.createMessage(json, accessor.getMessageHeaders()),
+                mock(MessageChannel.class));
+
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(sessionId);
+        when(session.isOpen()).thenReturn(true);
+        new StompSubProtocolHandler().handleMessageToClient(session, message);
+
+        ArgumentCaptor<WebSocketMessage<?>> frame = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(session).sendMessage(frame.capture());
+        return frame.getValue();
+    }
+
+    private static Message<byte[]> decode(ByteBuffer frame) {
+        return new StompDecoder().decode(frame).get(0);
+    }
+}
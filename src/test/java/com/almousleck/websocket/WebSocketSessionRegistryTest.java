@@ -0,0 +1,136 @@
+package com.almousleck.websocket;
+
+import com.almousleck.service.DeviceService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WebSocketSessionRegistryTest {
+
+    @Mock
+    private DeviceService deviceService;
+
+    private WebSocketSessionRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new WebSocketSessionRegistry(deviceService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(registry, "presenceBatchSize", 2);
+        registry.init();
+    }
+
+    @Test
+    void getSessionIds_ShouldReturnEverySessionOfUser() {
+        connect("s1", "alice", null);
+        connect("s2", "alice", null);
+        connect("s3", "bob", null);
+
+        assertEquals(Set.of("s1", "s2"), registry.getSessionIds("alice"));
+        assertEquals(Set.of("s3"), registry.getSessionIds("bob"));
+        assertEquals(3, registry.sessionCount());
+
+        disconnect("s1");
+        disconnect("s2");
+        assertTrue(registry.getSessionIds("alice").isEmpty());
+        assertFalse(registry.hasSessions("alice"));
+    }
+
+    @Test
+    void flushPresence_ShouldMarkConnectedDevicesOnlineInBatches() {
+        connect("s1", "alice", "GLASS-001");
+        connect("s2", "bob", "GLASS-002");
+        connect("s3", "carol", "GLASS-003");
+        verifyNoInteractions(deviceService); // Nothing written on the event thread
+
+        registry.flushPresence();
+
+        verify(deviceService, times(2)).markDevicesOnline(any());
+        verify(deviceService, never()).markDevicesOffline(any());
+        assertEquals("GLASS-001", registry.getSession("s1").orElseThrow().serialNumber());
+    }
+
+    @Test
+    void flushPresence_ShouldKeepDeviceOnline_WhenItReconnectsBeforeOldSessionCloses() {
+        connect("s1", "alice", "GLASS-001");
+        registry.flushPresence();
+        clearInvocations(deviceService);
+
+        connect("s2", "alice", "GLASS-001");
+        disconnect("s1");
+        registry.flushPresence();
+
+        verify(deviceService).markDevicesOnline(List.of("GLASS-001"));
+        verify(deviceService, never()).markDevicesOffline(any());
+    }
+
+    @Test
+    void flushPresence_ShouldMarkDeviceOffline_WhenLastSessionCloses() {
+        connect("s1", "alice", "GLASS-001");
+        disconnect("s1");
+        disconnect("s1"); // Duplicate disconnect event
+
+        registry.flushPresence();
+
+        verify(deviceService).markDevicesOffline(List.of("GLASS-001"));
+        verify(deviceService, never()).markDevicesOnline(any());
+        assertFalse(registry.isDeviceConnected("GLASS-001"));
+    }
+
+    @Test
+    void flushPresence_ShouldRetry_WhenWriteFails() {
+        connect("s1", "alice", "GLASS-001");
+        doThrow(new QueryTimeoutException("db down")).doNothing().when(deviceService).markDevicesOnline(any());
+
+        registry.flushPresence();
+        registry.flushPresence();
+
+        verify(deviceService, times(2)).markDevicesOnline(List.of("GLASS-001"));
+    }
+
+    // Helper methods
+    private void connect(String sessionId, String username, String serialNumber) {
+        Map<String, Object> attributes = new HashMap<>();
+        if (serialNumber != null) attributes.put(WebSocketSessionRegistry.DEVICE_SERIAL_ATTRIBUTE, serialNumber);
+
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        accessor.setSessionAttributes(attributes);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        registry.onConnect(new SessionConnectEvent(this, message, user(username)));
+    }
+
+    private void disconnect(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        accessor.setSessionId(sessionId);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        registry.onDisconnect(new SessionDisconnectEvent(this, message, sessionId, CloseStatus.NORMAL));
+    }
+
+    private static Principal user(String username) {
+        return new UsernamePasswordAuthenticationToken(username, null, List.of());
+    }
+}